@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sizes every host pool after the load it actually gets, instead of giving all of 
+ * them the same maxActive.
+ * 
+ * Every [retryDelayInSeconds] the arrival rate of borrows and the average time a 
+ * connection is held are measured on each pool. By Little's law their product is the 
+ * number of connections the pool needs on average; [headroom] is added on top of it 
+ * to absorb bursts, and the result is smoothed over the previous runs. The pool is 
+ * only resized when this target moves away from its current size by more than 
+ * [hysteresis], and then by at most a quarter of its size per run, always staying 
+ * between [minActive] and the maxActive of the host.
+ * 
+ * Growing lets new borrowers open connections, shrinking closes idle connections 
+ * right away and busy ones as they are released.
+ */
+public class AdaptivePoolSizingService extends BackgroundCassandraHostService {
+
+  private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizingService.class);
+
+  public static final int DEF_SIZING_INTERVAL_IN_SECONDS = 10;
+  public static final int DEF_MIN_ACTIVE = 2;
+  public static final double DEF_HEADROOM = 0.25;
+  public static final double DEF_HYSTERESIS = 0.1;
+
+  /** Weight of the last measurement in the smoothed demand */
+  private static final double SMOOTHING = 0.5;
+  /** Largest change of size per run, as a fraction of the current size */
+  private static final double MAX_STEP = 0.25;
+
+  private final int minActive;
+  private final double headroom;
+  private final double hysteresis;
+  private final ConcurrentHashMap<HClientPool, Sample> samples;
+
+  public AdaptivePoolSizingService(HConnectionManager connectionManager,
+      CassandraHostConfigurator cassandraHostConfigurator) {
+    super(connectionManager, cassandraHostConfigurator);
+    retryDelayInSeconds = cassandraHostConfigurator.getAdaptivePoolSizingIntervalInSeconds();
+    minActive = Math.max(1, cassandraHostConfigurator.getAdaptivePoolSizingMinActive());
+    headroom = cassandraHostConfigurator.getAdaptivePoolSizingHeadroom();
+    hysteresis = cassandraHostConfigurator.getAdaptivePoolSizingHysteresis();
+    samples = new ConcurrentHashMap<HClientPool, Sample>();
+    sf = executor.scheduleWithFixedDelay(new Sizer(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  void shutdown() {
+    log.info("Shutting down AdaptivePoolSizingService");
+    if ( sf != null ) {
+      sf.cancel(true);
+    }
+    log.info("AdaptivePoolSizingService shutdown complete");
+  }
+
+  @Override
+  public synchronized void applyRetryDelay() {
+    sf.cancel(false);
+    sf = executor.scheduleWithFixedDelay(new Sizer(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * @return the smoothed number of connections needed by the pool, including the 
+   *         headroom, or -1 if it has not been measured yet
+   */
+  public double getDemand(HClientPool pool) {
+    Sample sample = samples.get(pool);
+    return sample == null ? -1 : sample.demand;
+  }
+
+  /**
+   * Measure the pool since the last run and resize it if needed.
+   */
+  void resize(HClientPool pool, long now) {
+    Sample sample = samples.get(pool);
+    if ( sample == null ) {
+      samples.put(pool, new Sample(pool, now));
+      return;
+    }
+    double measured = sample.measure(pool, now, headroom);
+    if ( measured < 0 ) {
+      return;
+    }
+    sample.demand = sample.demand < 0 ? measured : SMOOTHING * measured + (1 - SMOOTHING) * sample.demand;
+
+    int current = pool.getMaxActive();
+    int next = nextSize(current, sample.demand, minActive, pool.getCassandraHost().getMaxActive(), hysteresis);
+    if ( next != current ) {
+      log.info("Resizing {} from {} to {} connections, needing {}",
+          new Object[] { pool.getName(), current, next, String.format("%.1f", sample.demand) });
+      pool.setMaxActive(next);
+    }
+  }
+
+  /**
+   * @return the size to give a pool of [current] connections needing [demand] of them
+   */
+  static int nextSize(int current, double demand, int minActive, int maxActive, double hysteresis) {
+    int target = (int) Math.ceil(demand);
+    target = Math.max(Math.min(minActive, maxActive), Math.min(maxActive, target));
+    if ( Math.abs(target - current) <= hysteresis * current ) {
+      return current;
+    }
+    int step = Math.max(1, (int) (current * MAX_STEP));
+    return target > current ? Math.min(target, current + step) : Math.max(target, current - step);
+  }
+
+  /**
+   * The counters of a pool as of the previous run.
+   */
+  private static final class Sample {
+    private long time;
+    private long borrows;
+    private long releases;
+    private long busyNanos;
+    private double demand = -1;
+
+    Sample(HClientPool pool, long now) {
+      time = now;
+      borrows = pool.getBorrowCount();
+      releases = pool.getReleaseCount();
+      busyNanos = pool.getBusyTimeNanos();
+    }
+
+    /**
+     * @return the connections needed since the previous run, arrival rate times 
+     *         time held plus headroom, or -1 when nothing was released to measure 
+     *         the time held with while connections were asked for. Never less than 
+     *         the connections held right now, which are not part of the time held yet
+     */
+    double measure(HClientPool pool, long now, double headroom) {
+      long elapsed = now - time;
+      long newBorrows = pool.getBorrowCount() - borrows;
+      long newReleases = pool.getReleaseCount() - releases;
+      long newBusyNanos = pool.getBusyTimeNanos() - busyNanos;
+      time = now;
+      borrows += newBorrows;
+      releases += newReleases;
+      busyNanos += newBusyNanos;
+
+      if ( elapsed <= 0 || newBorrows == 0 ) {
+        return elapsed <= 0 ? -1 : 0;
+      }
+      if ( newReleases == 0 ) {
+        return -1;
+      }
+      double arrivalRate = (double) newBorrows / elapsed;
+      double holdTime = (double) newBusyNanos / newReleases;
+      return Math.max(arrivalRate * holdTime, pool.getNumActive()) * (1 + headroom);
+    }
+  }
+
+  class Sizer implements Runnable {
+    @Override
+    public void run() {
+      long now = System.nanoTime();
+      for (HClientPool pool : connectionManager.getActivePools()) {
+        try {
+          resize(pool, now);
+        } catch (RuntimeException e) {
+          log.error("Unable to resize " + pool.getName(), e);
+        }
+      }
+      // forget the pools which went away
+      for (Iterator<HClientPool> it = samples.keySet().iterator(); it.hasNext();) {
+        if ( !it.next().getIsActive() ) {
+          it.remove();
+        }
+      }
+    }
+  }
+}
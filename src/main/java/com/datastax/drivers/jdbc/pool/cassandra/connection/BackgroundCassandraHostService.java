@@ -17,15 +17,17 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
-
 
+/**
+ * Base of the services running in the background of a {@link HConnectionManager}.
+ * They all share the scheduler of the connection manager, which shuts it down, so 
+ * a service must only cancel its own tasks on shutdown.
+ */
 public abstract class BackgroundCassandraHostService {
 
   protected final ScheduledExecutorService executor;
@@ -38,7 +40,7 @@ public abstract class BackgroundCassandraHostService {
 
   public BackgroundCassandraHostService(HConnectionManager connectionManager,
       CassandraHostConfigurator cassandraHostConfigurator) {
-    executor = Executors.newScheduledThreadPool(1, new DaemonThreadPoolFactory(getClass()));
+    executor = connectionManager.getScheduler();
     this.connectionManager = connectionManager;
     this.cassandraHostConfigurator = cassandraHostConfigurator;
     
@@ -19,26 +19,55 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HectorTransportException;
+import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.LatencyHistogram;
 
 public class CassandraClientMonitor implements CassandraClientMonitorMBean {
 
   private static final Logger log = LoggerFactory.getLogger(CassandraClientMonitor.class);
-  private final Map<Counter, AtomicLong> counters;
+  private final ClientCounters counters = new ClientCounters();
 
   private final HConnectionManager connectionManager;
 
+  private static final String[] BORROW_STATISTICS_ITEMS = { "host", "waitP50Millis", "waitP99Millis", 
+    "connectP50Millis", "connectP99Millis", "exhausted", "timeouts", "saturation" };
+  private static final CompositeType BORROW_STATISTICS;
+  private static final TabularType BORROW_STATISTICS_TABLE;
+
+  static {
+    try {
+      BORROW_STATISTICS = new CompositeType("BorrowStatistics", "Borrows of a host pool", 
+          BORROW_STATISTICS_ITEMS, new String[] { "[hostname]:[port]", 
+            "50th percentile of the borrow wait in ms", "99th percentile of the borrow wait in ms", 
+            "50th percentile of the connect time in ms", "99th percentile of the connect time in ms", 
+            "borrows which found the pool exhausted", "borrows which gave up waiting", 
+            "share of the borrows which found the pool exhausted" }, 
+          new OpenType<?>[] { SimpleType.STRING, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, 
+            SimpleType.DOUBLE, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE });
+      BORROW_STATISTICS_TABLE = new TabularType("BorrowStatisticsTable", "Borrows per host pool", 
+          BORROW_STATISTICS, new String[] { "host" });
+    } catch (OpenDataException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
   /**
    * List of available JMX counts
    */
@@ -60,52 +89,66 @@ public class CassandraClientMonitor implements CassandraClientMonitorMBean {
 
   public CassandraClientMonitor(HConnectionManager connectionManager) {
     this.connectionManager = connectionManager;
-    counters = new HashMap<Counter, AtomicLong>();
-    for (Counter counter: Counter.values()) {
-      counters.put(counter, new AtomicLong(0));
-    }
   }
 
   public void incCounter(Counter counterType) {
-    counters.get(counterType).incrementAndGet();
+    counters.inc(counterType);
+  }
+
+  /**
+   * Counts for the whole cluster and for the given host. 
+   * @param host may be null when the host is not known
+   */
+  public void incCounter(Counter counterType, CassandraHost host) {
+    counters.inc(counterType);
+    if ( host != null ) {
+      host.getCounters().inc(counterType);
+    }
+  }
+
+  /**
+   * @return the counters of the whole cluster, those of every host being kept by the host
+   */
+  public ClientCounters getCounters() {
+    return counters;
   }
 
   public long getWriteSuccess() {
-    return counters.get(Counter.WRITE_SUCCESS).longValue();
+    return counters.get(Counter.WRITE_SUCCESS);
   }
 
 
   @Override
   public long getReadFail() {
-    return counters.get(Counter.READ_FAIL).longValue();
+    return counters.get(Counter.READ_FAIL);
   }
 
   public long getReadSuccess() {
-    return counters.get(Counter.READ_SUCCESS).longValue();
+    return counters.get(Counter.READ_SUCCESS);
   }
 
 
   @Override
   public long getSkipHostSuccess() {
-    return counters.get(Counter.SKIP_HOST_SUCCESS).longValue();
+    return counters.get(Counter.SKIP_HOST_SUCCESS);
   }
 
 
   @Override
   public long getRecoverableTimedOutCount() {
-    return counters.get(Counter.RECOVERABLE_TIMED_OUT_EXCEPTIONS).longValue();
+    return counters.get(Counter.RECOVERABLE_TIMED_OUT_EXCEPTIONS);
   }
 
 
   @Override
   public long getRecoverableUnavailableCount() {
-    return counters.get(Counter.RECOVERABLE_UNAVAILABLE_EXCEPTIONS).longValue();
+    return counters.get(Counter.RECOVERABLE_UNAVAILABLE_EXCEPTIONS);
   }
 
 
   @Override
   public long getWriteFail() {
-    return counters.get(Counter.WRITE_FAIL).longValue();
+    return counters.get(Counter.WRITE_FAIL);
   }
 
 
@@ -118,7 +161,7 @@ public class CassandraClientMonitor implements CassandraClientMonitorMBean {
 
   @Override
   public long getNumPoolExhaustedEventCount() {
-    return counters.get(Counter.POOL_EXHAUSTED).longValue();
+    return counters.get(Counter.POOL_EXHAUSTED);
   }
 
 
@@ -195,7 +238,7 @@ public class CassandraClientMonitor implements CassandraClientMonitorMBean {
 
   @Override
   public long getRecoverableTransportExceptionCount() {
-    return counters.get(Counter.RECOVERABLE_TRANSPORT_EXCEPTIONS).longValue();
+    return counters.get(Counter.RECOVERABLE_TRANSPORT_EXCEPTIONS);
   }
 
 
@@ -208,13 +251,13 @@ public class CassandraClientMonitor implements CassandraClientMonitorMBean {
 
   @Override
   public long getRecoverableLoadBalancedConnectErrors() {
-    return counters.get(Counter.RECOVERABLE_LB_CONNECT_ERRORS).longValue();
+    return counters.get(Counter.RECOVERABLE_LB_CONNECT_ERRORS);
   }
 
 
   @Override
   public long getNumConnectionErrors() {
-    return counters.get(Counter.CONNECT_ERROR).longValue();
+    return counters.get(Counter.CONNECT_ERROR);
   }
 
   @Override
@@ -246,6 +289,169 @@ public class CassandraClientMonitor implements CassandraClientMonitorMBean {
   public boolean unsuspendCassandraHost(String hostStr) {
     return connectionManager.unsuspendCassandraHost(new CassandraHost(hostStr));
   }
+
+  @Override
+  public boolean setCassandraHostWeight(String hostStr, int weight) {
+    return connectionManager.setCassandraHostWeight(new CassandraHost(hostStr), weight);
+  }
+
+  @Override
+  public List<String> getCassandraHostWeights() {
+    List<String> weights = new ArrayList<String>();
+    for (HClientPool pool : connectionManager.getActivePools()) {
+      weights.add(pool.getCassandraHost().getUrl() + "=" + pool.getCassandraHost().getWeight());
+    }
+    return weights;
+  }
+
+  @Override
+  public long getProbeCount() {
+    return connectionManager.getHostProbe().getProbeCount();
+  }
+
+  @Override
+  public long getProbeFailureCount() {
+    return connectionManager.getHostProbe().getProbeFailureCount();
+  }
+
+  @Override
+  public double getProbeAverageTimeMillis() {
+    return connectionManager.getHostProbe().getProbeAverageTimeMillis();
+  }
+
+  @Override
+  public List<String> getLastProbeTimes() {
+    return connectionManager.getHostProbe().getLastProbeTimes();
+  }
+
+  @Override
+  public List<String> getLeakedConnections() {
+    List<String> leaks = new ArrayList<String>();
+    for (HClientPool pool : connectionManager.getActivePools()) {
+      leaks.addAll(pool.getLeakedConnections());
+    }
+    return leaks;
+  }
+
+  @Override
+  public int getMaxActive() {
+    return connectionManager.getCassandraHostConfigurator().getMaxActive();
+  }
+
+  @Override
+  public void setMaxActive(int maxActive) {
+    // the manager serializes the changes, read the current limits under its lock
+    synchronized (connectionManager) {
+      connectionManager.setPoolLimits(maxActive, getMaxWaitTimeWhenExhausted(), exhaustedPolicy());
+    }
+  }
+
+  @Override
+  public long getMaxWaitTimeWhenExhausted() {
+    return connectionManager.getCassandraHostConfigurator().getMaxWaitTimeWhenExhausted();
+  }
+
+  @Override
+  public void setMaxWaitTimeWhenExhausted(long maxWaitTimeWhenExhausted) {
+    synchronized (connectionManager) {
+      connectionManager.setPoolLimits(getMaxActive(), maxWaitTimeWhenExhausted, exhaustedPolicy());
+    }
+  }
+
+  @Override
+  public String getExhaustedPolicy() {
+    return exhaustedPolicy().name();
+  }
+
+  @Override
+  public void setExhaustedPolicy(String exhaustedPolicy) {
+    ExhaustedPolicy policy = ExhaustedPolicy.valueOf(exhaustedPolicy);
+    synchronized (connectionManager) {
+      connectionManager.setPoolLimits(getMaxActive(), getMaxWaitTimeWhenExhausted(), policy);
+    }
+  }
+
+  private ExhaustedPolicy exhaustedPolicy() {
+    ExhaustedPolicy policy = connectionManager.getCassandraHostConfigurator().getExhaustedPolicy();
+    return policy == null ? ExhaustedPolicy.WHEN_EXHAUSTED_BLOCK : policy;
+  }
+
+  @Override
+  public double getBadnessThreshold() {
+    LoadBalancingPolicy policy = connectionManager.getLoadBalancingPolicy();
+    return policy instanceof DynamicLoadBalancingPolicy 
+        ? ((DynamicLoadBalancingPolicy) policy).getBadnessThreshold() : -1;
+  }
+
+  @Override
+  public void setBadnessThreshold(double badnessThreshold) {
+    LoadBalancingPolicy policy = connectionManager.getLoadBalancingPolicy();
+    if ( !(policy instanceof DynamicLoadBalancingPolicy) ) {
+      throw new IllegalStateException("The badness threshold only applies to the DynamicLoadBalancingPolicy, not " 
+          + policy.getClass().getSimpleName());
+    }
+    if ( badnessThreshold < 0 ) {
+      throw new IllegalArgumentException("The badness threshold must not be negative");
+    }
+    ((DynamicLoadBalancingPolicy) policy).setBadnessThreshold(badnessThreshold);
+    log.info("Badness threshold set to {}", badnessThreshold);
+  }
+
+  @Override
+  public TabularData getBorrowStatistics() {
+    TabularData statistics = new TabularDataSupport(BORROW_STATISTICS_TABLE);
+    for (HClientPool pool : connectionManager.getActivePools()) {
+      PoolStats stats = pool.getStats();
+      LatencyHistogram wait = stats.getBorrowWait();
+      LatencyHistogram connect = stats.getConnectTime();
+      try {
+        statistics.put(new CompositeDataSupport(BORROW_STATISTICS, BORROW_STATISTICS_ITEMS, new Object[] {
+            pool.getCassandraHost().getUrl(), millis(wait.getPercentileNanos(50)), 
+            millis(wait.getPercentileNanos(99)), millis(connect.getPercentileNanos(50)), 
+            millis(connect.getPercentileNanos(99)), stats.getExhaustedCount(), stats.getTimeoutCount(), 
+            stats.getSaturation() }));
+      } catch (OpenDataException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return statistics;
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+  @Override
+  public long getNumBorrowTimeouts() {
+    long timeouts = 0;
+    for (HClientPool pool : connectionManager.getActivePools()) {
+      timeouts += pool.getStats().getTimeoutCount();
+    }
+    return timeouts;
+  }
+
+  @Override
+  public List<String> getSlowOperations() {
+    SlowOperationTracker tracker = connectionManager.getSlowOperationTracker();
+    return tracker == null ? new ArrayList<String>() : tracker.getSlowOperations();
+  }
+
+  @Override
+  public void resetSlowOperations() {
+    SlowOperationTracker tracker = connectionManager.getSlowOperationTracker();
+    if ( tracker != null ) {
+      tracker.reset();
+    }
+  }
+
+  @Override
+  public List<String> getCountersPerHost() {
+    List<String> counts = new ArrayList<String>();
+    for (HClientPool pool : connectionManager.getActivePools()) {
+      counts.add(pool.getCassandraHost().getUrl() + " " + pool.getCassandraHost().getCounters());
+    }
+    return counts;
+  }
   
   
   
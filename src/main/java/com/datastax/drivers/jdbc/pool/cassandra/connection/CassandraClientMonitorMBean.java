@@ -20,6 +20,8 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 import java.util.List;
 import java.util.Set;
 
+import javax.management.openmbean.TabularData;
+
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HectorTransportException;
 import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
 
@@ -170,4 +172,118 @@ public interface CassandraClientMonitorMBean {
   boolean unsuspendCassandraHost(String hostStr);
   
   Set<String> getSuspendedCassandraHosts(); 
+
+  /**
+   * Set the weight of a host for {@link WeightedBalancingPolicy}. See {@link #removeCassandraHost(String)}
+   * above for the semantics of the host string. A weight of 0 drains the host without removing it.
+   * @param hostStr
+   * @param weight
+   * @return
+   */
+  boolean setCassandraHostWeight(String hostStr, int weight);
+
+  /**
+   * @return the weight of every active host in the format of "[hostname]:[port]=[weight]"
+   */
+  List<String> getCassandraHostWeights();
+
+  /**
+   * @return how many times hosts were probed, by the downed host retry service 
+   *         or before being unsuspended
+   */
+  long getProbeCount();
+
+  long getProbeFailureCount();
+
+  /**
+   * @return the average duration of a probe, successful or not, in milliseconds
+   */
+  double getProbeAverageTimeMillis();
+
+  /**
+   * @return the duration of the last probe of every probed host in the format of 
+   *         "[hostname]:[port]=[millis]", or "[hostname]:[port]=failed"
+   */
+  List<String> getLastProbeTimes();
+
+  /**
+   * @return the non zero counters of every active host in the format of 
+   *         "[hostname]:[port] [COUNTER]=[count] ..."
+   */
+  List<String> getCountersPerHost();
+
+  /**
+   * @return a row per active host pool, indexed by "host" ([hostname]:[port]): how long 
+   *         borrowers waited and how long opening a connection took during the last complete 
+   *         interval as waitP50Millis, waitP99Millis, connectP50Millis and connectP99Millis, 
+   *         how often the pool was exhausted and borrows timed out as exhausted and timeouts, 
+   *         and the share of borrows which found it exhausted as saturation
+   */
+  TabularData getBorrowStatistics();
+
+  /**
+   * @return how many borrows of the active host pools gave up after maxWaitTimeWhenExhausted
+   */
+  long getNumBorrowTimeouts();
+
+  /**
+   * @return the statements which took longer than slowOperationThresholdMillis, per host 
+   *         and slowest in total first, in the format of "[hostname]:[port] count=[count] 
+   *         total=[ms]ms max=[ms]ms error=[ms]ms [statement]", literals being replaced by '?'.
+   *         The count and total of a statement may be overestimated by up to its error.
+   */
+  List<String> getSlowOperations();
+
+  /**
+   * Forget the slow statements recorded so far.
+   */
+  void resetSlowOperations();
+
+  /**
+   * @return the connections borrowed for longer than leakDetectionThresholdMillis, in 
+   *         the format of "[hostname]:[port] held for [millis]ms by [thread]", followed 
+   *         by where they were borrowed when the stack was sampled
+   */
+  List<String> getLeakedConnections();
+
+  /**
+   * @return the maxActive of every host pool
+   */
+  int getMaxActive();
+
+  /**
+   * Resize every host pool in place. Lowering it closes idle connections right away 
+   * and busy ones as they are released.
+   * @param maxActive
+   */
+  void setMaxActive(int maxActive);
+
+  long getMaxWaitTimeWhenExhausted();
+
+  /**
+   * @param maxWaitTimeWhenExhausted in milliseconds, negative to wait forever
+   */
+  void setMaxWaitTimeWhenExhausted(long maxWaitTimeWhenExhausted);
+
+  /**
+   * @return the name of the {@link ExhaustedPolicy} of every host pool
+   */
+  String getExhaustedPolicy();
+
+  /**
+   * @param exhaustedPolicy the name of an {@link ExhaustedPolicy}
+   */
+  void setExhaustedPolicy(String exhaustedPolicy);
+
+  /**
+   * @return the badness threshold of the {@link DynamicLoadBalancingPolicy}, 
+   *         -1 if another load balancing policy is used
+   */
+  double getBadnessThreshold();
+
+  /**
+   * Only applies to the {@link DynamicLoadBalancingPolicy}.
+   * @param badnessThreshold
+   */
+  void setBadnessThreshold(double badnessThreshold);
 }
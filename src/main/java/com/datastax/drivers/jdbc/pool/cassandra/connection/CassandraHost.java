@@ -19,6 +19,8 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
 
 
 import org.slf4j.Logger;
@@ -61,10 +63,37 @@ public final class CassandraHost {
    */
   public static final int DEFAULT_MAX_IDLE = -1;
 
+  /**
+   * The default weight of a host when balancing with {@link WeightedBalancingPolicy}.
+   */
+  public static final int DEFAULT_WEIGHT = 100;
+
   public static final boolean DEFAULT_LIFO = true;
   public static final long DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS = 18000000;
   public static final long DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS = -1;
 
+  /**
+   * By default borrowers arriving while others are blocked queue up behind them.
+   */
+  public static final boolean DEFAULT_FAIR_BORROW = true;
+
+  /**
+   * By default connections are kept for as long as they work.
+   */
+  public static final long DEFAULT_MAX_CONNECTION_LIFETIME_MILLIS = 0;
+  public static final double DEFAULT_CONNECTION_LIFETIME_JITTER = 0.2;
+
+  public static final boolean DEFAULT_VALIDATE_ON_BORROW = false;
+  public static final long DEFAULT_VALIDATION_SKIP_WINDOW_MILLIS = 500;
+  public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 2;
+
+  /**
+   * By default borrowed connections are not tracked for leaks.
+   */
+  public static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 0;
+  public static final int DEFAULT_LEAK_STACK_SAMPLE_RATE = 100;
+  public static final int DEFAULT_POOL_STATS_INTERVAL_IN_SECONDS = 60;
+
   private final String host, ip, url;
   private final int port;
   private final String name;
@@ -72,18 +101,33 @@ public final class CassandraHost {
   private String password;
   private String keyspaceName;
 
-  private int maxActive = DEFAULT_MAX_ACTIVE;
+  // the pool limits can be changed at runtime through JMX
+  private volatile int maxActive = DEFAULT_MAX_ACTIVE;
   private int maxIdle = DEFAULT_MAX_IDLE;
 
   private boolean lifo = DEFAULT_LIFO;
   private long minEvictableIdleTimeMillis = DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
   private long timeBetweenEvictionRunsMillis = DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
 
-  private long maxWaitTimeWhenExhausted = DEFAULT_MAX_WAITTIME_WHEN_EXHAUSTED;
+  private volatile long maxWaitTimeWhenExhausted = DEFAULT_MAX_WAITTIME_WHEN_EXHAUSTED;
   private int cassandraThriftSocketTimeout;
-  private ExhaustedPolicy exhaustedPolicy = ExhaustedPolicy.WHEN_EXHAUSTED_BLOCK;
+  private volatile ExhaustedPolicy exhaustedPolicy = ExhaustedPolicy.WHEN_EXHAUSTED_BLOCK;
   private boolean useThriftFramedTransport = DEFAULT_USE_FRAMED_THRIFT_TRANSPORT;
   private boolean useSocketKeepalive;
+  private volatile int weight = DEFAULT_WEIGHT;
+  private String validationQuery;
+  private List<String> warmupStatements = Collections.emptyList();
+  private boolean fairBorrow = DEFAULT_FAIR_BORROW;
+  private long maxConnectionLifetimeMillis = DEFAULT_MAX_CONNECTION_LIFETIME_MILLIS;
+  private double connectionLifetimeJitter = DEFAULT_CONNECTION_LIFETIME_JITTER;
+  private boolean validateOnBorrow = DEFAULT_VALIDATE_ON_BORROW;
+  private long validationSkipWindowMillis = DEFAULT_VALIDATION_SKIP_WINDOW_MILLIS;
+  private int validationTimeoutSeconds = DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+  private long leakDetectionThresholdMillis = DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS;
+  private int leakStackSampleRate = DEFAULT_LEAK_STACK_SAMPLE_RATE;
+  private boolean reclaimLeakedConnections;
+  private int poolStatsIntervalInSeconds = DEFAULT_POOL_STATS_INTERVAL_IN_SECONDS;
+  private final ClientCounters counters = new ClientCounters();
   //TODO(ran): private FailoverPolicy failoverPolicy = DEFAULT_FAILOVER_POLICY;
 
   public CassandraHost(String url) {
@@ -258,6 +302,163 @@ public final class CassandraHost {
     this.useSocketKeepalive = useSocketKeepalive;
   }
 
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * @return the failover and failure counts of this host
+   */
+  public ClientCounters getCounters() {
+    return counters;
+  }
+
+  /**
+   * Sets the relative capacity of this host for {@link WeightedBalancingPolicy}.
+   * A weight of 0 stops new requests from being routed to the host while
+   * keeping its pool around.
+   * @param weight
+   */
+  public void setWeight(int weight) {
+    if ( weight < 0 ) {
+      throw new IllegalArgumentException("Weight must not be negative for host " + name);
+    }
+    this.weight = weight;
+  }
+
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  public void setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery;
+  }
+
+  public List<String> getWarmupStatements() {
+    return warmupStatements;
+  }
+
+  /**
+   * CQL statements prepared on every connection opened while warming up the pool.
+   * @param warmupStatements
+   */
+  public void setWarmupStatements(List<String> warmupStatements) {
+    this.warmupStatements = warmupStatements == null ? Collections.<String>emptyList() : warmupStatements;
+  }
+
+  public boolean getFairBorrow() {
+    return fairBorrow;
+  }
+
+  /**
+   * When true, a borrower finding other threads already waiting on an exhausted
+   * pool queues up behind them instead of grabbing a connection that is idle
+   * for a moment. Unfair borrowing gives more throughput at the cost of
+   * starving some of the waiters.
+   * @param fairBorrow
+   */
+  public void setFairBorrow(boolean fairBorrow) {
+    this.fairBorrow = fairBorrow;
+  }
+
+  public long getMaxConnectionLifetimeMillis() {
+    return maxConnectionLifetimeMillis;
+  }
+
+  /**
+   * How long a connection is used before being closed and replaced, 0 to keep it 
+   * for as long as it works.
+   * @param maxConnectionLifetimeMillis
+   */
+  public void setMaxConnectionLifetimeMillis(long maxConnectionLifetimeMillis) {
+    this.maxConnectionLifetimeMillis = maxConnectionLifetimeMillis;
+  }
+
+  public double getConnectionLifetimeJitter() {
+    return connectionLifetimeJitter;
+  }
+
+  /**
+   * The fraction of maxConnectionLifetimeMillis by which the lifetime of each connection 
+   * is randomly shortened, so connections opened together do not expire together.
+   * @param connectionLifetimeJitter
+   */
+  public void setConnectionLifetimeJitter(double connectionLifetimeJitter) {
+    this.connectionLifetimeJitter = connectionLifetimeJitter;
+  }
+
+  public boolean getValidateOnBorrow() {
+    return validateOnBorrow;
+  }
+
+  public void setValidateOnBorrow(boolean validateOnBorrow) {
+    this.validateOnBorrow = validateOnBorrow;
+  }
+
+  public long getValidationSkipWindowMillis() {
+    return validationSkipWindowMillis;
+  }
+
+  /**
+   * Connections known to work since this long are handed out without being validated.
+   * @param validationSkipWindowMillis
+   */
+  public void setValidationSkipWindowMillis(long validationSkipWindowMillis) {
+    this.validationSkipWindowMillis = validationSkipWindowMillis;
+  }
+
+  public int getValidationTimeoutSeconds() {
+    return validationTimeoutSeconds;
+  }
+
+  public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+  }
+
+  public long getLeakDetectionThresholdMillis() {
+    return leakDetectionThresholdMillis;
+  }
+
+  /**
+   * Connections borrowed for longer than this are reported as leaked, 0 to not track them.
+   * @param leakDetectionThresholdMillis
+   */
+  public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+    this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+  }
+
+  public int getLeakStackSampleRate() {
+    return leakStackSampleRate;
+  }
+
+  /**
+   * Capture the stack of one borrow out of this many, 0 to never capture it.
+   * @param leakStackSampleRate
+   */
+  public void setLeakStackSampleRate(int leakStackSampleRate) {
+    this.leakStackSampleRate = leakStackSampleRate;
+  }
+
+  public boolean getReclaimLeakedConnections() {
+    return reclaimLeakedConnections;
+  }
+
+  public void setReclaimLeakedConnections(boolean reclaimLeakedConnections) {
+    this.reclaimLeakedConnections = reclaimLeakedConnections;
+  }
+
+  public int getPoolStatsIntervalInSeconds() {
+    return poolStatsIntervalInSeconds;
+  }
+
+  /**
+   * The borrow wait and connect time histograms of the pool cover this many seconds.
+   * @param poolStatsIntervalInSeconds
+   */
+  public void setPoolStatsIntervalInSeconds(int poolStatsIntervalInSeconds) {
+    this.poolStatsIntervalInSeconds = poolStatsIntervalInSeconds;
+  }
+
   public String getUser() {
     return user;
   }
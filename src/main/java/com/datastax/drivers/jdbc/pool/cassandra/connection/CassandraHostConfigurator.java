@@ -18,6 +18,8 @@
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
 import com.datastax.drivers.jdbc.pool.cassandra.service.FailoverPolicy;
@@ -45,8 +47,7 @@ public class CassandraHostConfigurator implements Serializable {
   private boolean useThriftFramedTransport = CassandraHost.DEFAULT_USE_FRAMED_THRIFT_TRANSPORT;
   private FailoverPolicy failoverPolicy = FailoverPolicy.ON_FAIL_TRY_ALL_AVAILABLE;
 
-  // Discovery new hosts service.
-  // TODO (patricioe) Cassandra does not support yet system calls. This feature uses describe_ring. CASSANDRA-2477
+  // Discovery new hosts service, reads system.peers
   private boolean autoDiscoverHosts = false;
   private int autoDiscoveryDelayInSeconds = NodeAutoDiscoverService.DEF_AUTO_DISCOVERY_DELAY;
   private boolean runAutoDiscoveryAtStartup = false;
@@ -55,17 +56,59 @@ public class CassandraHostConfigurator implements Serializable {
   private boolean retryDownedHosts = true;
   private int retryDownedHostsQueueSize = CassandraHostRetryService.DEF_QUEUE_SIZE;
   private int retryDownedHostsDelayInSeconds = CassandraHostRetryService.DEF_RETRY_DELAY;
+  private int retryDownedHostsMaxDelayInSeconds = CassandraHostRetryService.DEF_MAX_RETRY_DELAY;
+
+  // Host probes, see CassandraHostProbe
+  private int probeConcurrency = CassandraHostProbe.DEF_PROBE_CONCURRENCY;
+  private int probeConnectTimeoutMillis = CassandraHostProbe.DEF_PROBE_CONNECT_TIMEOUT_MILLIS;
+  private int probeQueryTimeoutMillis = CassandraHostProbe.DEF_PROBE_QUERY_TIMEOUT_MILLIS;
   
   private LoadBalancingPolicy loadBalancingPolicy = new RoundRobinBalancingPolicy();
+  private int hostWeight = CassandraHost.DEFAULT_WEIGHT;
+  private String hostWeights;
 
   private int hostTimeoutCounter = HostTimeoutTracker.DEF_TIMEOUT_COUNTER;
   private int hostTimeoutWindow = HostTimeoutTracker.DEF_TIMEOUT_WINDOW;
   private int hostTimeoutSuspensionDurationInSeconds = HostTimeoutTracker.DEF_NODE_SUSPENSION_DURATION_IN_SECONDS;
+  private int hostTimeoutMaxSuspensionDurationInSeconds = HostTimeoutTracker.DEF_MAX_NODE_SUSPENSION_DURATION_IN_SECONDS;
+  private double hostTimeoutSuspensionJitter = HostTimeoutTracker.DEF_NODE_SUSPENSION_JITTER;
+  private int hostTimeoutHealthyPeriodInSeconds = HostTimeoutTracker.DEF_HEALTHY_PERIOD_IN_SECONDS;
   private int hostTimeoutUnsuspendCheckDelay = HostTimeoutTracker.DEF_NODE_UNSUSPEND_CHECK_DELAY_IN_SECONDS;
+  private boolean hostTimeoutProbeBeforeUnsuspend = false;
   private boolean useHostTimeoutTracker = false;
+  private String validationQuery;
+  private List<String> warmupStatements = new ArrayList<String>();
+  private int warmupConcurrency = HConnectionManager.DEF_WARMUP_CONCURRENCY;
+  private int startupConcurrency = HConnectionManager.DEF_STARTUP_CONCURRENCY;
+  private long startupTimeoutMillis = HConnectionManager.DEF_STARTUP_TIMEOUT_MILLIS;
+  private boolean startupQuorum = false;
+  private boolean fairBorrow = CassandraHost.DEFAULT_FAIR_BORROW;
+  private boolean useVirtualThreads = false;
+  private boolean useJfrEvents = false;
+  private long maxConnectionLifetimeMillis = CassandraHost.DEFAULT_MAX_CONNECTION_LIFETIME_MILLIS;
+  private double connectionLifetimeJitter = CassandraHost.DEFAULT_CONNECTION_LIFETIME_JITTER;
+  private int poolMaintenanceIntervalInSeconds = PoolMaintenanceService.DEF_MAINTENANCE_INTERVAL_IN_SECONDS;
+  private boolean validateOnBorrow = CassandraHost.DEFAULT_VALIDATE_ON_BORROW;
+  private long validationSkipWindowMillis = CassandraHost.DEFAULT_VALIDATION_SKIP_WINDOW_MILLIS;
+  private int validationTimeoutSeconds = CassandraHost.DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+  private long leakDetectionThresholdMillis = CassandraHost.DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS;
+  private int leakStackSampleRate = CassandraHost.DEFAULT_LEAK_STACK_SAMPLE_RATE;
+  private boolean reclaimLeakedConnections = false;
+  private int poolStatsIntervalInSeconds = CassandraHost.DEFAULT_POOL_STATS_INTERVAL_IN_SECONDS;
+  private boolean useAdaptivePoolSizing = false;
+  private int adaptivePoolSizingIntervalInSeconds = AdaptivePoolSizingService.DEF_SIZING_INTERVAL_IN_SECONDS;
+  private int adaptivePoolSizingMinActive = AdaptivePoolSizingService.DEF_MIN_ACTIVE;
+  private double adaptivePoolSizingHeadroom = AdaptivePoolSizingService.DEF_HEADROOM;
+  private double adaptivePoolSizingHysteresis = AdaptivePoolSizingService.DEF_HYSTERESIS;
+  private long slowOperationThresholdMillis = 0;
+  private int slowOperationTopN = SlowOperationTracker.DEF_TOP_N;
+  private int slowOperationLogIntervalInSeconds = SlowOperationTracker.DEF_LOG_INTERVAL_IN_SECONDS;
+  private int metricsPort = 0;
+  private String metricsBindAddress = PrometheusExporter.DEF_BIND_ADDRESS;
 
   private boolean useSocketKeepalive = false;
   private HOpTimer opTimer = new NullOpTimer();
+  private HostOpTimer hostOpTimer;
 
   public CassandraHostConfigurator() {
     this.hosts = null;
@@ -82,13 +125,17 @@ public class CassandraHostConfigurator implements Serializable {
     String[] hostVals = hosts.split(",");
     CassandraHost[] cassandraHosts = new CassandraHost[hostVals.length];
     for (int x=0; x<hostVals.length; x++) {
-      CassandraHost cassandraHost = this.port == CassandraHost.DEFAULT_PORT ? new CassandraHost(hostVals[x]) : new CassandraHost(hostVals[x], this.port);
+      CassandraHost cassandraHost = createCassandraHost(hostVals[x]);
       applyConfig(cassandraHost);
       cassandraHosts[x] = cassandraHost;
     }
     return cassandraHosts;
   }
 
+  private CassandraHost createCassandraHost(String hostVal) {
+    return this.port == CassandraHost.DEFAULT_PORT ? new CassandraHost(hostVal) : new CassandraHost(hostVal, this.port);
+  }
+
   public void applyConfig(CassandraHost cassandraHost) {
 
     cassandraHost.setMaxActive(maxActive);
@@ -102,6 +149,19 @@ public class CassandraHostConfigurator implements Serializable {
     cassandraHost.setUser(user);
     cassandraHost.setPassword(password);
     cassandraHost.setKeyspaceName(keyspaceName);
+    cassandraHost.setWeight(getWeight(cassandraHost));
+    cassandraHost.setValidationQuery(validationQuery);
+    cassandraHost.setWarmupStatements(warmupStatements);
+    cassandraHost.setFairBorrow(fairBorrow);
+    cassandraHost.setMaxConnectionLifetimeMillis(maxConnectionLifetimeMillis);
+    cassandraHost.setConnectionLifetimeJitter(connectionLifetimeJitter);
+    cassandraHost.setValidateOnBorrow(validateOnBorrow);
+    cassandraHost.setValidationSkipWindowMillis(validationSkipWindowMillis);
+    cassandraHost.setValidationTimeoutSeconds(validationTimeoutSeconds);
+    cassandraHost.setLeakDetectionThresholdMillis(leakDetectionThresholdMillis);
+    cassandraHost.setLeakStackSampleRate(leakStackSampleRate);
+    cassandraHost.setReclaimLeakedConnections(reclaimLeakedConnections);
+    cassandraHost.setPoolStatsIntervalInSeconds(poolStatsIntervalInSeconds);
 
     // this is special as it can be passed in as a system property
     if (cassandraThriftSocketTimeout > 0) {
@@ -116,6 +176,10 @@ public class CassandraHostConfigurator implements Serializable {
     this.hosts = hosts;
   }
 
+  public int getMaxActive() {
+    return maxActive;
+  }
+
   public void setMaxActive(int maxActive) {
     this.maxActive = maxActive;
   }
@@ -124,6 +188,10 @@ public class CassandraHostConfigurator implements Serializable {
     this.maxIdle = maxIdle;
   }
 
+  public long getMaxWaitTimeWhenExhausted() {
+    return maxWaitTimeWhenExhausted;
+  }
+
   public void setMaxWaitTimeWhenExhausted(long maxWaitTimeWhenExhausted) {
     this.maxWaitTimeWhenExhausted = maxWaitTimeWhenExhausted;
   }
@@ -164,6 +232,45 @@ public class CassandraHostConfigurator implements Serializable {
     return retryDownedHostsDelayInSeconds;
   }
 
+  public int getRetryDownedHostsMaxDelayInSeconds() {
+    return retryDownedHostsMaxDelayInSeconds;
+  }
+
+  /**
+   * Upper bound of the delay between two retries of the same downed host. The delay 
+   * starts at retryDownedHostsDelayInSeconds and doubles after every failed retry.
+   */
+  public void setRetryDownedHostsMaxDelayInSeconds(int retryDownedHostsMaxDelayInSeconds) {
+    this.retryDownedHostsMaxDelayInSeconds = retryDownedHostsMaxDelayInSeconds;
+  }
+
+  public int getProbeConcurrency() {
+    return probeConcurrency;
+  }
+
+  /**
+   * How many hosts can be probed at the same time.
+   */
+  public void setProbeConcurrency(int probeConcurrency) {
+    this.probeConcurrency = probeConcurrency;
+  }
+
+  public int getProbeConnectTimeoutMillis() {
+    return probeConnectTimeoutMillis;
+  }
+
+  public void setProbeConnectTimeoutMillis(int probeConnectTimeoutMillis) {
+    this.probeConnectTimeoutMillis = probeConnectTimeoutMillis;
+  }
+
+  public int getProbeQueryTimeoutMillis() {
+    return probeQueryTimeoutMillis;
+  }
+
+  public void setProbeQueryTimeoutMillis(int probeQueryTimeoutMillis) {
+    this.probeQueryTimeoutMillis = probeQueryTimeoutMillis;
+  }
+
   public HOpTimer getOpTimer() {
 	  return opTimer;
   }
@@ -171,6 +278,21 @@ public class CassandraHostConfigurator implements Serializable {
   public void setOpTimer(HOpTimer opTimer) {
 	  this.opTimer = opTimer;
   }
+
+  /**
+   * @return the hostOpTimer if set, the opTimer adapted to it otherwise
+   */
+  public HostOpTimer getHostOpTimer() {
+    return hostOpTimer != null ? hostOpTimer : HOpTimerAdapter.adapt(opTimer);
+  }
+
+  /**
+   * Time operations, borrows and connects with a timer which allocates nothing per 
+   * operation, such as the {@link HistogramOpTimer}. Takes precedence over the opTimer.
+   */
+  public void setHostOpTimer(HostOpTimer hostOpTimer) {
+    this.hostOpTimer = hostOpTimer;
+  }
   
   @Override
   public String toString() {
@@ -243,7 +365,6 @@ public class CassandraHostConfigurator implements Serializable {
     this.useThriftFramedTransport = useThriftFramedTransport;
   }
 
-  /*
   public boolean getAutoDiscoverHosts() {
     return autoDiscoverHosts;
   }
@@ -259,7 +380,6 @@ public class CassandraHostConfigurator implements Serializable {
   public void setAutoDiscoveryDelayInSeconds(int autoDiscoveryDelayInSeconds) {
     this.autoDiscoveryDelayInSeconds = autoDiscoveryDelayInSeconds;
   }
-*/
 
   public LoadBalancingPolicy getLoadBalancingPolicy() {
     return loadBalancingPolicy;
@@ -269,6 +389,47 @@ public class CassandraHostConfigurator implements Serializable {
     this.loadBalancingPolicy = loadBalancingPolicy;
   }
 
+  public int getHostWeight() {
+    return hostWeight;
+  }
+
+  /**
+   * The weight given to hosts which are not listed in {@link #setHostWeights(String)}.
+   * Only used by {@link WeightedBalancingPolicy}.
+   */
+  public void setHostWeight(int hostWeight) {
+    this.hostWeight = hostWeight;
+  }
+
+  public String getHostWeights() {
+    return hostWeights;
+  }
+
+  /**
+   * Per host weights in the format of "[hostname]:[port]=[weight],...", for example
+   * "cass1:9160=200,cass2:9160=100". Only used by {@link WeightedBalancingPolicy}.
+   * Weights can be changed at runtime through
+   * {@link CassandraClientMonitorMBean#setCassandraHostWeight(String, int)}.
+   */
+  public void setHostWeights(String hostWeights) {
+    this.hostWeights = hostWeights;
+  }
+
+  private int getWeight(CassandraHost cassandraHost) {
+    if (hostWeights != null) {
+      for (String entry : hostWeights.split(",")) {
+        int separator = entry.lastIndexOf('=');
+        if (separator < 1) {
+          throw new IllegalArgumentException("Host weight must be in the format of [hostname]:[port]=[weight]: " + entry);
+        }
+        if (createCassandraHost(entry.substring(0, separator).trim()).equals(cassandraHost)) {
+          return Integer.parseInt(entry.substring(separator + 1).trim());
+        }
+      }
+    }
+    return hostWeight;
+  }
+
   public int getHostTimeoutCounter() {
     return hostTimeoutCounter;
   }
@@ -293,6 +454,423 @@ public class CassandraHostConfigurator implements Serializable {
     this.hostTimeoutSuspensionDurationInSeconds = hostTimeoutSuspensionDurationInSeconds;
   }
 
+  public int getHostTimeoutMaxSuspensionDurationInSeconds() {
+    return hostTimeoutMaxSuspensionDurationInSeconds;
+  }
+
+  /**
+   * Upper bound of the suspension duration of a host which keeps timing out. The 
+   * suspension duration doubles with every suspension until it reaches this value.
+   * Set it to the hostTimeoutSuspensionDurationInSeconds to disable the backoff.
+   */
+  public void setHostTimeoutMaxSuspensionDurationInSeconds(int hostTimeoutMaxSuspensionDurationInSeconds) {
+    this.hostTimeoutMaxSuspensionDurationInSeconds = hostTimeoutMaxSuspensionDurationInSeconds;
+  }
+
+  public double getHostTimeoutSuspensionJitter() {
+    return hostTimeoutSuspensionJitter;
+  }
+
+  /**
+   * Fraction of the suspension duration randomly added or removed from it, 0.2 by default.
+   */
+  public void setHostTimeoutSuspensionJitter(double hostTimeoutSuspensionJitter) {
+    if ( hostTimeoutSuspensionJitter < 0 || hostTimeoutSuspensionJitter >= 1 ) {
+      throw new IllegalArgumentException("hostTimeoutSuspensionJitter must be in [0, 1)");
+    }
+    this.hostTimeoutSuspensionJitter = hostTimeoutSuspensionJitter;
+  }
+
+  public int getHostTimeoutHealthyPeriodInSeconds() {
+    return hostTimeoutHealthyPeriodInSeconds;
+  }
+
+  /**
+   * How long a host must go without being suspended for its suspension duration 
+   * to go back to hostTimeoutSuspensionDurationInSeconds.
+   */
+  public void setHostTimeoutHealthyPeriodInSeconds(int hostTimeoutHealthyPeriodInSeconds) {
+    this.hostTimeoutHealthyPeriodInSeconds = hostTimeoutHealthyPeriodInSeconds;
+  }
+
+  public boolean getHostTimeoutProbeBeforeUnsuspend() {
+    return hostTimeoutProbeBeforeUnsuspend;
+  }
+
+  /**
+   * Open a dedicated connection to a suspended host, and run the validationQuery
+   * if any, before unsuspending it. The host stays suspended if this fails.
+   */
+  public void setHostTimeoutProbeBeforeUnsuspend(boolean hostTimeoutProbeBeforeUnsuspend) {
+    this.hostTimeoutProbeBeforeUnsuspend = hostTimeoutProbeBeforeUnsuspend;
+  }
+
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  /**
+   * CQL query run to check that a host, or a connection opened while warming up its 
+   * pool, is usable, e.g. "SELECT key FROM system.local".
+   * When not set, opening a connection is deemed enough.
+   */
+  public void setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery;
+  }
+
+  public List<String> getWarmupStatements() {
+    return warmupStatements;
+  }
+
+  /**
+   * CQL statements to prepare on every connection opened while warming up a new 
+   * host pool, before it starts taking requests.
+   */
+  public void setWarmupStatements(List<String> warmupStatements) {
+    this.warmupStatements = warmupStatements;
+  }
+
+  public boolean getFairBorrow() {
+    return fairBorrow;
+  }
+
+  /**
+   * Whether threads borrowing from an exhausted pool are served strictly in arrival
+   * order. When false, a newcomer may take a connection that was just released to
+   * the idle queue ahead of threads already waiting. Defaults to true.
+   */
+  public void setFairBorrow(boolean fairBorrow) {
+    this.fairBorrow = fairBorrow;
+  }
+
+  public int getWarmupConcurrency() {
+    return warmupConcurrency;
+  }
+
+  /**
+   * How many connections can be opened at the same time in the background, while 
+   * warming up host pools or for asynchronous borrows.
+   */
+  public void setWarmupConcurrency(int warmupConcurrency) {
+    this.warmupConcurrency = warmupConcurrency;
+  }
+
+  public int getStartupConcurrency() {
+    return startupConcurrency;
+  }
+
+  /**
+   * How many host pools are started at the same time when the cluster is created.
+   */
+  public void setStartupConcurrency(int startupConcurrency) {
+    this.startupConcurrency = startupConcurrency;
+  }
+
+  public long getStartupTimeoutMillis() {
+    return startupTimeoutMillis;
+  }
+
+  /**
+   * How long to wait for the host pools to start when the cluster is created. 
+   * The pools not started by then keep starting in the background.
+   */
+  public void setStartupTimeoutMillis(long startupTimeoutMillis) {
+    this.startupTimeoutMillis = startupTimeoutMillis;
+  }
+
+  public boolean getStartupQuorum() {
+    return startupQuorum;
+  }
+
+  /**
+   * Set to true to return from the cluster creation as soon as a majority of the 
+   * host pools are started, the others starting in the background.
+   */
+  public void setStartupQuorum(boolean startupQuorum) {
+    this.startupQuorum = startupQuorum;
+  }
+
+  public boolean getUseVirtualThreads() {
+    return useVirtualThreads;
+  }
+
+  /**
+   * Run the background services, pool warm-ups, asynchronous borrows and host probes 
+   * on virtual threads when the JVM supports them (Java 21 and later). Platform 
+   * threads are used otherwise. Defaults to false.
+   */
+  public void setUseVirtualThreads(boolean useVirtualThreads) {
+    this.useVirtualThreads = useVirtualThreads;
+  }
+
+  public boolean getUseJfrEvents() {
+    return useJfrEvents;
+  }
+
+  /**
+   * Report borrows, connects, closes, failovers, host state changes and load balancing 
+   * scores as Java Flight Recorder events, when running on a JVM which has it. Events 
+   * cost next to nothing unless a recording enables them. Defaults to false.
+   */
+  public void setUseJfrEvents(boolean useJfrEvents) {
+    this.useJfrEvents = useJfrEvents;
+  }
+
+  public long getMaxConnectionLifetimeMillis() {
+    return maxConnectionLifetimeMillis;
+  }
+
+  /**
+   * Retire connections after they have been open for this long, so that they get 
+   * spread again over the hosts after a restart or a topology change. Connections 
+   * are retired when released or, while idle, by the pool maintenance task, and 
+   * replaced in the background. 0, the default, keeps them for as long as they work.
+   */
+  public void setMaxConnectionLifetimeMillis(long maxConnectionLifetimeMillis) {
+    this.maxConnectionLifetimeMillis = maxConnectionLifetimeMillis;
+  }
+
+  public double getConnectionLifetimeJitter() {
+    return connectionLifetimeJitter;
+  }
+
+  /**
+   * The lifetime of each connection is randomly shortened by up to this fraction of 
+   * maxConnectionLifetimeMillis, so the connections opened at startup do not all 
+   * reconnect at once. 0.2 by default.
+   */
+  public void setConnectionLifetimeJitter(double connectionLifetimeJitter) {
+    if ( connectionLifetimeJitter < 0 || connectionLifetimeJitter >= 1 ) {
+      throw new IllegalArgumentException("Connection lifetime jitter must be in [0, 1)");
+    }
+    this.connectionLifetimeJitter = connectionLifetimeJitter;
+  }
+
+  public int getPoolMaintenanceIntervalInSeconds() {
+    return poolMaintenanceIntervalInSeconds;
+  }
+
+  /**
+   * How often idle connections are checked for expiry. 30 seconds by default.
+   */
+  public void setPoolMaintenanceIntervalInSeconds(int poolMaintenanceIntervalInSeconds) {
+    this.poolMaintenanceIntervalInSeconds = poolMaintenanceIntervalInSeconds;
+  }
+
+  public boolean getValidateOnBorrow() {
+    return validateOnBorrow;
+  }
+
+  /**
+   * Check idle connections before handing them out, with the validationQuery when set 
+   * or {@link java.sql.Connection#isValid(int)} otherwise. Broken connections are closed 
+   * and replaced instead of failing the operation, which would mark the whole host 
+   * as down. Defaults to false.
+   */
+  public void setValidateOnBorrow(boolean validateOnBorrow) {
+    this.validateOnBorrow = validateOnBorrow;
+  }
+
+  public long getValidationSkipWindowMillis() {
+    return validationSkipWindowMillis;
+  }
+
+  /**
+   * Skip the validation of connections used successfully within this many milliseconds, 
+   * so that busy pools do not pay for it. 500 by default.
+   */
+  public void setValidationSkipWindowMillis(long validationSkipWindowMillis) {
+    this.validationSkipWindowMillis = validationSkipWindowMillis;
+  }
+
+  public int getValidationTimeoutSeconds() {
+    return validationTimeoutSeconds;
+  }
+
+  /**
+   * How long {@link java.sql.Connection#isValid(int)} may take when validating on borrow.
+   * 2 by default.
+   */
+  public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+  }
+
+  public long getLeakDetectionThresholdMillis() {
+    return leakDetectionThresholdMillis;
+  }
+
+  /**
+   * Report connections borrowed for longer than this as leaked, in the logs and through 
+   * JMX, when the pool maintenance task runs. 0, the default, does not track borrowed 
+   * connections at all.
+   */
+  public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+    this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+  }
+
+  public int getLeakStackSampleRate() {
+    return leakStackSampleRate;
+  }
+
+  /**
+   * Capture where the connection was borrowed for one borrow out of this many, so that 
+   * leaks can be traced back to the code holding on to them. Capturing a stack is 
+   * expensive, 1 captures it for every borrow and 0 never does. 100 by default.
+   */
+  public void setLeakStackSampleRate(int leakStackSampleRate) {
+    this.leakStackSampleRate = leakStackSampleRate;
+  }
+
+  public boolean getReclaimLeakedConnections() {
+    return reclaimLeakedConnections;
+  }
+
+  /**
+   * Close leaked connections and give their slot back to the pool, instead of only 
+   * reporting them. Releasing a reclaimed connection afterwards does nothing. 
+   * Defaults to false.
+   */
+  public void setReclaimLeakedConnections(boolean reclaimLeakedConnections) {
+    this.reclaimLeakedConnections = reclaimLeakedConnections;
+  }
+
+  public int getPoolStatsIntervalInSeconds() {
+    return poolStatsIntervalInSeconds;
+  }
+
+  /**
+   * How many seconds the borrow wait time, connect time and saturation figures of each 
+   * pool cover. They are reported for the last complete interval. 60 by default.
+   */
+  public void setPoolStatsIntervalInSeconds(int poolStatsIntervalInSeconds) {
+    this.poolStatsIntervalInSeconds = poolStatsIntervalInSeconds;
+  }
+
+  public boolean getUseAdaptivePoolSizing() {
+    return useAdaptivePoolSizing;
+  }
+
+  /**
+   * Size each host pool after its measured arrival rate and operation latency, between 
+   * adaptivePoolSizingMinActive and maxActive, rather than letting every pool open up 
+   * to maxActive connections. Defaults to false.
+   */
+  public void setUseAdaptivePoolSizing(boolean useAdaptivePoolSizing) {
+    this.useAdaptivePoolSizing = useAdaptivePoolSizing;
+  }
+
+  public int getAdaptivePoolSizingIntervalInSeconds() {
+    return adaptivePoolSizingIntervalInSeconds;
+  }
+
+  /**
+   * How often the pools are measured and resized.
+   */
+  public void setAdaptivePoolSizingIntervalInSeconds(int adaptivePoolSizingIntervalInSeconds) {
+    this.adaptivePoolSizingIntervalInSeconds = adaptivePoolSizingIntervalInSeconds;
+  }
+
+  public int getAdaptivePoolSizingMinActive() {
+    return adaptivePoolSizingMinActive;
+  }
+
+  /**
+   * The size below which an idle pool is never shrunk.
+   */
+  public void setAdaptivePoolSizingMinActive(int adaptivePoolSizingMinActive) {
+    this.adaptivePoolSizingMinActive = adaptivePoolSizingMinActive;
+  }
+
+  public double getAdaptivePoolSizingHeadroom() {
+    return adaptivePoolSizingHeadroom;
+  }
+
+  /**
+   * Extra connections kept to absorb bursts, as a fraction of the measured need. 
+   * 0.25 by default.
+   */
+  public void setAdaptivePoolSizingHeadroom(double adaptivePoolSizingHeadroom) {
+    if ( adaptivePoolSizingHeadroom < 0 ) {
+      throw new IllegalArgumentException("Headroom must not be negative");
+    }
+    this.adaptivePoolSizingHeadroom = adaptivePoolSizingHeadroom;
+  }
+
+  public double getAdaptivePoolSizingHysteresis() {
+    return adaptivePoolSizingHysteresis;
+  }
+
+  /**
+   * How far, as a fraction of its size, the need of a pool has to move before 
+   * it gets resized. 0.1 by default.
+   */
+  public void setAdaptivePoolSizingHysteresis(double adaptivePoolSizingHysteresis) {
+    if ( adaptivePoolSizingHysteresis < 0 ) {
+      throw new IllegalArgumentException("Hysteresis must not be negative");
+    }
+    this.adaptivePoolSizingHysteresis = adaptivePoolSizingHysteresis;
+  }
+
+  public long getSlowOperationThresholdMillis() {
+    return slowOperationThresholdMillis;
+  }
+
+  /**
+   * Statements taking at least this long are logged and aggregated per host by the 
+   * {@link SlowOperationTracker}. 0, the default, does not track them.
+   */
+  public void setSlowOperationThresholdMillis(long slowOperationThresholdMillis) {
+    this.slowOperationThresholdMillis = slowOperationThresholdMillis;
+  }
+
+  public int getSlowOperationTopN() {
+    return slowOperationTopN;
+  }
+
+  /**
+   * How many distinct slow statements are kept per host, those with the highest 
+   * total time. 20 by default.
+   */
+  public void setSlowOperationTopN(int slowOperationTopN) {
+    this.slowOperationTopN = slowOperationTopN;
+  }
+
+  public int getSlowOperationLogIntervalInSeconds() {
+    return slowOperationLogIntervalInSeconds;
+  }
+
+  /**
+   * How often the slow statements are logged, if any were recorded since they last were.
+   */
+  public void setSlowOperationLogIntervalInSeconds(int slowOperationLogIntervalInSeconds) {
+    this.slowOperationLogIntervalInSeconds = slowOperationLogIntervalInSeconds;
+  }
+
+  public int getMetricsPort() {
+    return metricsPort;
+  }
+
+  /**
+   * Serve the metrics of the cluster in the Prometheus text format on this port, see 
+   * {@link PrometheusExporter}. Every cluster needs a port of its own. 0, the default, 
+   * does not serve them.
+   */
+  public void setMetricsPort(int metricsPort) {
+    this.metricsPort = metricsPort;
+  }
+
+  public String getMetricsBindAddress() {
+    return metricsBindAddress;
+  }
+
+  /**
+   * The address the metrics are served on, 127.0.0.1 by default so that only local 
+   * scrapers reach them.
+   */
+  public void setMetricsBindAddress(String metricsBindAddress) {
+    this.metricsBindAddress = metricsBindAddress;
+  }
+
   public int getHostTimeoutUnsuspendCheckDelay() {
     return hostTimeoutUnsuspendCheckDelay;
   }
@@ -0,0 +1,252 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cassandra.cql.jdbc.CassandraDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * Checks that a host is usable by opening a dedicated connection to it, outside
+ * of any pool, and running the validation query on it when one is configured.
+ * 
+ * Probes run in parallel, at most probeConcurrency at a time. The connection and
+ * the query are each bounded by their own timeout, enforced here rather than left
+ * to the driver, so a blackholed host only holds a probe for probeConnectTimeoutMillis.
+ * The connection attempts themselves run on a separate pool of daemon threads
+ * which are abandoned on timeout, closing their connection if it ever gets opened.
+ * The driver offers no connect timeout, so an abandoned attempt holds its thread until 
+ * the operating system gives up; there are at most ATTEMPTS_PER_PROBE * probeConcurrency 
+ * of them, a probe failing right away once they are all busy.
+ */
+public class CassandraHostProbe {
+
+  private static final Logger log = LoggerFactory.getLogger(CassandraHostProbe.class);
+
+  public static final int DEF_PROBE_CONCURRENCY = 4;
+  public static final int DEF_PROBE_CONNECT_TIMEOUT_MILLIS = 2000;
+  public static final int DEF_PROBE_QUERY_TIMEOUT_MILLIS = 2000;
+
+  /** Connection attempts, pending or abandoned, allowed per concurrent probe */
+  static final int ATTEMPTS_PER_PROBE = 4;
+
+  private final String validationQuery;
+  private final long connectTimeoutMillis;
+  private final long queryTimeoutMillis;
+
+  private final ThreadPoolExecutor probeExecutor;
+  private final ExecutorService attemptExecutor;
+
+  private final AtomicLong probeCount = new AtomicLong();
+  private final AtomicLong probeFailureCount = new AtomicLong();
+  private final AtomicLong probeTimeNanos = new AtomicLong();
+  private final Map<CassandraHost, Long> lastProbeNanos = new ConcurrentHashMap<CassandraHost, Long>();
+
+  public CassandraHostProbe(CassandraHostConfigurator cassandraHostConfigurator) {
+    this.validationQuery = cassandraHostConfigurator.getValidationQuery();
+    this.connectTimeoutMillis = cassandraHostConfigurator.getProbeConnectTimeoutMillis();
+    this.queryTimeoutMillis = cassandraHostConfigurator.getProbeQueryTimeoutMillis();
+    int concurrency = Math.max(1, cassandraHostConfigurator.getProbeConcurrency());
+    boolean virtual = cassandraHostConfigurator.getUseVirtualThreads();
+    probeExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, 
+        new LinkedBlockingQueue<Runnable>(), new DaemonThreadPoolFactory(getClass(), virtual));
+    probeExecutor.allowCoreThreadTimeOut(true);
+    attemptExecutor = new ThreadPoolExecutor(0, concurrency * ATTEMPTS_PER_PROBE, 60, TimeUnit.SECONDS, 
+        new SynchronousQueue<Runnable>(), new DaemonThreadPoolFactory(ProbeAttempt.class, virtual));
+  }
+
+  /**
+   * Probe the host in the background.
+   * @return the outcome of the probe, which never fails nor takes much longer than 
+   *         the connect and query timeouts once started
+   */
+  public ListenableFuture<Boolean> submit(final CassandraHost cassandraHost) {
+    ListenableFutureTask<Boolean> task = new ListenableFutureTask<Boolean>(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return doProbe(cassandraHost);
+      }
+    });
+    probeExecutor.execute(task);
+    return task;
+  }
+
+  /**
+   * Probe the host, waiting for the outcome.
+   * @return true if a connection could be opened and validated in time
+   */
+  public boolean probe(CassandraHost cassandraHost) {
+    try {
+      return submit(cassandraHost).get();
+    } catch (RejectedExecutionException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  private boolean doProbe(CassandraHost cassandraHost) {
+    long start = System.nanoTime();
+    boolean success = false;
+    ProbeAttempt attempt = new ProbeAttempt(cassandraHost);
+    Future<Boolean> result = null;
+    try {
+      result = attemptExecutor.submit(attempt);
+      if ( !attempt.connected.await(connectTimeoutMillis, TimeUnit.MILLISECONDS) ) {
+        log.info("Probe of CassandraHost {} could not connect within {}ms", cassandraHost, connectTimeoutMillis);
+      } else {
+        success = result.get(queryTimeoutMillis, TimeUnit.MILLISECONDS);
+      }
+    } catch (TimeoutException e) {
+      log.info("Probe of CassandraHost {} did not answer within {}ms", cassandraHost, queryTimeoutMillis);
+    } catch (ExecutionException e) {
+      log.info("Probe of CassandraHost {} failed: {}", cassandraHost, e.getCause().toString());
+    } catch (RejectedExecutionException e) {
+      log.info("Probe of CassandraHost {} skipped, too many connection attempts still pending", cassandraHost);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if ( !success && result != null ) {
+        result.cancel(true);
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    probeCount.incrementAndGet();
+    probeTimeNanos.addAndGet(elapsed);
+    if ( success ) {
+      lastProbeNanos.put(cassandraHost, elapsed);
+    } else {
+      probeFailureCount.incrementAndGet();
+      lastProbeNanos.put(cassandraHost, -1L);
+    }
+    return success;
+  }
+
+  public long getProbeCount() {
+    return probeCount.get();
+  }
+
+  public long getProbeFailureCount() {
+    return probeFailureCount.get();
+  }
+
+  /**
+   * @return the average time taken by a probe, successful or not, in milliseconds
+   */
+  public double getProbeAverageTimeMillis() {
+    long count = probeCount.get();
+    return count == 0 ? 0 : probeTimeNanos.get() / (count * 1000000.0);
+  }
+
+  /**
+   * @return the duration of the last probe of each host in the format of 
+   *         "[hostname]:[port]=[millis]", or "[hostname]:[port]=failed"
+   */
+  public List<String> getLastProbeTimes() {
+    List<String> times = new ArrayList<String>();
+    for (Map.Entry<CassandraHost, Long> entry : lastProbeNanos.entrySet()) {
+      long nanos = entry.getValue();
+      times.add(entry.getKey().getUrl() + "=" 
+          + (nanos < 0 ? "failed" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(nanos))));
+    }
+    return times;
+  }
+
+  public void shutdown() {
+    probeExecutor.shutdownNow();
+    attemptExecutor.shutdownNow();
+  }
+
+  /**
+   * Connects, counts down [connected] whatever the outcome, then runs the validation query. 
+   */
+  private class ProbeAttempt implements Callable<Boolean> {
+    private final CassandraHost cassandraHost;
+    private final CountDownLatch connected = new CountDownLatch(1);
+
+    ProbeAttempt(CassandraHost cassandraHost) {
+      this.cassandraHost = cassandraHost;
+    }
+
+    @Override
+    public Boolean call() throws SQLException {
+      CassandraDataSource ds = new CassandraDataSource(cassandraHost.getHost(), cassandraHost.getPort(), 
+          cassandraHost.getKeyspaceName(), cassandraHost.getUser(), cassandraHost.getPassword());
+      Connection connection = null;
+      Statement statement = null;
+      try {
+        try {
+          connection = ds.getConnection(cassandraHost.getUser(), cassandraHost.getPassword());
+        } finally {
+          connected.countDown();
+        }
+        if ( validationQuery != null && !Thread.currentThread().isInterrupted() ) {
+          statement = connection.createStatement();
+          statement.execute(validationQuery);
+        }
+        return !Thread.currentThread().isInterrupted();
+      } finally {
+        close(statement, connection);
+      }
+    }
+  }
+
+  private void close(Statement statement, Connection connection) {
+    try {
+      if ( statement != null ) {
+        statement.close();
+      }
+    } catch (SQLException e) {
+      log.debug("Unable to close probe statement", e);
+    }
+    try {
+      if ( connection != null ) {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      log.debug("Unable to close probe connection", e);
+    }
+  }
+}
@@ -17,26 +17,41 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.cassandra.cql.jdbc.CassandraDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Retries the downed hosts every retryDelayInSeconds, probing them in parallel
+ * through the {@link CassandraHostProbe} of the connection manager. A host which 
+ * still fails waits twice as long before its next retry, up to maxRetryDelayInSeconds.
+ * The outcome of a probe is handled on the probe thread, so that neither the shared 
+ * scheduler nor the threads adding hosts wait for probes. A host is probed once at a 
+ * time, however long its probe takes.
+ */
 public class CassandraHostRetryService extends BackgroundCassandraHostService {
 
   private static Logger log = LoggerFactory.getLogger(CassandraHostRetryService.class);
 
   public static final int DEF_QUEUE_SIZE = -1;
   public static final int DEF_RETRY_DELAY = 10;
+  public static final int DEF_MAX_RETRY_DELAY = 300;
   private final LinkedBlockingQueue<CassandraHost> downedHostQueue;
+  private final ConcurrentHashMap<CassandraHost, Backoff> backoffs;
+  private final ConcurrentHashMap<CassandraHost, Boolean> probing;
+  private final CassandraHostProbe probe;
+  private final int maxRetryDelayInSeconds;
 
   public CassandraHostRetryService(HConnectionManager connectionManager,
       CassandraHostConfigurator cassandraHostConfigurator) {
@@ -44,6 +59,10 @@ public class CassandraHostRetryService extends BackgroundCassandraHostService {
     this.retryDelayInSeconds = cassandraHostConfigurator.getRetryDownedHostsDelayInSeconds();
     downedHostQueue = new LinkedBlockingQueue<CassandraHost>(cassandraHostConfigurator.getRetryDownedHostsQueueSize() < 1 
         ? Integer.MAX_VALUE : cassandraHostConfigurator.getRetryDownedHostsQueueSize());
+    backoffs = new ConcurrentHashMap<CassandraHost, Backoff>();
+    probing = new ConcurrentHashMap<CassandraHost, Boolean>();
+    probe = connectionManager.getHostProbe();
+    maxRetryDelayInSeconds = cassandraHostConfigurator.getRetryDownedHostsMaxDelayInSeconds();
           
     sf = executor.scheduleWithFixedDelay(new RetryRunner(), this.retryDelayInSeconds,this.retryDelayInSeconds, TimeUnit.SECONDS);
 
@@ -58,32 +77,63 @@ public class CassandraHostRetryService extends BackgroundCassandraHostService {
     if ( sf != null ) {
       sf.cancel(true);
     }
-    if ( executor != null ) {
-      executor.shutdownNow();
-    }
     log.info("Downed Host retry shutdown complete");
   }
 
   public void add(final CassandraHost cassandraHost) {
+    backoffs.remove(cassandraHost);
     downedHostQueue.add(cassandraHost);
     if ( log.isInfoEnabled() ) {
       log.info("Host detected as down was added to retry queue: {}", cassandraHost.getName());
     }
     
-    //schedule a check of this host immediately,
-    executor.submit(new Runnable() {
+    // check this host right away
+    retry(cassandraHost);
+  }
+
+  /**
+   * Probe the host in the background, and add it back or back off once done. 
+   * Skipped while the previous probe of the host is still in flight.
+   */
+  private void retry(final CassandraHost cassandraHost) {
+    if ( probing.putIfAbsent(cassandraHost, Boolean.TRUE) != null ) {
+      log.debug("Still probing {}, skipping retry", cassandraHost);
+      return;
+    }
+    final ListenableFuture<Boolean> result;
+    try {
+      result = probe.submit(cassandraHost);
+    } catch (RejectedExecutionException e) {
+      probing.remove(cassandraHost);
+      log.debug("Probes are shut down, skipping retry of {}", cassandraHost);
+      return;
+    }
+    result.addListener(new Runnable() {
       @Override
       public void run() {
-        if(downedHostQueue.contains(cassandraHost) && verifyConnection(cassandraHost)) {
-          connectionManager.addCassandraHost(cassandraHost);
-          downedHostQueue.remove(cassandraHost);
-          return;
+        boolean reconnected = false;
+        try {
+          reconnected = result.get();
+        } catch (ExecutionException e) {
+          log.error("Unexpected probe failure", e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        log.info("Downed Host retry status {} with host: {}", reconnected, cassandraHost.getName());
+        try {
+          // unless removed while we were probing
+          if ( downedHostQueue.contains(cassandraHost) ) {
+            retried(cassandraHost, reconnected);
+          }
+        } finally {
+          probing.remove(cassandraHost);
         }
       }
-    });
+    }, MoreExecutors.sameThreadExecutor());
   }
 
   public boolean remove(CassandraHost cassandraHost) {
+      backoffs.remove(cassandraHost);
       return downedHostQueue.remove(cassandraHost);
   }
   
@@ -103,6 +153,7 @@ public class CassandraHostRetryService extends BackgroundCassandraHostService {
 
   public void flushQueue() {
     downedHostQueue.clear();
+    backoffs.clear();
     log.info("Downed Host retry queue flushed.");
   }
 
@@ -115,59 +166,70 @@ public class CassandraHostRetryService extends BackgroundCassandraHostService {
       if( downedHostQueue.isEmpty()) {
           log.debug("Retry service fired... nothing to do.");
           return;
-      }  
-      Iterator<CassandraHost> iter = downedHostQueue.iterator();
-      while( iter.hasNext() ) {
-        CassandraHost cassandraHost = iter.next();
-        if( cassandraHost == null ) {
+      }
+      long now = System.nanoTime();
+      for (CassandraHost cassandraHost : downedHostQueue) {
+        if ( probing.containsKey(cassandraHost) ) {
           continue;
         }
-        boolean reconnected = verifyConnection(cassandraHost);
-        log.info("Downed Host retry status {} with host: {}", reconnected, cassandraHost.getName());
-        if ( reconnected ) {
-          connectionManager.addCassandraHost(cassandraHost);
-          //we can't call iter.remove() based on return value of connectionManager.addCassandraHost, since
-          //that returns false if an error occurs, or if the host already exists
-          if(connectionManager.getHosts().contains(cassandraHost)) {
-            iter.remove();
-          }
+        Backoff backoff = backoffs.get(cassandraHost);
+        if ( backoff == null || backoff.isDue(now) ) {
+          retry(cassandraHost);
         }
       }
     }
   }
 
+  private void retried(CassandraHost cassandraHost, boolean reconnected) {
+    if ( reconnected ) {
+      connectionManager.addCassandraHost(cassandraHost);
+      //we can't remove the host based on return value of connectionManager.addCassandraHost, since
+      //that returns false if an error occurs, or if the host already exists
+      if(connectionManager.getHosts().contains(cassandraHost)) {
+        downedHostQueue.remove(cassandraHost);
+        backoffs.remove(cassandraHost);
+        return;
+      }
+    }
+    Backoff backoff = backoffs.get(cassandraHost);
+    if ( backoff == null ) {
+      Backoff created = new Backoff();
+      backoff = backoffs.putIfAbsent(cassandraHost, created);
+      if ( backoff == null ) {
+        backoff = created;
+      }
+    }
+    long delay = backoff.failed(retryDelayInSeconds, Math.max(retryDelayInSeconds, maxRetryDelayInSeconds));
+    if ( log.isDebugEnabled() ) {
+      log.debug("Next retry of downed host {} in {}s", cassandraHost.getName(), delay);
+    }
+  }
+
+  /**
+   * Retry schedule of a downed host. Updated by the probes of the host, which 
+   * may complete concurrently, and read by the retry runner.
+   */
+  static class Backoff {
+    private int failures;
+    private long nextRetryNanos;
 
-  private boolean verifyConnection(CassandraHost cassandraHost) {
-    if ( cassandraHost == null ) {
-      return false;
+    synchronized boolean isDue(long nowNanos) {
+      return nowNanos - nextRetryNanos >= 0;
     }
 
-    boolean found = false;
-    CassandraDataSource ds = new CassandraDataSource(cassandraHost.getHost(),
-                                                     cassandraHost.getPort(),
-                                                     cassandraHost.getKeyspaceName(),
-                                                     cassandraHost.getUser(),
-                                                     cassandraHost.getPassword());
-    Connection conn = null;
-    try {
-      conn = ds.getConnection();
-      // May be add some queries
-    } catch (SQLException e) {
-      if (log.isDebugEnabled()) {
-        log.debug("Downed {} host still appears to be down: {}", cassandraHost, e);
-      } else {
-        log.info("Downed {} host still appears to be down: {}", cassandraHost, e.getMessage());
-      }
-    } finally {
-      try {
-        conn.close();
-      } catch (Exception e) { 
-          // Ignoring this. Nothing we can do.
+    /**
+     * @return the delay in seconds before the next retry
+     */
+    synchronized long failed(long retryDelayInSeconds, long maxRetryDelayInSeconds) {
+      long delay = retryDelayInSeconds;
+      for (int i = 0; i < failures && delay < maxRetryDelayInSeconds; i++) {
+        delay *= 2;
       }
+      delay = Math.min(delay, maxRetryDelayInSeconds);
+      failures++;
+      // retries fire every retryDelayInSeconds, leave some slack so we do not miss one
+      nextRetryNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay) - TimeUnit.SECONDS.toNanos(retryDelayInSeconds) / 2;
+      return delay;
     }
-
-    ds = null;
-    conn = null;
-    return found;
   }
 }
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraClientMonitor.Counter;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.StripedCounter;
+
+/**
+ * One {@link StripedCounter} for every {@link Counter}, indexed by its ordinal. The client 
+ * monitor keeps one set for the whole cluster and every {@link CassandraHost} one of its own.
+ */
+public final class ClientCounters {
+
+  private static final Counter[] COUNTERS = Counter.values();
+
+  private final StripedCounter[] counters = new StripedCounter[COUNTERS.length];
+
+  public ClientCounters() {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = new StripedCounter();
+    }
+  }
+
+  public void inc(Counter counter) {
+    counters[counter.ordinal()].increment();
+  }
+
+  public long get(Counter counter) {
+    return counters[counter.ordinal()].sum();
+  }
+
+  /**
+   * @return the non zero counters in the format of "[COUNTER]=[count]", separated by spaces
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Counter counter : COUNTERS) {
+      long count = get(counter);
+      if ( count != 0 ) {
+        if ( sb.length() > 0 ) {
+          sb.append(' ');
+        }
+        sb.append(counter).append('=').append(count);
+      }
+    }
+    return sb.toString();
+  }
+}
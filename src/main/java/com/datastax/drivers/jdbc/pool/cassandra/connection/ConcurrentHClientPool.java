@@ -18,28 +18,50 @@
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import org.apache.cassandra.cql.jdbc.CassandraDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HPoolExhaustedException;
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HPoolInnactiveException;
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HectorException;
 import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
 
 public class ConcurrentHClientPool implements HClientPool {
 
   private static final Logger log = LoggerFactory.getLogger(ConcurrentHClientPool.class);
 
-  private final ArrayBlockingQueue<CassandraConnectionHandle> availableConnectionQueue;
+  private final LinkedBlockingQueue<CassandraConnectionHandle> availableConnectionQueue;
   private final AtomicInteger activeConnectionCount;
   private final AtomicInteger realActiveConnectionCount;
 
@@ -50,31 +72,151 @@ public class ConcurrentHClientPool implements HClientPool {
   private final AtomicInteger numBlocked;
   private final AtomicBoolean active;
 
-  private final long maxWaitTimeWhenExhausted;
+  /** How many connections may be open, up to the maxActive of the host */
+  private volatile int maxActive;
+
+  private final AtomicLong borrowCount;
+  private final AtomicLong releaseCount;
+  private final AtomicLong busyTimeNanos;
+
+  /** Where retired connections get replaced, the executor the pool was warmed on */
+  private volatile ExecutorService backgroundExecutor;
+  private final Random random = new Random();
+
+  /** Connections handed out, tracked only when leak detection is on */
+  private final ConcurrentHashMap<CassandraConnectionHandle, Boolean> borrowed;
+  private final boolean trackBorrowed;
+
+  /** Whether borrowers wait their turn rather than grab a connection ahead of waiters */
+  private final boolean fair;
+
+  /** Borrowers waiting for a connection, oldest first */
+  private final ConcurrentLinkedQueue<Waiter> waiters;
+
+  private final PoolStats stats;
+  /** Also told about borrow waits and connects, set by the connection manager */
+  private volatile HostOpTimer opTimer = HOpTimerAdapter.adapt(null);
 
   public ConcurrentHClientPool(CassandraHost host) throws SQLException {
     this.cassandraHost = host;
     ds = new CassandraDataSource(cassandraHost.getHost(), cassandraHost.getPort(), cassandraHost.getKeyspaceName(),
             cassandraHost.getUser(), cassandraHost.getPassword());
 
-    availableConnectionQueue = new ArrayBlockingQueue<CassandraConnectionHandle>(cassandraHost.getMaxActive(), true);
+    // not bounded, so that maxActive can be raised at runtime; the counters below keep it in check
+    availableConnectionQueue = new LinkedBlockingQueue<CassandraConnectionHandle>();
     // This counter can be offset by as much as the number of threads.
     activeConnectionCount = new AtomicInteger(0);
     realActiveConnectionCount = new AtomicInteger(0);
     numBlocked = new AtomicInteger();
     active = new AtomicBoolean(true);
+    waiters = new ConcurrentLinkedQueue<Waiter>();
+    fair = cassandraHost.getFairBorrow();
+    maxActive = cassandraHost.getMaxActive();
+    borrowCount = new AtomicLong();
+    releaseCount = new AtomicLong();
+    busyTimeNanos = new AtomicLong();
+    borrowed = new ConcurrentHashMap<CassandraConnectionHandle, Boolean>();
+    trackBorrowed = cassandraHost.getLeakDetectionThresholdMillis() > 0;
+    stats = new PoolStats(cassandraHost.getPoolStatsIntervalInSeconds());
+  }
 
-    maxWaitTimeWhenExhausted = cassandraHost.getMaxWaitTimeWhenExhausted() < 0 ? 0 : cassandraHost.getMaxWaitTimeWhenExhausted();
+  /**
+   * @return how long to wait for a connection once exhausted, 0 to wait forever. Read 
+   *         from the host every time as it can be changed at runtime.
+   */
+  private long getMaxWaitTimeWhenExhausted() {
+    return Math.max(0, cassandraHost.getMaxWaitTimeWhenExhausted());
+  }
 
+  /**
+   * Opens maxActive/3 connections in parallel on the given executor, validating
+   * each of them and preparing the warmup statements on it. If any of them fails,
+   * the others are closed and the pool stays empty.
+   */
+  @Override
+  public void warm(ExecutorService executor) throws SQLException {
+    backgroundExecutor = executor;
+    List<Future<CassandraConnectionHandle>> futures = new ArrayList<Future<CassandraConnectionHandle>>();
     for (int i = 0; i < cassandraHost.getMaxActive() / 3; i++) {
-        availableConnectionQueue.add(createConnection());
+      futures.add(executor.submit(new Callable<CassandraConnectionHandle>() {
+        @Override
+        public CassandraConnectionHandle call() throws SQLException {
+          return createWarmConnection();
+        }
+      }));
+    }
+
+    List<CassandraConnectionHandle> connections = new ArrayList<CassandraConnectionHandle>(futures.size());
+    SQLException failure = null;
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        connections.add(futures.get(i).get());
+      } catch (ExecutionException e) {
+        if ( failure == null ) {
+          failure = e.getCause() instanceof SQLException ? (SQLException) e.getCause() 
+              : new SQLException("Unable to warm up pool for " + getName(), e.getCause());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = new SQLException("Interrupted while warming up pool for " + getName(), e);
+        // wait no more, but still close what is already open
+        for (int j = i; j < futures.size(); j++) {
+          if ( !futures.get(j).cancel(true) ) {
+            CassandraConnectionHandle conn = tryGet(futures.get(j));
+            if ( conn != null ) {
+              connections.add(conn);
+            }
+          }
+        }
+        break;
+      }
+    }
+
+    if ( failure != null ) {
+      for (CassandraConnectionHandle conn : connections) {
+        closeConnection(conn);
+      }
+      throw failure;
     }
+    availableConnectionQueue.addAll(connections);
 
     if ( log.isDebugEnabled() ) {
       log.debug("Concurrent Host pool started with {} active clients; max: {} exhausted wait: {}",
           new Object[]{getNumIdle(),
-          cassandraHost.getMaxActive(),
-          maxWaitTimeWhenExhausted});
+          maxActive,
+          getMaxWaitTimeWhenExhausted()});
+    }
+  }
+
+  static CassandraConnectionHandle tryGet(Future<CassandraConnectionHandle> future) {
+    try {
+      return future.get(0, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private CassandraConnectionHandle createWarmConnection() throws SQLException {
+    CassandraConnectionHandle conn = createConnection();
+    try {
+      if ( cassandraHost.getValidationQuery() != null ) {
+        Statement statement = conn.getInternalConnection().createStatement();
+        try {
+          statement.execute(cassandraHost.getValidationQuery());
+        } finally {
+          statement.close();
+        }
+      }
+      for (String cql : cassandraHost.getWarmupStatements()) {
+        conn.getInternalConnection().prepareStatement(cql).close();
+      }
+      return conn;
+    } catch (SQLException e) {
+      closeConnection(conn);
+      throw e;
+    } catch (RuntimeException e) {
+      closeConnection(conn);
+      throw e;
     }
   }
 
@@ -85,80 +227,409 @@ public class ConcurrentHClientPool implements HClientPool {
       throw new HPoolInnactiveException("Attempt to borrow on in-active pool: " + getName());
     }
 
-    CassandraConnectionHandle conn = availableConnectionQueue.poll();
-    int currentActiveClients = activeConnectionCount.incrementAndGet();
-
+    long borrowNumber = borrowCount.incrementAndGet();
+    long start = System.nanoTime();
+    HostOpTimer timer = opTimer;
+    long timerToken = timer.start();
+    boolean exhausted = false;
+    CassandraConnectionHandle conn = null;
     try {
+      conn = pollValidIdle();
+      int currentActiveClients = activeConnectionCount.incrementAndGet();
 
-      if ( conn == null ) {
+      if ( conn == null && currentActiveClients > maxActive ) {
+        exhausted = true;
+        switch ( cassandraHost.getExhaustedPolicy() ) {
+        case WHEN_EXHAUSTED_FAIL:
+          activeConnectionCount.decrementAndGet();
+          throw exhausted();
+        case WHEN_EXHAUSTED_GROW:
+          // open one more, it is closed on release if still above maxActive
+          break;
+        default:
+          // We can't grow so let's wait for a connection to be handed to us.
+          conn = waitForConnection(borrowNumber);
+          return conn;
+        }
+      }
 
-        if (currentActiveClients <= cassandraHost.getMaxActive()) {
-            conn = createConnection();
-        } else {
-          // We can't grow so let's wait for a connection to become available.
-            conn = waitForConnection();
+      try {
+
+        if ( conn == null ) {
+          conn = createConnection();
+        }
+
+        if ( conn == null ) {
+          // Abnormal situation.
+          throw new HectorException("HConnectionManager returned a null client after aquisition - are we shutting down?");
         }
+      } catch (RuntimeException e) {
+        activeConnectionCount.decrementAndGet();
+        throw e;
+      } catch (SQLException e) {
+        activeConnectionCount.decrementAndGet();
+        throw e;
       }
 
-      if ( conn == null ) {
-        // Abnormal situation.
-        throw new HectorException("HConnectionManager returned a null client after aquisition - are we shutting down?");
+      checkOut(conn, borrowSite(), borrowStack(borrowNumber));
+      return conn;
+    } finally {
+      long waitNanos = System.nanoTime() - start;
+      stats.recordBorrow(waitNanos, exhausted);
+      stopTimer(timer, timerToken, OperationType.BORROW_WAIT, conn != null);
+      if ( conn != null ) {
+        PoolEvents.borrowed(cassandraHost, waitNanos);
       }
-    } catch (RuntimeException e) {
-      activeConnectionCount.decrementAndGet();
-      throw e;
-    } catch (SQLException e) {
-      activeConnectionCount.decrementAndGet();
-      throw e;
     }
+  }
 
+  /**
+   * Account for a connection being handed to a borrower.
+   */
+  private void checkOut(CassandraConnectionHandle conn, String borrowThread, Throwable borrowStack) {
     realActiveConnectionCount.incrementAndGet();
-    return conn;
+    conn.checkOut();
+    conn.startToUse();
+    if ( trackBorrowed ) {
+      conn.setBorrowSite(borrowThread, borrowStack);
+      borrowed.put(conn, Boolean.TRUE);
+    }
   }
 
+  private void undoCheckOut(CassandraConnectionHandle conn) {
+    if ( trackBorrowed ) {
+      borrowed.remove(conn);
+    }
+    conn.checkIn();
+    realActiveConnectionCount.decrementAndGet();
+  }
 
-  private CassandraConnectionHandle waitForConnection() {
-    CassandraConnectionHandle conn = null;
-    numBlocked.incrementAndGet();
+  private String borrowSite() {
+    return trackBorrowed ? Thread.currentThread().getName() : null;
+  }
 
-    // blocked take on the queue if we are configured to wait forever
-    if ( log.isDebugEnabled() ) {
-      log.debug("blocking on queue - current block count {}", numBlocked.get());
+  /**
+   * @return where the borrow comes from, captured for one borrow in leakStackSampleRate
+   */
+  private Throwable borrowStack(long borrowNumber) {
+    int sampleRate = cassandraHost.getLeakStackSampleRate();
+    if ( !trackBorrowed || sampleRate <= 0 || borrowNumber % sampleRate != 0 ) {
+      return null;
     }
+    return new Throwable("Connection of " + cassandraHost.getUrl() + " borrowed here");
+  }
 
-    try {
-      // wait and catch, creating a new one if the counts have changed. Infinite wait should just recurse.
-      if (maxWaitTimeWhenExhausted == 0) {
-
-        while (conn == null && active.get()) {
-          try {
-            conn = availableConnectionQueue.poll(100, TimeUnit.MILLISECONDS);
-          } catch (InterruptedException ie) {
-            log.error("InterruptedException poll operation on retry forever", ie);
-            break;
+  /**
+   * Borrow without blocking. The future completes right away with an idle connection,
+   * with a new one opened on [executor] if there is room to grow, or with the next 
+   * connection released once exhausted. Idle connections needing validation are 
+   * validated on [executor] too. In the latter case it fails with a 
+   * {@link HPoolExhaustedException} after maxWaitTimeWhenExhausted, scheduled on 
+   * [scheduler]. Cancelling the future gives up the wait.
+   */
+  @Override
+  public ListenableFuture<CassandraConnectionHandle> borrowClientAsync(ExecutorService executor, 
+      ScheduledExecutorService scheduler) {
+    if ( !active.get() ) {
+      return Futures.immediateFailedFuture(
+          new HPoolInnactiveException("Attempt to borrow on in-active pool: " + getName()));
+    }
+
+    long borrowNumber = borrowCount.incrementAndGet();
+    final long start = System.nanoTime();
+    final HostOpTimer timer = opTimer;
+    final long timerToken = timer.start();
+    CassandraConnectionHandle conn = pollIdle();
+    int currentActiveClients = activeConnectionCount.incrementAndGet();
+    final Waiter waiter = new Waiter(borrowNumber);
+    final boolean exhausted = conn == null && currentActiveClients > maxActive;
+    waiter.future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        long waitNanos = System.nanoTime() - start;
+        boolean handedOut = tryGet(waiter.future) != null;
+        stats.recordBorrow(waitNanos, exhausted);
+        stopTimer(timer, timerToken, OperationType.BORROW_WAIT, handedOut);
+        if ( handedOut ) {
+          PoolEvents.borrowed(cassandraHost, waitNanos);
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    ExhaustedPolicy exhaustedPolicy = cassandraHost.getExhaustedPolicy();
+    if ( conn != null && !needsValidation(conn) ) {
+      waiter.complete(conn);
+    } else if ( conn == null && currentActiveClients > maxActive 
+        && exhaustedPolicy == ExhaustedPolicy.WHEN_EXHAUSTED_FAIL ) {
+      waiter.fail(exhausted());
+    } else if ( conn != null || currentActiveClients <= maxActive 
+        || exhaustedPolicy == ExhaustedPolicy.WHEN_EXHAUSTED_GROW ) {
+      final CassandraConnectionHandle idle = conn;
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              CassandraConnectionHandle created = idle != null && isValid(idle) ? idle : createConnection();
+              if ( !waiter.complete(created) ) {
+                // given up while we were connecting, keep the connection for somebody else
+                returnConnection(created);
+              }
+            } catch (SQLException e) {
+              waiter.fail(e);
+            } catch (RuntimeException e) {
+              waiter.fail(e);
+            }
           }
+        });
+      } catch (RejectedExecutionException e) {
+        waiter.fail(e);
+        if ( idle != null ) {
+          returnConnection(idle);
         }
+      }
+    } else {
+      long maxWaitTimeWhenExhausted = getMaxWaitTimeWhenExhausted();
+      if ( maxWaitTimeWhenExhausted > 0 ) {
+        waiter.timeout = scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if ( waiter.fail(new HPoolExhaustedException(String.format(
+                "maxWaitTimeWhenExhausted exceeded for asynchronous borrow on host %s", cassandraHost.getName()))) ) {
+              stats.recordTimeout();
+            }
+          }
+        }, maxWaitTimeWhenExhausted, TimeUnit.MILLISECONDS);
+      }
+      waiters.add(waiter);
+      // a connection may have been released before we got in line
+      dispatch();
+    }
+    return waiter.future;
+  }
 
-      } else {
+  private HPoolExhaustedException exhausted() {
+    return new HPoolExhaustedException(String.format("Pool %s exhausted with %d active connections", 
+        getName(), maxActive));
+  }
 
+  /**
+   * Take an idle connection known to work, closing the broken ones found on the way.
+   */
+  private CassandraConnectionHandle pollValidIdle() {
+    CassandraConnectionHandle conn;
+    while ( (conn = pollIdle()) != null ) {
+      if ( !needsValidation(conn) || isValid(conn) ) {
+        return conn;
+      }
+    }
+    return null;
+  }
+
+  private boolean needsValidation(CassandraConnectionHandle conn) {
+    return cassandraHost.getValidateOnBorrow() 
+        && conn.getSinceLastUsedOkNanos() > TimeUnit.MILLISECONDS.toNanos(cassandraHost.getValidationSkipWindowMillis());
+  }
+
+  /**
+   * Check the connection with the validation query, or isValid() without one. 
+   * Closes it if broken.
+   */
+  private boolean isValid(CassandraConnectionHandle conn) {
+    boolean valid;
+    try {
+      if ( cassandraHost.getValidationQuery() != null ) {
+        Statement statement = conn.getInternalConnection().createStatement();
         try {
-          conn = availableConnectionQueue.poll(maxWaitTimeWhenExhausted, TimeUnit.MILLISECONDS);
-          if (conn == null) {
-            throw new HPoolExhaustedException(String.format(
-                "maxWaitTimeWhenExhausted exceeded for thread %s on host %s",
-                new Object[] { Thread.currentThread().getName(), cassandraHost.getName() }));
-          }
-        } catch (InterruptedException ie) {
-          // monitor.incCounter(Counter.POOL_EXHAUSTED);
-          log.error("Cassandra client acquisition interrupted", ie);
+          statement.execute(cassandraHost.getValidationQuery());
+        } finally {
+          statement.close();
         }
+        valid = true;
+      } else {
+        valid = conn.getInternalConnection().isValid(cassandraHost.getValidationTimeoutSeconds());
+      }
+    } catch (SQLException e) {
+      log.debug("Validation of a connection of {} failed: {}", getName(), e.getMessage());
+      valid = false;
+    }
+    if ( valid ) {
+      conn.markUsedOk();
+    } else {
+      log.info("Replacing broken idle connection of {}", getName());
+      closeConnection(conn);
+    }
+    return valid;
+  }
+
+  /**
+   * Take an idle connection, unless the pool is fair and others are already waiting.
+   */
+  private CassandraConnectionHandle pollIdle() {
+    if ( fair && hasWaiters() ) {
+      return null;
+    }
+    return availableConnectionQueue.poll();
+  }
+
+  /**
+   * Hand the connection to the oldest waiter, or put it back in the idle queue.
+   */
+  private void returnConnection(CassandraConnectionHandle conn) {
+    Waiter waiter;
+    while ( (waiter = waiters.poll()) != null ) {
+      if ( waiter.complete(conn) ) {
+        return;
+      }
+    }
+    addClientToPoolGently(conn);
+    // a waiter may have gotten in line after we looked
+    dispatch();
+  }
+
+  /**
+   * Match idle connections with waiters, until one of them runs out.
+   */
+  private void dispatch() {
+    while ( hasWaiters() ) {
+      CassandraConnectionHandle conn = availableConnectionQueue.poll();
+      if ( conn == null ) {
+        return;
+      }
+      Waiter waiter;
+      boolean handedOff = false;
+      while ( !handedOff && (waiter = waiters.poll()) != null ) {
+        handedOff = waiter.complete(conn);
+      }
+      if ( !handedOff ) {
+        addClientToPoolGently(conn);
+      }
+    }
+  }
+
+  /**
+   * Whether someone is still waiting. Waiters which timed out or were cancelled 
+   * are not removed from the middle of the queue, which is linear in the number 
+   * of waiters and adds up with thousands of them; they are dropped here once 
+   * they reach the head, or skipped when handing off.
+   */
+  private boolean hasWaiters() {
+    Waiter head;
+    while ( (head = waiters.peek()) != null && head.future.isDone() ) {
+      waiters.remove(head);
+    }
+    return head != null;
+  }
+
+  /**
+   * A borrow waiting for a connection, asynchronous or blocked. It ends exactly once: 
+   * completed with a connection, failed, or cancelled by the borrower. The active count 
+   * taken when borrowing is given back unless it gets a connection.
+   */
+  private class Waiter implements Runnable {
+    final SettableFuture<CassandraConnectionHandle> future = SettableFuture.create();
+    volatile ScheduledFuture<?> timeout;
+    // captured on the borrowing thread, the connection may be handed over by another
+    private final String borrowThread;
+    private final Throwable borrowStack;
+
+    Waiter(long borrowNumber) {
+      borrowThread = borrowSite();
+      borrowStack = borrowStack(borrowNumber);
+      future.addListener(this, MoreExecutors.sameThreadExecutor());
+    }
 
+    boolean complete(CassandraConnectionHandle conn) {
+      // checked out before the borrower can see it, and release it right away
+      checkOut(conn, borrowThread, borrowStack);
+      if ( !future.set(conn) ) {
+        undoCheckOut(conn);
+        return false;
       }
+      return true;
+    }
+
+    /**
+     * @return whether the waiter failed, rather than ended some other way before
+     */
+    boolean fail(Exception e) {
+      if ( !future.setException(e) ) {
+        return false;
+      }
+      activeConnectionCount.decrementAndGet();
+      hasWaiters();
+      return true;
+    }
+
+    /** Called once the future is done, whatever the outcome. */
+    @Override
+    public void run() {
+      if ( timeout != null ) {
+        timeout.cancel(false);
+      }
+      if ( future.isCancelled() ) {
+        activeConnectionCount.decrementAndGet();
+        hasWaiters();
+      }
+    }
+  }
+
+
+  /**
+   * Get in line behind the other waiters, sync or async, until a released 
+   * connection is handed to us. The active count taken by the caller is 
+   * given back if we give up.
+   */
+  private CassandraConnectionHandle waitForConnection(long borrowNumber) throws SQLException {
+    Waiter waiter = new Waiter(borrowNumber);
+    numBlocked.incrementAndGet();
+
+    if ( log.isDebugEnabled() ) {
+      log.debug("blocking on queue - current block count {}", numBlocked.get());
+    }
+
+    try {
+      waiters.add(waiter);
+      // a connection may have been released before we got in line
+      dispatch();
+      long maxWaitTimeWhenExhausted = getMaxWaitTimeWhenExhausted();
+      if ( maxWaitTimeWhenExhausted == 0 ) {
+        return waiter.future.get();
+      }
+      try {
+        return waiter.future.get(maxWaitTimeWhenExhausted, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        HPoolExhaustedException exhausted = new HPoolExhaustedException(String.format(
+            "maxWaitTimeWhenExhausted exceeded for thread %s on host %s",
+            new Object[] { Thread.currentThread().getName(), cassandraHost.getName() }));
+        if ( waiter.fail(exhausted) ) {
+          stats.recordTimeout();
+        }
+        // handed a connection right before giving up, or failed
+        return waiter.future.get();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      if ( waiter.future.cancel(false) ) {
+        throw new HectorException("Cassandra client acquisition interrupted on host " + cassandraHost.getName());
+      }
+      try {
+        // handed a connection right before being interrupted, or failed
+        return Futures.makeUninterruptible(waiter.future).get();
+      } catch (ExecutionException e) {
+        throw waitFailure(e);
+      }
+    } catch (ExecutionException e) {
+      throw waitFailure(e);
     } finally {
       numBlocked.decrementAndGet();
     }
+  }
 
-    return conn;
+  private SQLException waitFailure(ExecutionException e) {
+    if ( e.getCause() instanceof RuntimeException ) {
+      throw (RuntimeException) e.getCause();
+    }
+    return new SQLException("Unable to borrow a connection from " + getName(), e.getCause());
   }
 
 
@@ -172,11 +643,171 @@ public class ConcurrentHClientPool implements HClientPool {
     if ( log.isDebugEnabled() ) {
       log.debug("Creation of new connection");
     }
+    CassandraConnectionHandle conn = null;
+    long start = System.nanoTime();
+    HostOpTimer timer = opTimer;
+    long timerToken = timer.start();
     try {
-      return new CassandraConnectionHandle(ds.getConnection(cassandraHost.getUser(), cassandraHost.getPassword()), cassandraHost);
+      conn = new CassandraConnectionHandle(ds.getConnection(cassandraHost.getUser(), cassandraHost.getPassword()), cassandraHost);
     } catch (SQLException e) {
       log.debug("Unable to open transport to " + cassandraHost.getName());
       throw e;
+    } finally {
+      long connectNanos = System.nanoTime() - start;
+      stats.recordConnect(connectNanos);
+      stopTimer(timer, timerToken, OperationType.CONNECT, conn != null);
+      if ( conn != null ) {
+        stats.recordCreated();
+        PoolEvents.created(cassandraHost, connectNanos);
+      }
+    }
+    long lifetimeMillis = cassandraHost.getMaxConnectionLifetimeMillis();
+    if ( lifetimeMillis > 0 ) {
+      // shortened at random so that connections opened together do not expire together
+      double lifetime = lifetimeMillis * (1 - cassandraHost.getConnectionLifetimeJitter() * random.nextDouble());
+      conn.setExpiresAt(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) lifetime));
+    }
+    return conn;
+  }
+
+  @Override
+  public int retireExpiredConnections() {
+    long now = System.nanoTime();
+    int retired = 0;
+    for (CassandraConnectionHandle conn : availableConnectionQueue) {
+      // skip it if it was borrowed meanwhile, it then gets retired on release
+      if ( conn.isExpired(now) && availableConnectionQueue.remove(conn) ) {
+        retire(conn);
+        retired++;
+      }
+    }
+    return retired;
+  }
+
+  @Override
+  public int checkLeaks() {
+    if ( !trackBorrowed ) {
+      return 0;
+    }
+    long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(cassandraHost.getLeakDetectionThresholdMillis());
+    int leaked = 0;
+    for (CassandraConnectionHandle conn : borrowed.keySet()) {
+      if ( conn.getInUseNanos() <= thresholdNanos ) {
+        continue;
+      }
+      leaked++;
+      if ( conn.markLeakReported() ) {
+        if ( conn.getBorrowStack() != null ) {
+          log.warn("Suspected leak: " + describeLeak(conn), conn.getBorrowStack());
+        } else {
+          log.warn("Suspected leak: {}", describeLeak(conn));
+        }
+      }
+      // a concurrent release wins, the connection is then not leaked after all
+      if ( cassandraHost.getReclaimLeakedConnections() && conn.checkIn() ) {
+        borrowed.remove(conn);
+        log.warn("Reclaiming leaked connection of {} borrowed by {}", getName(), conn.getBorrowThread());
+        realActiveConnectionCount.decrementAndGet();
+        activeConnectionCount.decrementAndGet();
+        retire(conn);
+      }
+    }
+    return leaked;
+  }
+
+  @Override
+  public List<String> getLeakedConnections() {
+    List<String> leaks = new ArrayList<String>();
+    if ( !trackBorrowed ) {
+      return leaks;
+    }
+    long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(cassandraHost.getLeakDetectionThresholdMillis());
+    for (CassandraConnectionHandle conn : borrowed.keySet()) {
+      if ( conn.getInUseNanos() > thresholdNanos ) {
+        leaks.add(describeLeak(conn));
+      }
+    }
+    return leaks;
+  }
+
+  /**
+   * @return "[hostname]:[port] held for [millis]ms by [thread]", followed by the first 
+   *         frames of the borrowing code outside of the pool when captured
+   */
+  private String describeLeak(CassandraConnectionHandle conn) {
+    StringBuilder leak = new StringBuilder(String.format("%s held for %dms by %s", cassandraHost.getUrl(),
+        TimeUnit.NANOSECONDS.toMillis(conn.getInUseNanos()), conn.getBorrowThread()));
+    Throwable stack = conn.getBorrowStack();
+    if ( stack != null ) {
+      int frames = 0;
+      for (StackTraceElement frame : stack.getStackTrace()) {
+        if ( frames == 0 && isBorrowFrame(frame) ) {
+          continue;
+        }
+        leak.append(frames == 0 ? " at " : " < ").append(frame);
+        if ( ++frames == 3 ) {
+          break;
+        }
+      }
+    }
+    return leak.toString();
+  }
+
+  /**
+   * @return whether the frame is part of borrowing itself, rather than of the code borrowing
+   */
+  private static boolean isBorrowFrame(StackTraceElement frame) {
+    String className = frame.getClassName();
+    return isClass(className, ConcurrentHClientPool.class) || isClass(className, HConnectionManager.class)
+        || className.startsWith(CassandraConnectionHandle.class.getPackage().getName() + ".");
+  }
+
+  private static boolean isClass(String className, Class<?> clazz) {
+    return className.equals(clazz.getName()) || className.startsWith(clazz.getName() + "$");
+  }
+
+  /**
+   * Close a connection past its lifetime, reclaimed as leaked or released closed, and 
+   * open its replacement in the background. 
+   * Without an executor, borrowers open new connections as needed instead.
+   */
+  private void retire(CassandraConnectionHandle conn) {
+    if ( log.isDebugEnabled() ) {
+      log.debug("Retiring connection of {}", getName());
+    }
+    closeConnection(conn);
+    ExecutorService executor = backgroundExecutor;
+    if ( executor == null || !active.get() ) {
+      return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          replaceRetired();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      log.debug("Not replacing retired connection of {}, executor shut down", getName());
+    }
+  }
+
+  private void replaceRetired() {
+    if ( !active.get() || realActiveConnectionCount.get() + availableConnectionQueue.size() >= maxActive ) {
+      // shut down, or borrowers opened what they needed meanwhile
+      return;
+    }
+    CassandraConnectionHandle conn;
+    try {
+      conn = createConnection();
+    } catch (SQLException e) {
+      log.info("Unable to replace retired connection of {}: {}", getName(), e.getMessage());
+      return;
+    }
+    if ( active.get() ) {
+      returnConnection(conn);
+    } else {
+      closeConnection(conn);
     }
   }
 
@@ -196,6 +827,10 @@ public class ConcurrentHClientPool implements HClientPool {
     log.info("Shutdown triggered on {}", getName());
     Set<CassandraConnectionHandle> connections = new HashSet<CassandraConnectionHandle>();
     availableConnectionQueue.drainTo(connections);
+    Waiter waiter;
+    while ( (waiter = waiters.poll()) != null ) {
+      waiter.fail(new HPoolInnactiveException("Pool shut down while waiting for a connection: " + getName()));
+    }
     if ( connections.size() > 0 ) {
       for (CassandraConnectionHandle conn : connections) {
         closeConnection(conn);
@@ -205,6 +840,8 @@ public class ConcurrentHClientPool implements HClientPool {
   }
 
   private void closeConnection(CassandraConnectionHandle conn) {
+    stats.recordClosed();
+    PoolEvents.closed(cassandraHost);
     try {
       conn.getInternalConnection().close();
     } catch (SQLException e) {
@@ -231,7 +868,7 @@ public class ConcurrentHClientPool implements HClientPool {
 
 @Override
 public int getNumBeforeExhausted() {
-    return cassandraHost.getMaxActive() - realActiveConnectionCount.get();
+    return maxActive - realActiveConnectionCount.get();
   }
 
 
@@ -252,7 +889,107 @@ public int getNumBeforeExhausted() {
 
   @Override
   public int getMaxActive() {
-    return cassandraHost.getMaxActive();
+    return maxActive;
+  }
+
+  @Override
+  public void setMaxActive(int maxActive) {
+    if ( maxActive < 1 || maxActive > cassandraHost.getMaxActive() ) {
+      throw new IllegalArgumentException(String.format("maxActive of %s must be between 1 and %d, not %d",
+          getName(), cassandraHost.getMaxActive(), maxActive));
+    }
+    int previous = this.maxActive;
+    this.maxActive = maxActive;
+    if ( maxActive > previous ) {
+      openForWaiters(maxActive - previous);
+      return;
+    }
+    CassandraConnectionHandle conn;
+    while ( isOversized() && (conn = availableConnectionQueue.poll()) != null ) {
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * Open up to [headroom] connections for the borrowers waiting, once the limit was 
+   * raised, as nothing else would wake them up before a connection gets released. 
+   * Opened in the background if possible, by the caller otherwise.
+   */
+  private void openForWaiters(int headroom) {
+    for (int i = 0; i < headroom && hasWaiters(); i++) {
+      Runnable open = new Runnable() {
+        @Override
+        public void run() {
+          openForWaiter();
+        }
+      };
+      ExecutorService executor = backgroundExecutor;
+      if ( executor == null ) {
+        open.run();
+        continue;
+      }
+      try {
+        executor.execute(open);
+      } catch (RejectedExecutionException e) {
+        open.run();
+      }
+    }
+  }
+
+  private void openForWaiter() {
+    if ( !active.get() || !hasWaiters() 
+        || realActiveConnectionCount.get() + availableConnectionQueue.size() >= maxActive ) {
+      // shut down, or served meanwhile
+      return;
+    }
+    CassandraConnectionHandle conn;
+    try {
+      conn = createConnection();
+    } catch (SQLException e) {
+      log.info("Unable to open a connection for the borrowers waiting on {}: {}", getName(), e.getMessage());
+      return;
+    }
+    if ( active.get() ) {
+      returnConnection(conn);
+    } else {
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * @return whether more connections are open than allowed, once the limit was lowered
+   */
+  private boolean isOversized() {
+    return realActiveConnectionCount.get() + availableConnectionQueue.size() > maxActive;
+  }
+
+  @Override
+  public long getBorrowCount() {
+    return borrowCount.get();
+  }
+
+  @Override
+  public long getReleaseCount() {
+    return releaseCount.get();
+  }
+
+  @Override
+  public long getBusyTimeNanos() {
+    return busyTimeNanos.get();
+  }
+
+  @Override
+  public PoolStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public void setOpTimer(HostOpTimer opTimer) {
+    this.opTimer = opTimer;
+  }
+
+  private void stopTimer(HostOpTimer timer, long timerToken, OperationType operationType, boolean success) {
+    timer.stop(timerToken, cassandraHost, operationType, success);
   }
 
   @Override
@@ -270,6 +1007,14 @@ public int getNumBeforeExhausted() {
 
   @Override
   public void releaseClient(CassandraConnectionHandle conn) throws SQLException {
+    if ( !conn.checkIn() ) {
+      // closed twice, or reclaimed as leaked meanwhile
+      log.debug("Ignoring release of a connection of {} not checked out", getName());
+      return;
+    }
+    if ( trackBorrowed ) {
+      borrowed.remove(conn);
+    }
     boolean open;
     try {
       open = !conn.isClosed();
@@ -278,23 +1023,39 @@ public int getNumBeforeExhausted() {
       open = false;
     }
 
+    busyTimeNanos.addAndGet(conn.getInUseNanos());
+    releaseCount.incrementAndGet();
+    if ( open && !conn.isPossiblyBroken() ) {
+      conn.markUsedOk();
+    }
+
+    boolean retire = false;
     if ( open ) {
-      if ( active.get() ) {
-        addClientToPoolGently(conn);
-      } else {
+      if ( !active.get() ) {
         log.info("Open client released to in-active pool for host {}. Closing.", cassandraHost);
         closeConnection(conn);
+      } else if ( conn.isExpired(System.nanoTime()) ) {
+        retire = true;
+      } else if ( isOversized() ) {
+        log.debug("Closing client released to {} above its maxActive of {}", getName(), maxActive);
+        closeConnection(conn);
+      } else {
+        returnConnection(conn);
       }
+    } else if ( !isOversized() ) {
+      // closed after a timeout or a transport error: the releasing thread must not wait 
+      // for a new connection to a host which just failed it
+      retire = true;
     } else {
-      try {
-        addClientToPoolGently(createConnection());
-      } catch (SQLException e) {
-        log.info("Unable to reopen a connection. Bad server. Message: " + e.getMessage());
-      }
+      closeConnection(conn);
     }
 
     realActiveConnectionCount.decrementAndGet();
     activeConnectionCount.decrementAndGet();
+    if ( retire ) {
+      // once no longer counted as active, so that its replacement finds room
+      retire(conn);
+    }
 
     if ( log.isDebugEnabled() ) {
       log.debug("Status of releaseClient {} to queue: {}", cassandraHost.getHost(), open);
@@ -58,7 +58,8 @@ public class DynamicLoadBalancingPolicy implements LoadBalancingPolicy {
   // default values this can be changed by the Client.
   private int UPDATE_INTERVAL = 100;
   private int RESET_INTERVAL = 20000;
-  private double DYNAMIC_BADNESS_THRESHOLD = 0.10;
+  // can be changed at runtime through JMX
+  private volatile double DYNAMIC_BADNESS_THRESHOLD = 0.10;
 
   public DynamicLoadBalancingPolicy() {
 
@@ -151,11 +152,22 @@ public class DynamicLoadBalancingPolicy implements LoadBalancingPolicy {
   // This will be a expensive call.
   void updateScores() {
     for (LatencyAwareHClientPool pool : allPools) {
-      scores.put(pool, pool.score());
+      double score = pool.score();
+      scores.put(pool, score);
+      PoolEvents.scoreUpdated(pool.getCassandraHost(), score);
       pool.resetIntervel();
     }
   }
 
+  /**
+   * @return the score of the pool as last updated, lower being better, -1 for a pool 
+   *         this policy did not create
+   */
+  public double getScore(HClientPool pool) {
+    Double score = scores.get(pool);
+    return score == null ? -1 : score;
+  }
+
   public int getUpdateInterval() {
     return UPDATE_INTERVAL;
   }
@@ -18,17 +18,77 @@
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.google.common.util.concurrent.ListenableFuture;
 
 
 public interface HClientPool extends PoolMetric {
   public CassandraConnectionHandle borrowClient() throws SQLException;
+  /**
+   * Borrow without blocking the caller. Connections are opened on [executor] and
+   * waits are timed out on [scheduler]. Cancelling the future gives up the borrow.
+   */
+  public ListenableFuture<CassandraConnectionHandle> borrowClientAsync(ExecutorService executor,
+      ScheduledExecutorService scheduler);
   public CassandraHost getCassandraHost();
   public int getNumBeforeExhausted();
   public boolean isExhausted();
   public int getMaxActive();
+  /**
+   * Change how many connections the pool may open, within the maxActive of its host.
+   * Idle connections above the new limit are closed right away, busy ones when released.
+   */
+  public void setMaxActive(int maxActive);
+  /**
+   * @return how many times a connection was asked for since the pool started
+   */
+  public long getBorrowCount();
+  /**
+   * @return how many borrowed connections were released since the pool started
+   */
+  public long getReleaseCount();
+  /**
+   * @return for how long, in total, the released connections had been borrowed
+   */
+  public long getBusyTimeNanos();
+  /**
+   * @return borrow wait and connect times, exhaustion and timeouts
+   */
+  public PoolStats getStats();
+  /**
+   * Also report borrow waits and connects to this timer, as {@link OperationType#BORROW_WAIT}
+   * and {@link OperationType#CONNECT}.
+   */
+  public void setOpTimer(HostOpTimer opTimer);
   public String getStatusAsString();
   public void releaseClient(CassandraConnectionHandle conn) throws SQLException;
+  /**
+   * Open the initial connections of a freshly created pool, in parallel on the given
+   * executor. A pool is only handed to the {@link LoadBalancingPolicy} once warm.
+   * The executor is kept to replace retired connections in the background.
+   */
+  public void warm(ExecutorService executor) throws SQLException;
+  /**
+   * Close the idle connections which outlived their maxConnectionLifetimeMillis, and 
+   * open their replacements in the background.
+   * @return how many connections were retired
+   */
+  public int retireExpiredConnections();
+  /**
+   * Log the connections borrowed for longer than the leak detection threshold, the first 
+   * time they are found, and reclaim them if so configured.
+   * @return how many leaked connections were found
+   */
+  public int checkLeaks();
+  /**
+   * @return a description of every connection borrowed for longer than the leak 
+   *         detection threshold
+   */
+  public List<String> getLeakedConnections();
   void shutdown();
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.LatencyHistogram;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.RollingLatencyHistogram;
+
+public class HClientPoolMonitor implements HClientPoolMonitorMBean {
+
+  private final HConnectionManager connectionManager;
+  private final HClientPool pool;
+
+  public HClientPoolMonitor(HConnectionManager connectionManager, HClientPool pool) {
+    this.connectionManager = connectionManager;
+    this.pool = pool;
+  }
+
+  @Override
+  public String getHost() {
+    return pool.getCassandraHost().getUrl();
+  }
+
+  @Override
+  public int getNumActive() {
+    return pool.getNumActive();
+  }
+
+  @Override
+  public int getNumIdle() {
+    return pool.getNumIdle();
+  }
+
+  @Override
+  public int getNumBlockedThreads() {
+    return pool.getNumBlockedThreads();
+  }
+
+  @Override
+  public int getNumBeforeExhausted() {
+    return pool.getNumBeforeExhausted();
+  }
+
+  @Override
+  public int getMaxActive() {
+    return pool.getMaxActive();
+  }
+
+  @Override
+  public boolean isExhausted() {
+    return pool.isExhausted();
+  }
+
+  @Override
+  public int getTargetSize() {
+    return pool.getMaxActive();
+  }
+
+  @Override
+  public int getActualSize() {
+    return pool.getNumActive() + pool.getNumIdle();
+  }
+
+  @Override
+  public double getDemand() {
+    AdaptivePoolSizingService sizing = connectionManager.getAdaptivePoolSizingService();
+    return sizing == null ? -1 : sizing.getDemand(pool);
+  }
+
+  @Override
+  public long getCreatedCount() {
+    return pool.getStats().getCreatedCount();
+  }
+
+  @Override
+  public long getClosedCount() {
+    return pool.getStats().getClosedCount();
+  }
+
+  @Override
+  public long getBorrowCount() {
+    return pool.getBorrowCount();
+  }
+
+  @Override
+  public long getReleaseCount() {
+    return pool.getReleaseCount();
+  }
+
+  @Override
+  public double getLatencyP50Millis() {
+    return latencyMillis(50);
+  }
+
+  @Override
+  public double getLatencyP99Millis() {
+    return latencyMillis(99);
+  }
+
+  @Override
+  public double getLatencyP999Millis() {
+    return latencyMillis(99.9);
+  }
+
+  @Override
+  public double getBorrowWaitP99Millis() {
+    return millis(pool.getStats().getBorrowWait().getPercentileNanos(99));
+  }
+
+  @Override
+  public double getSaturation() {
+    return pool.getStats().getSaturation();
+  }
+
+  @Override
+  public double getScore() {
+    LoadBalancingPolicy policy = connectionManager.getLoadBalancingPolicy();
+    return policy instanceof DynamicLoadBalancingPolicy ? ((DynamicLoadBalancingPolicy) policy).getScore(pool) : -1;
+  }
+
+  /**
+   * Operations of every type on the host, but for the borrow waits and connects the 
+   * pool reports to the timer as well.
+   */
+  private double latencyMillis(double percentile) {
+    HostOpTimer timer = connectionManager.getHostOpTimer();
+    if ( !(timer instanceof HistogramOpTimer) ) {
+      return -1;
+    }
+    RollingLatencyHistogram[] histograms = ((HistogramOpTimer) timer).getHistograms().get(pool.getCassandraHost());
+    LatencyHistogram merged = new LatencyHistogram();
+    if ( histograms != null ) {
+      long now = System.nanoTime();
+      for (OperationType operationType : OperationType.values()) {
+        if ( operationType != OperationType.BORROW_WAIT && operationType != OperationType.CONNECT ) {
+          histograms[operationType.ordinal()].mergeInto(merged, now);
+        }
+      }
+    }
+    return millis(merged.getPercentileNanos(percentile));
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+}
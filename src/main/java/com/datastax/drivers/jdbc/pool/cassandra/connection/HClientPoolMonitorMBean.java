@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+/**
+ * The state of the pool of one host, registered by the {@link HConnectionManager} along 
+ * with the pool and unregistered when the pool goes away. Unlike 
+ * {@link CassandraClientMonitorMBean#getStatisticsPerPool()}, every figure is an 
+ * attribute of its own that monitoring tools can chart.
+ */
+public interface HClientPoolMonitorMBean {
+
+  /**
+   * @return the host in the format of "[hostname]:[port]"
+   */
+  String getHost();
+
+  int getNumActive();
+
+  int getNumIdle();
+
+  int getNumBlockedThreads();
+
+  int getNumBeforeExhausted();
+
+  int getMaxActive();
+
+  boolean isExhausted();
+
+  /**
+   * @return how many connections the pool may open, the size adaptive pool sizing 
+   *         aims for when enabled
+   */
+  int getTargetSize();
+
+  /**
+   * @return how many connections the pool has open, busy or idle
+   */
+  int getActualSize();
+
+  /**
+   * @return the smoothed number of connections the pool needs, headroom included, 
+   *         -1 unless adaptive pool sizing is enabled and measured the pool already
+   */
+  double getDemand();
+
+  /**
+   * @return how many connections the pool opened since it started
+   */
+  long getCreatedCount();
+
+  /**
+   * @return how many connections the pool closed since it started
+   */
+  long getClosedCount();
+
+  long getBorrowCount();
+
+  long getReleaseCount();
+
+  /**
+   * @return the median latency of the operations on the host during the last complete 
+   *         interval, in milliseconds, -1 unless the host op timer is a {@link HistogramOpTimer}
+   */
+  double getLatencyP50Millis();
+
+  double getLatencyP99Millis();
+
+  double getLatencyP999Millis();
+
+  /**
+   * @return how long borrowers waited for a connection during the last complete interval, 
+   *         in milliseconds
+   */
+  double getBorrowWaitP99Millis();
+
+  /**
+   * @return the share of the borrows of the last complete interval which found the pool 
+   *         exhausted, between 0 and 1
+   */
+  double getSaturation();
+
+  /**
+   * @return the score of the host, lower being better, -1 unless the load balancing 
+   *         policy is the {@link DynamicLoadBalancingPolicy}
+   */
+  double getScore();
+}
@@ -17,6 +17,7 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -24,8 +25,18 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,10 +46,16 @@ import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HectorException;
 import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
 import com.datastax.drivers.jdbc.pool.cassandra.service.ExceptionsTranslator;
 import com.datastax.drivers.jdbc.pool.cassandra.service.ExceptionsTranslatorImpl;
+import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
 import com.datastax.drivers.jdbc.pool.cassandra.service.FailoverPolicy;
 import com.datastax.drivers.jdbc.pool.cassandra.service.JmxMonitor;
 import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
 import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class HConnectionManager {
 
@@ -49,6 +66,7 @@ public class HConnectionManager {
   private final Collection<HClientPool> hostPoolValues;
   private final String clusterName;
   private final LoadBalancingPolicy loadBalancingPolicy;
+  private final boolean latencyAwarePools;
   private final CassandraHostConfigurator cassandraHostConfigurator;
   private final CassandraClientMonitor monitor;
   final ExceptionsTranslator exceptionsTranslator;
@@ -56,53 +74,88 @@ public class HConnectionManager {
   private CassandraHostRetryService cassandraHostRetryService;
   private NodeAutoDiscoverService nodeAutoDiscoverService;
   private HostTimeoutTracker hostTimeoutTracker;
-
-  private HOpTimer timer;
+  private AdaptivePoolSizingService adaptivePoolSizingService;
+  private PoolMaintenanceService poolMaintenanceService;
+  private SlowOperationTracker slowOperationTracker;
+  private PrometheusExporter metricsExporter;
+  private final CassandraHostProbe hostProbe;
+  private final ScheduledExecutorService scheduler;
+  private final ThreadPoolExecutor connectionExecutor;
+  static final int SCHEDULER_THREADS = 3;
+  public static final int DEF_WARMUP_CONCURRENCY = 8;
+  public static final int DEF_STARTUP_CONCURRENCY = 8;
+  public static final long DEF_STARTUP_TIMEOUT_MILLIS = 30000;
+
+  private volatile HostOpTimer timer;
+  // set once shutdown() was called, the pools still starting then are not published
+  private boolean shutdown;
 
   private FailoverPolicy failoverPolicy;
 
   public HConnectionManager(String clusterName, CassandraHostConfigurator cassandraHostConfigurator) {
     loadBalancingPolicy = cassandraHostConfigurator.getLoadBalancingPolicy();
+    latencyAwarePools = loadBalancingPolicy instanceof DynamicLoadBalancingPolicy;
     hostPools = new ConcurrentHashMap<CassandraHost, HClientPool>();
     suspendedHostPools = new ConcurrentHashMap<CassandraHost, HClientPool>();
     this.clusterName = clusterName;
+    // the pools started below report to it already
+    timer = cassandraHostConfigurator.getHostOpTimer();
+    if ( cassandraHostConfigurator.getUseJfrEvents() ) {
+      JfrPoolEventListener.install();
+    }
+    boolean virtual = cassandraHostConfigurator.getUseVirtualThreads();
+    scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS, new DaemonThreadPoolFactory(getClass(), virtual));
+    hostProbe = new CassandraHostProbe(cassandraHostConfigurator);
+    int warmupConcurrency = Math.max(1, cassandraHostConfigurator.getWarmupConcurrency());
+    connectionExecutor = new ThreadPoolExecutor(warmupConcurrency, warmupConcurrency, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new DaemonThreadPoolFactory(HClientPool.class, virtual));
+    connectionExecutor.allowCoreThreadTimeOut(true);
 
     if ( cassandraHostConfigurator.getRetryDownedHosts() ) {
       cassandraHostRetryService = new CassandraHostRetryService(this, cassandraHostConfigurator);
     }
 
-    for ( CassandraHost host : cassandraHostConfigurator.buildCassandraHosts()) {
-      try {
-        HClientPool hcp = loadBalancingPolicy.createConnection(host);
-        hostPools.put(host,hcp);
-      } catch (SQLException e) {
-        log.error("Could not start connection pool for host {}", host);
-        if ( cassandraHostRetryService != null ) {
-          cassandraHostRetryService.add(host);
-        }
-      }
-    }
+    startHostPools(cassandraHostConfigurator);
 
     if ( cassandraHostConfigurator.getUseHostTimeoutTracker() ) {
       hostTimeoutTracker = new HostTimeoutTracker(this, cassandraHostConfigurator);
     }
 
+    if ( cassandraHostConfigurator.getUseAdaptivePoolSizing() ) {
+      adaptivePoolSizingService = new AdaptivePoolSizingService(this, cassandraHostConfigurator);
+    }
+
+    if ( cassandraHostConfigurator.getMaxConnectionLifetimeMillis() > 0 
+        || cassandraHostConfigurator.getLeakDetectionThresholdMillis() > 0 ) {
+      poolMaintenanceService = new PoolMaintenanceService(this, cassandraHostConfigurator);
+    }
+
+    if ( cassandraHostConfigurator.getSlowOperationThresholdMillis() > 0 ) {
+      slowOperationTracker = new SlowOperationTracker(this, cassandraHostConfigurator);
+    }
+
     monitor = JmxMonitor.getInstance().getCassandraMonitor(this);
     exceptionsTranslator = new ExceptionsTranslatorImpl();
     this.cassandraHostConfigurator = cassandraHostConfigurator;
     hostPoolValues = hostPools.values();
-    
-    /*
+
+    setHostOpTimer(timer);
+    if ( cassandraHostConfigurator.getMetricsPort() > 0 ) {
+      try {
+        metricsExporter = new PrometheusExporter(this, monitor, cassandraHostConfigurator.getMetricsBindAddress(),
+            cassandraHostConfigurator.getMetricsPort());
+      } catch (IOException e) {
+        log.error("Unable to serve metrics on port " + cassandraHostConfigurator.getMetricsPort(), e);
+      }
+    }
+    failoverPolicy = cassandraHostConfigurator.getFailoverPolicy();
+
     if ( cassandraHostConfigurator.getAutoDiscoverHosts() ) {
       nodeAutoDiscoverService = new NodeAutoDiscoverService(this, cassandraHostConfigurator);
       if ( cassandraHostConfigurator.getRunAutoDiscoveryAtStartup() ) {
         nodeAutoDiscoverService.doAddNodes();
       }
     }
-    */
-
-    timer = cassandraHostConfigurator.getOpTimer();
-    failoverPolicy = cassandraHostConfigurator.getFailoverPolicy();
   }
 
   /**
@@ -116,8 +169,13 @@ public class HConnectionManager {
       HClientPool pool = null;
       try {
         cassandraHostConfigurator.applyConfig(cassandraHost);
-        pool = cassandraHostConfigurator.getLoadBalancingPolicy().createConnection(cassandraHost);
-        hostPools.putIfAbsent(cassandraHost, pool);
+        pool = createWarmPool(cassandraHost);
+        if ( hostPools.putIfAbsent(cassandraHost, pool) != null ) {
+          log.info("Host {} was added concurrently, discarding our pool", cassandraHost.getName());
+          pool.shutdown();
+          return false;
+        }
+        JmxMonitor.getInstance().registerPoolMonitor(this, pool);
         log.info("Added host {} to pool", cassandraHost.getName());
         return true;
       } catch (SQLException ex) {
@@ -129,6 +187,106 @@ public class HConnectionManager {
     return false;
   }
 
+  /**
+   * Start the pools of the configured hosts in parallel, startupConcurrency at a time.
+   * Returns once they are all started, once a majority of them is when startupQuorum 
+   * is set, or at the latest after startupTimeoutMillis. The pools still starting by
+   * then get published in the background when ready.
+   */
+  private void startHostPools(CassandraHostConfigurator cassandraHostConfigurator) {
+    CassandraHost[] hosts = cassandraHostConfigurator.buildCassandraHosts();
+    int concurrency = Math.max(1, Math.min(hosts.length, cassandraHostConfigurator.getStartupConcurrency()));
+    ThreadPoolExecutor startupExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), 
+        new DaemonThreadPoolFactory(getClass(), cassandraHostConfigurator.getUseVirtualThreads()));
+    CompletionService<Boolean> startups = new ExecutorCompletionService<Boolean>(startupExecutor);
+    for ( final CassandraHost host : hosts ) {
+      startups.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          HClientPool hcp;
+          try {
+            hcp = createWarmPool(host);
+          } catch (SQLException e) {
+            log.error("Could not start connection pool for host {}", host);
+            retryStartup(host);
+            return false;
+          } catch (RuntimeException e) {
+            log.error("Could not start connection pool for host " + host, e);
+            retryStartup(host);
+            return false;
+          }
+          return publishStartedPool(host, hcp);
+        }
+      });
+    }
+    // let the started pools finish in the background
+    startupExecutor.shutdown();
+
+    int wanted = cassandraHostConfigurator.getStartupQuorum() ? hosts.length / 2 + 1 : hosts.length;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cassandraHostConfigurator.getStartupTimeoutMillis());
+    int done = 0;
+    int started = 0;
+    try {
+      while ( done < hosts.length && started < wanted ) {
+        Future<Boolean> startup = startups.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if ( startup == null ) {
+          log.warn("Started {} of {} host pools within {}ms, the others keep starting in the background",
+              new Object[]{started, hosts.length, cassandraHostConfigurator.getStartupTimeoutMillis()});
+          return;
+        }
+        done++;
+        if ( startup.get() ) {
+          started++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.error("Unexpected failure starting host pools", e.getCause());
+    }
+    log.info("Started {} of {} host pools", started, hosts.length);
+  }
+
+  /**
+   * Publish a pool started in the background, unless shut down meanwhile or the host 
+   * was added some other way. In both cases the pool is shut down instead.
+   */
+  private synchronized boolean publishStartedPool(CassandraHost host, HClientPool pool) {
+    if ( shutdown || hostPools.putIfAbsent(host, pool) != null ) {
+      log.info("Discarding the pool started for host {}", host.getName());
+      pool.shutdown();
+      return false;
+    }
+    JmxMonitor.getInstance().registerPoolMonitor(this, pool);
+    return true;
+  }
+
+  private synchronized void retryStartup(CassandraHost host) {
+    if ( !shutdown && cassandraHostRetryService != null ) {
+      cassandraHostRetryService.add(host);
+    }
+  }
+
+  /**
+   * Create the pool of a host and warm it up, so it is ready to serve requests
+   * by the time it gets published. The pool is shut down if it cannot be warmed up.
+   */
+  private HClientPool createWarmPool(CassandraHost cassandraHost) throws SQLException {
+    HClientPool pool = loadBalancingPolicy.createConnection(cassandraHost);
+    pool.setOpTimer(timer);
+    try {
+      pool.warm(connectionExecutor);
+    } catch (SQLException e) {
+      pool.shutdown();
+      throw e;
+    } catch (RuntimeException e) {
+      pool.shutdown();
+      throw e;
+    }
+    return pool;
+  }
+
   /**
    * Remove the {@link CassandraHost} from the pool, bypassing retry service. This
    * would be called on a host that is known to be going away. Gracefully shuts down
@@ -151,6 +309,10 @@ public class HConnectionManager {
       }
       if ( pool != null ) {
         pool.shutdown();
+        JmxMonitor.getInstance().unregisterPoolMonitor(this, cassandraHost);
+        if ( timer instanceof HistogramOpTimer ) {
+          ((HistogramOpTimer) timer).remove(cassandraHost);
+        }
       } else {
         removed = false;
         log.info("removeCassandraHost attempt miss for CassandraHost {} May have been beaten by another thread?", cassandraHost);
@@ -177,6 +339,7 @@ public class HConnectionManager {
     boolean removed = pool != null;
     if ( removed ) {      
       suspendedHostPools.put(cassandraHost, pool);
+      PoolEvents.hostStateChanged(cassandraHost, PoolEventType.SUSPEND);
     }
     log.info("Suspend operation status was {} for CassandraHost {}", removed, cassandraHost);
     return removed;
@@ -196,12 +359,84 @@ public class HConnectionManager {
       if ( alreadyThere ) {
         log.error("Unsuspend called on a pool that was already active for CassandraHost {}", cassandraHost);
         pool.shutdown();
+      } else {
+        PoolEvents.hostStateChanged(cassandraHost, PoolEventType.UNSUSPEND);
       }
     }
     log.info("UN-Suspend operation status was {} for CassandraHost {}", readded, cassandraHost);
     return readded;
   }
   
+  /**
+   * Change the weight used by {@link WeightedBalancingPolicy} for an active or
+   * suspended host. Lowering the weight drains the host gradually without removing it.
+   * @param cassandraHost
+   * @param weight
+   * @return true if the host was found
+   */
+  public boolean setCassandraHostWeight(CassandraHost cassandraHost, int weight) {
+    HClientPool pool = hostPools.get(cassandraHost);
+    if ( pool == null ) {
+      pool = suspendedHostPools.get(cassandraHost);
+    }
+    if ( pool == null ) {
+      log.info("Weight change requested on a host that was not found in active or suspended pools: {}", cassandraHost);
+      return false;
+    }
+    pool.getCassandraHost().setWeight(weight);
+    log.info("Weight of CassandraHost {} set to {}", cassandraHost, weight);
+    return true;
+  }
+
+  /**
+   * Change the limits of every host pool, active, suspended or yet to be created. 
+   * The values are all checked before any of them is applied, and concurrent changes 
+   * are applied one after the other, so all the pools end up with the same limits.
+   * Pools are resized in place: lowering maxActive closes idle connections right 
+   * away and busy ones as they are released.
+   * @param maxActive
+   * @param maxWaitTimeWhenExhausted negative to wait forever
+   * @param exhaustedPolicy
+   */
+  public synchronized void setPoolLimits(int maxActive, long maxWaitTimeWhenExhausted, 
+      ExhaustedPolicy exhaustedPolicy) {
+    if ( maxActive < 1 ) {
+      throw new IllegalArgumentException("maxActive must be at least 1, not " + maxActive);
+    }
+    if ( exhaustedPolicy == null ) {
+      throw new IllegalArgumentException("exhaustedPolicy must be set");
+    }
+    cassandraHostConfigurator.setMaxActive(maxActive);
+    cassandraHostConfigurator.setMaxWaitTimeWhenExhausted(maxWaitTimeWhenExhausted);
+    cassandraHostConfigurator.setExhaustedPolicy(exhaustedPolicy);
+
+    List<HClientPool> pools = new ArrayList<HClientPool>(hostPools.values());
+    pools.addAll(suspendedHostPools.values());
+    for (HClientPool pool : pools) {
+      CassandraHost host = pool.getCassandraHost();
+      host.setMaxWaitTimeWhenExhausted(maxWaitTimeWhenExhausted);
+      host.setExhaustedPolicy(exhaustedPolicy);
+      host.setMaxActive(maxActive);
+      // an adaptively sized pool only has to stay below the new maxActive
+      pool.setMaxActive(adaptivePoolSizingService == null ? maxActive : Math.min(pool.getMaxActive(), maxActive));
+    }
+    for (CassandraHost host : getDownedHosts()) {
+      host.setMaxWaitTimeWhenExhausted(maxWaitTimeWhenExhausted);
+      host.setExhaustedPolicy(exhaustedPolicy);
+      host.setMaxActive(maxActive);
+    }
+    log.info("Pool limits set to maxActive {}, maxWaitTimeWhenExhausted {}, exhaustedPolicy {}",
+        new Object[]{maxActive, maxWaitTimeWhenExhausted, exhaustedPolicy});
+  }
+
+  public CassandraHostConfigurator getCassandraHostConfigurator() {
+    return cassandraHostConfigurator;
+  }
+
+  public LoadBalancingPolicy getLoadBalancingPolicy() {
+    return loadBalancingPolicy;
+  }
+
   /**
    * Returns a Set of {@link CassandraHost} which are in the suspended status
    * @return
@@ -245,17 +480,73 @@ public class HConnectionManager {
     return op.getResult();
   }
 
+  /**
+   * Borrow a client without blocking the caller. The future completes when a 
+   * connection is available, or fails as with {@link FailoverPolicy#FAIL_FAST}
+   * if the chosen host pool cannot provide one within maxWaitTimeWhenExhausted.
+   * Cancelling the future gives up the borrow.
+   */
+  public ListenableFuture<CassandraConnectionHandle> borrowClientAsync() {
+    HClientPool pool;
+    try {
+      pool = getClientFromLBPolicy(Collections.<CassandraHost>emptySet());
+    } catch (HectorException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    final ListenableFuture<CassandraConnectionHandle> borrowed = 
+        pool.borrowClientAsync(connectionExecutor, scheduler);
+    final ListenableFuture<CassandraConnectionHandle> result = Futures.transform(borrowed, 
+        new Function<CassandraConnectionHandle, CassandraConnectionHandle>() {
+          @Override
+          public CassandraConnectionHandle apply(CassandraConnectionHandle connection) {
+            connection.setManager(HConnectionManager.this);
+            return connection;
+          }
+        });
+    result.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if ( result.isCancelled() ) {
+          // cancelled once the pool handed out the connection, nobody else will release it
+          borrowed.addListener(new Runnable() {
+            @Override
+            public void run() {
+              releaseQuietly(ConcurrentHClientPool.tryGet(borrowed));
+            }
+          }, MoreExecutors.sameThreadExecutor());
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    return result;
+  }
+
+  private void releaseQuietly(CassandraConnectionHandle connectionHandle) {
+    try {
+      releaseClient(connectionHandle);
+    } catch (SQLException e) {
+      log.info("Unexpected error while releasing the connection: " + connectionHandle.getCassandraHost());
+    }
+  }
+
   public void operateWithFailover(Operation<?> op) throws SQLException {
-    final Object timerToken = timer.start(); 
+    final HostOpTimer opTimer = timer;
+    final long timerToken = opTimer.startOperation(op);
     int retries = Math.min(failoverPolicy.numRetries, hostPools.size());
     HClientPool pool = null;
     boolean success = false;
     boolean retryable = false;
     boolean firstTime = true;
-    CassandraConnectionHandle currentConnection = op.getConnection();
+    // the connection the client holds, it stays checked out until the client closes it
+    final CassandraConnectionHandle clientConnection = op.getConnection();
+    CassandraConnectionHandle currentConnection = clientConnection;
     Set<CassandraHost> excludeHosts = new HashSet<CassandraHost>();
+    // the host and error of the last failed attempt, reported along with the next host
+    CassandraHost failedOverFrom = null;
+    Class<?> failoverCause = null;
 
     while ( !success ) {
+      // stopped once per operation, not for the attempts failed over from
+      boolean failingOver = false;
 
       try {
 
@@ -264,7 +555,18 @@ public class HConnectionManager {
         // failover mechanism OperationType.BORROW_CLIENT). 
         if (op.operationType == OperationType.BORROW_CLIENT || !firstTime) {
           // Try a new host/connection
-          pool = getClientFromLBPolicy(excludeHosts);
+          currentConnection = null;
+          HClientPool nextPool = null;
+          try {
+            nextPool = getClientFromLBPolicy(excludeHosts);
+          } finally {
+            if ( failoverCause != null ) {
+              PoolEvents.failedOver(failedOverFrom, nextPool == null ? null : nextPool.getCassandraHost(), 
+                  failoverCause);
+              failoverCause = null;
+            }
+          }
+          pool = nextPool;
           currentConnection  = (CassandraConnectionHandle) pool.borrowClient();
           currentConnection.setManager(this);
 
@@ -279,7 +581,9 @@ public class HConnectionManager {
 
         op.executeAndSetResult(currentConnection);
         success = true;
-        timer.stop(timerToken, op.stopWatchTagName, true);
+        recordLatency(op);
+        recordSlowOperation(op);
+        opTimer.stopOperation(timerToken, op, hostOf(pool, currentConnection), true);
         break;
 
       } catch (Exception ex) {
@@ -296,8 +600,11 @@ public class HConnectionManager {
 
           retryable = true;
 
-          monitor.incCounter(Counter.RECOVERABLE_TIMED_OUT_EXCEPTIONS);
-          currentConnection.close();
+          monitor.incCounter(Counter.RECOVERABLE_TIMED_OUT_EXCEPTIONS, hostOf(pool, currentConnection));
+          // replaced by its pool in the background once released
+          if ( currentConnection != null ) {
+            closeQuietly(currentConnection);
+          }
           // TODO timecheck on how long we've been waiting on timeouts here
           // suggestion per user moores on hector-users
 
@@ -305,21 +612,21 @@ public class HConnectionManager {
 
           // client can be null in this situation
           if ( currentConnection != null ) {
-            currentConnection.close();
+            closeQuietly(currentConnection);
           }
 
           markHostAsDown(pool.getCassandraHost());
           excludeHosts.add(pool.getCassandraHost());
           retryable = true;
 
-          monitor.incCounter(Counter.RECOVERABLE_TRANSPORT_EXCEPTIONS);
+          monitor.incCounter(Counter.RECOVERABLE_TRANSPORT_EXCEPTIONS, hostOf(pool, currentConnection));
 
         } else if (exceptionsTranslator.isPoolExhausted(ex)) {
           retryable = true;
           if ( hostPools.size() == 1 ) {
             throw new SQLException(ex);
           }
-          monitor.incCounter(Counter.POOL_EXHAUSTED);
+          monitor.incCounter(Counter.POOL_EXHAUSTED, hostOf(pool, currentConnection));
           excludeHosts.add(pool.getCassandraHost());
 
         } else {
@@ -339,41 +646,116 @@ public class HConnectionManager {
 
         log.warn("Could not fullfill request on this host {}", pool.getCassandraHost());
         log.warn("Exception: ", ex);
-        monitor.incCounter(Counter.SKIP_HOST_SUCCESS);
+        monitor.incCounter(Counter.SKIP_HOST_SUCCESS, hostOf(pool, currentConnection));
+        failingOver = true;
+        failedOverFrom = hostOf(pool, currentConnection);
+        failoverCause = ex.getClass();
         sleepBetweenHostSkips(failoverPolicy);
 
       } finally {
         --retries;
         if ( !success ) {
-          monitor.incCounter(op.failCounter);
-          timer.stop(timerToken, op.stopWatchTagName, false);
+          monitor.incCounter(op.failCounter, hostOf(pool, currentConnection));
+          if ( !failingOver ) {
+            opTimer.stopOperation(timerToken, op, hostOf(pool, currentConnection), false);
+          }
+        }
+        // give back what was borrowed to fail over to, unless it is the borrow asked for
+        if ( currentConnection != clientConnection 
+            && !(success && op.operationType == OperationType.BORROW_CLIENT) ) {
+          releaseClient(currentConnection);
+          currentConnection = clientConnection;
+          op.setConnection(clientConnection);
         }
-        releaseClient(currentConnection);
       }
     }
   }
 
 
+  /**
+   * The host an operation ran against, without a map lookup: the pool it borrowed from or,
+   * on the first attempt of a regular operation, the connection the client handed in.
+   */
+  private static CassandraHost hostOf(HClientPool pool, CassandraConnectionHandle connection) {
+    if ( pool != null ) {
+      return pool.getCassandraHost();
+    }
+    return connection == null ? null : connection.getCassandraHost();
+  }
+
+
+  /**
+   * @return the timer set through {@link #setTimer(HOpTimer)} or the opTimer of the 
+   *         configurator, null if a {@link HostOpTimer} is used instead
+   */
   public HOpTimer getTimer() {
-    return timer;
+    HostOpTimer hostOpTimer = timer;
+    return hostOpTimer instanceof HOpTimerAdapter ? ((HOpTimerAdapter) hostOpTimer).getTimer() : null;
   }
 
 
   public void setTimer(HOpTimer timer) {
+    setHostOpTimer(HOpTimerAdapter.adapt(timer));
+  }
+
+
+  public HostOpTimer getHostOpTimer() {
+    return timer;
+  }
+
+
+  public void setHostOpTimer(HostOpTimer timer) {
     this.timer = timer;
+    for (HClientPool pool : hostPools.values()) {
+      pool.setOpTimer(timer);
+    }
+    for (HClientPool pool : suspendedHostPools.values()) {
+      pool.setOpTimer(timer);
+    }
+    if ( timer instanceof HistogramOpTimerMBean ) {
+      JmxMonitor.getInstance().registerLatencyMonitor(this, (HistogramOpTimerMBean) timer);
+    }
   }
 
 
   /**
-   * Use the HostTimeoutCheck and initiate a suspend if and only if
+   * Feed the execution time of a successful operation into the latency model of the
+   * pool of the host it ran on. Only the time spent executing against Cassandra is
+   * taken into account, not the time the application held on to the connection.
+   * @param op
+   */
+  private void recordLatency(Operation<?> op) {
+    if ( !latencyAwarePools || op.operationType == OperationType.BORROW_CLIENT ) {
+      return;
+    }
+    HClientPool opPool = hostPools.get(op.getCassandraHost());
+    if ( opPool instanceof LatencyAwareHClientPool ) {
+      ((LatencyAwareHClientPool) opPool).add(op.operationType, op.getExecutionTimeNano());
+    }
+  }
+
+  private void recordSlowOperation(Operation<?> op) {
+    if ( slowOperationTracker != null && slowOperationTracker.isSlow(op.getExecutionTimeNano()) ) {
+      slowOperationTracker.record(op);
+    }
+  }
+
+  /**
+   * @return the tracker of slow operations, null unless slowOperationThresholdMillis is set
+   */
+  public SlowOperationTracker getSlowOperationTracker() {
+    return slowOperationTracker;
+  }
+
+
+  /**
+   * Use the HostTimeoutCheck, which initiates a suspend, if and only if
    * we are configured for such AND there is more than one operating host pool
    * @param cassandraHost
    */
   private void doTimeoutCheck(CassandraHost cassandraHost) {
     if ( hostTimeoutTracker != null && hostPools.size() > 1) {
-      if (hostTimeoutTracker.checkTimeout(cassandraHost) ) {
-        suspendCassandraHost(cassandraHost);
-      }
+      hostTimeoutTracker.checkTimeout(cassandraHost);
     }
   }
 
@@ -405,7 +787,6 @@ public class HConnectionManager {
 
   public void releaseClient(CassandraConnectionHandle connectionHandle) throws SQLException {
     if (connectionHandle == null ) return;
-    if (connectionHandle.isClosed) return;
 
     HClientPool pool = hostPools.get(connectionHandle.getCassandraHost());
     if ( pool == null ) {
@@ -413,11 +794,10 @@ public class HConnectionManager {
     }
     if ( pool != null ) {
       pool.releaseClient(connectionHandle);
-    } else {
+    } else if ( connectionHandle.checkIn() ) {
       log.info("Client {} released to inactive or dead pool. Closing.", connectionHandle.getCassandraHost());
       closeQuietly(connectionHandle);
     }
-    connectionHandle.isClosed = true;
   }
 
   private void closeQuietly(CassandraConnectionHandle connectionHandle) {
@@ -434,16 +814,51 @@ public class HConnectionManager {
     HClientPool pool = hostPools.remove(cassandraHost);
     if ( pool != null ) {
       log.error("Pool state on shutdown: {}", pool.getStatusAsString());
+      PoolEvents.hostStateChanged(cassandraHost, PoolEventType.MARK_DOWN);
       pool.shutdown();
+      JmxMonitor.getInstance().unregisterPoolMonitor(this, cassandraHost);
       if ( cassandraHostRetryService != null ) 
         cassandraHostRetryService.add(cassandraHost);
     }
   }
 
+  /**
+   * Hand a host to the retry service, if there is one.
+   * @return whether the host is going to be retried
+   */
+  boolean retryLater(CassandraHost cassandraHost) {
+    if ( cassandraHostRetryService == null ) {
+      return false;
+    }
+    cassandraHostRetryService.add(cassandraHost);
+    return true;
+  }
+
   public Set<CassandraHost> getDownedHosts() {
+    if ( cassandraHostRetryService == null ) {
+      return Collections.emptySet();
+    }
     return cassandraHostRetryService.getDownedHosts();
   }
 
+  /**
+   * The scheduler shared by the background services of this connection manager.
+   */
+  ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * @return the service sizing the pools, null unless adaptive pool sizing is enabled
+   */
+  AdaptivePoolSizingService getAdaptivePoolSizingService() {
+    return adaptivePoolSizingService;
+  }
+
+  public CassandraHostProbe getHostProbe() {
+    return hostProbe;
+  }
+
   public Collection<HClientPool> getActivePools() {
     return Collections.unmodifiableCollection(hostPools.values());
   }
@@ -454,12 +869,26 @@ public class HConnectionManager {
 
   public void shutdown() {
     log.info("Shutdown called on HConnectionManager");
+    synchronized (this) {
+      shutdown = true;
+    }
     if ( cassandraHostRetryService != null )
       cassandraHostRetryService.shutdown();
     if ( nodeAutoDiscoverService != null )
       nodeAutoDiscoverService.shutdown();
     if ( hostTimeoutTracker != null ) 
       hostTimeoutTracker.shutdown();
+    if ( adaptivePoolSizingService != null )
+      adaptivePoolSizingService.shutdown();
+    if ( poolMaintenanceService != null )
+      poolMaintenanceService.shutdown();
+    if ( slowOperationTracker != null )
+      slowOperationTracker.shutdown();
+    if ( metricsExporter != null )
+      metricsExporter.shutdown();
+    hostProbe.shutdown();
+    scheduler.shutdownNow();
+    connectionExecutor.shutdownNow();
 
     for (HClientPool pool : hostPools.values()) {
       try {
@@ -467,6 +896,10 @@ public class HConnectionManager {
       } catch (IllegalArgumentException iae) {
         log.error("Out of order in HConnectionManager shutdown()?: {}", iae.getMessage());
       }
+      JmxMonitor.getInstance().unregisterPoolMonitor(this, pool.getCassandraHost());
+    }
+    for (CassandraHost cassandraHost : suspendedHostPools.keySet()) {
+      JmxMonitor.getInstance().unregisterPoolMonitor(this, cassandraHost);
     }
   }
 
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+
+/**
+ * Lets an {@link HOpTimer} be used where a {@link HostOpTimer} is expected. Only 
+ * operations are reported to the wrapped timer: its token is kept on the operation 
+ * and its stopWatchTagName is passed on as the tag name. The pool-internal timings, 
+ * such as BORROW_WAIT and CONNECT, are not reported to it. A {@link NullOpTimer} is 
+ * not called at all, and a {@link SpeedForJOpTimer} is handed the tags its 
+ * {@link OperationType} built once.
+ */
+public class HOpTimerAdapter implements HostOpTimer {
+
+  private static final HOpTimerAdapter NULL_TIMER = new HOpTimerAdapter(new NullOpTimer());
+
+  private final HOpTimer timer;
+  private final boolean nullTimer;
+
+  public HOpTimerAdapter(HOpTimer timer) {
+    this.timer = timer;
+    nullTimer = timer instanceof NullOpTimer;
+  }
+
+  /**
+   * @return an adapter for the timer, a shared one doing nothing when null
+   */
+  public static HOpTimerAdapter adapt(HOpTimer timer) {
+    if ( timer == null ) {
+      return NULL_TIMER;
+    }
+    return timer instanceof SpeedForJOpTimer ? new SpeedForJOpTimer.Adapter((SpeedForJOpTimer) timer) 
+        : new HOpTimerAdapter(timer);
+  }
+
+  public HOpTimer getTimer() {
+    return timer;
+  }
+
+  /**
+   * Start timing the operation with the wrapped timer.
+   */
+  @Override
+  public long startOperation(Operation<?> op) {
+    if ( !nullTimer ) {
+      op.timerToken = timer.start();
+    }
+    return 0;
+  }
+
+  /**
+   * Stop timing the operation, unless already stopped.
+   */
+  @Override
+  public void stopOperation(long token, Operation<?> op, CassandraHost host, boolean success) {
+    Object timerToken = op.timerToken;
+    if ( timerToken != null ) {
+      op.timerToken = null;
+      stopTimer(timerToken, op, success);
+    }
+  }
+
+  /**
+   * Stop the wrapped timer, tagging the operation with its stopWatchTagName.
+   */
+  protected void stopTimer(Object timerToken, Operation<?> op, boolean success) {
+    timer.stop(timerToken, op.stopWatchTagName, success);
+  }
+
+  /**
+   * Pool-internal timings are not reported to the wrapped timer.
+   */
+  @Override
+  public long start() {
+    return 0;
+  }
+
+  @Override
+  public void stop(long token, CassandraHost host, OperationType operationType, boolean success) {
+    // NO-OP
+  }
+}
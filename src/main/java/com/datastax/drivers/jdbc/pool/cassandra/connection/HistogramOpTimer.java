@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.LatencyHistogram;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.RollingLatencyHistogram;
+
+/**
+ * Keeps a {@link LatencyHistogram} of the successful operations of every host and 
+ * {@link OperationType}. Histograms roll over every interval; percentiles and throughput 
+ * are reported for the last complete interval. Recording takes no locks and allocates 
+ * nothing.
+ * 
+ * When set as the op timer of a {@link CassandraHostConfigurator} it is registered as an 
+ * MBean next to the client monitor.
+ */
+public class HistogramOpTimer implements HostOpTimer, HistogramOpTimerMBean {
+
+  public static final int DEF_INTERVAL_IN_SECONDS = 60;
+
+  private static final OperationType[] OPERATION_TYPES = OperationType.values();
+  static final String UNKNOWN_HOST = "unknown";
+
+  private static final String[] LATENCY_ITEMS = { "host", "operation", 
+    "p50Millis", "p95Millis", "p99Millis", "p999Millis", "throughput" };
+  private static final String[] LATENCY_DESCRIPTIONS = { "[hostname]:[port]", "operation type", 
+    "50th percentile in ms", "95th percentile in ms", "99th percentile in ms", "99.9th percentile in ms", 
+    "operations per second" };
+  private static final OpenType<?>[] LATENCY_TYPES = { SimpleType.STRING, SimpleType.STRING, 
+    SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE };
+  // the same without the host
+  private static final String[] OPERATION_LATENCY_ITEMS = Arrays.copyOfRange(LATENCY_ITEMS, 1, LATENCY_ITEMS.length);
+  private static final CompositeType HOST_LATENCY;
+  private static final TabularType HOST_LATENCIES;
+  private static final CompositeType OPERATION_LATENCY;
+  private static final TabularType OPERATION_LATENCIES;
+
+  static {
+    try {
+      HOST_LATENCY = new CompositeType("HostLatency", "Latencies of an operation type on a host", 
+          LATENCY_ITEMS, LATENCY_DESCRIPTIONS, LATENCY_TYPES);
+      HOST_LATENCIES = new TabularType("HostLatencies", "Latencies per host and operation type", 
+          HOST_LATENCY, new String[] { "host", "operation" });
+      OPERATION_LATENCY = new CompositeType("OperationLatency", "Latencies of an operation type", 
+          OPERATION_LATENCY_ITEMS, Arrays.copyOfRange(LATENCY_DESCRIPTIONS, 1, LATENCY_DESCRIPTIONS.length), 
+          Arrays.copyOfRange(LATENCY_TYPES, 1, LATENCY_TYPES.length));
+      OPERATION_LATENCIES = new TabularType("OperationLatencies", "Latencies per operation type", 
+          OPERATION_LATENCY, new String[] { "operation" });
+    } catch (OpenDataException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final ConcurrentMap<CassandraHost, RollingLatencyHistogram[]> histograms = 
+      new ConcurrentHashMap<CassandraHost, RollingLatencyHistogram[]>();
+  // operations which never reached a host
+  private final RollingLatencyHistogram[] unknownHost;
+  private volatile long intervalNanos;
+
+  public HistogramOpTimer() {
+    this(DEF_INTERVAL_IN_SECONDS);
+  }
+
+  public HistogramOpTimer(int intervalInSeconds) {
+    intervalNanos = intervalNanos(intervalInSeconds);
+    unknownHost = newHistograms();
+  }
+
+  @Override
+  public long start() {
+    return System.nanoTime();
+  }
+
+  @Override
+  public void stop(long token, CassandraHost host, OperationType operationType, boolean success) {
+    if ( !success ) {
+      return;
+    }
+    long now = System.nanoTime();
+    histograms(host)[operationType.ordinal()].recordNanos(now - token, now);
+  }
+
+  @Override
+  public long startOperation(Operation<?> op) {
+    return System.nanoTime();
+  }
+
+  @Override
+  public void stopOperation(long token, Operation<?> op, CassandraHost host, boolean success) {
+    stop(token, host, op.operationType, success);
+  }
+
+  @Override
+  public TabularData getLatencies() {
+    long now = System.nanoTime();
+    TabularData latencies = new TabularDataSupport(HOST_LATENCIES);
+    for (Map.Entry<CassandraHost, RollingLatencyHistogram[]> entry : histograms.entrySet()) {
+      addLatencies(entry.getKey().getUrl(), entry.getValue(), now, latencies);
+    }
+    addLatencies(UNKNOWN_HOST, unknownHost, now, latencies);
+    return latencies;
+  }
+
+  @Override
+  public TabularData getLatenciesPerOperation() {
+    long now = System.nanoTime();
+    TabularData latencies = new TabularDataSupport(OPERATION_LATENCIES);
+    for (OperationType operationType : OPERATION_TYPES) {
+      LatencyHistogram merged = new LatencyHistogram();
+      double throughput = 0;
+      for (RollingLatencyHistogram[] host : histograms.values()) {
+        throughput += host[operationType.ordinal()].mergeInto(merged, now);
+      }
+      throughput += unknownHost[operationType.ordinal()].mergeInto(merged, now);
+      if ( merged.getCount() > 0 ) {
+        latencies.put(row(OPERATION_LATENCY, OPERATION_LATENCY_ITEMS, new Object[] { operationType.name() }, 
+            merged, throughput));
+      }
+    }
+    return latencies;
+  }
+
+  @Override
+  public int getIntervalInSeconds() {
+    return (int) TimeUnit.NANOSECONDS.toSeconds(intervalNanos);
+  }
+
+  @Override
+  public void setIntervalInSeconds(int intervalInSeconds) {
+    intervalNanos = intervalNanos(intervalInSeconds);
+    for (RollingLatencyHistogram[] hostHistograms : histograms.values()) {
+      setIntervalNanos(hostHistograms);
+    }
+    setIntervalNanos(unknownHost);
+  }
+
+  /**
+   * Forget the histograms of a host which left the cluster, so that it is no longer 
+   * reported. An operation still running against it when it was removed records it again.
+   */
+  public void remove(CassandraHost host) {
+    histograms.remove(host);
+  }
+
+  /**
+   * @return the histograms of every host, indexed by {@link OperationType} ordinal
+   */
+  Map<CassandraHost, RollingLatencyHistogram[]> getHistograms() {
+    return histograms;
+  }
+
+  /**
+   * @return the histograms of the operations which never reached a host
+   */
+  RollingLatencyHistogram[] getUnknownHostHistograms() {
+    return unknownHost;
+  }
+
+  private static long intervalNanos(int intervalInSeconds) {
+    if ( intervalInSeconds < 1 ) {
+      throw new IllegalArgumentException("The interval must be at least a second");
+    }
+    return TimeUnit.SECONDS.toNanos(intervalInSeconds);
+  }
+
+  private void setIntervalNanos(RollingLatencyHistogram[] hostHistograms) {
+    for (RollingLatencyHistogram histogram : hostHistograms) {
+      histogram.setIntervalNanos(intervalNanos);
+    }
+  }
+
+  private RollingLatencyHistogram[] histograms(CassandraHost host) {
+    if ( host == null ) {
+      return unknownHost;
+    }
+    RollingLatencyHistogram[] hostHistograms = histograms.get(host);
+    if ( hostHistograms == null ) {
+      hostHistograms = newHistograms();
+      RollingLatencyHistogram[] existing = histograms.putIfAbsent(host, hostHistograms);
+      if ( existing != null ) {
+        hostHistograms = existing;
+      }
+    }
+    return hostHistograms;
+  }
+
+  private RollingLatencyHistogram[] newHistograms() {
+    RollingLatencyHistogram[] rolling = new RollingLatencyHistogram[OPERATION_TYPES.length];
+    for (int i = 0; i < rolling.length; i++) {
+      rolling[i] = new RollingLatencyHistogram(intervalNanos);
+    }
+    return rolling;
+  }
+
+  private void addLatencies(String host, RollingLatencyHistogram[] hostHistograms, long now, TabularData latencies) {
+    for (OperationType operationType : OPERATION_TYPES) {
+      LatencyHistogram completed = new LatencyHistogram();
+      double throughput = hostHistograms[operationType.ordinal()].mergeInto(completed, now);
+      if ( completed.getCount() > 0 ) {
+        latencies.put(row(HOST_LATENCY, LATENCY_ITEMS, new Object[] { host, operationType.name() }, 
+            completed, throughput));
+      }
+    }
+  }
+
+  /**
+   * @return the [keys] of the row followed by the percentiles and throughput, named [items]
+   */
+  private static CompositeDataSupport row(CompositeType type, String[] items, Object[] keys, 
+      LatencyHistogram histogram, double throughput) {
+    Object[] values = new Object[keys.length + 5];
+    System.arraycopy(keys, 0, values, 0, keys.length);
+    values[keys.length] = millis(histogram.getPercentileNanos(50));
+    values[keys.length + 1] = millis(histogram.getPercentileNanos(95));
+    values[keys.length + 2] = millis(histogram.getPercentileNanos(99));
+    values[keys.length + 3] = millis(histogram.getPercentileNanos(99.9));
+    values[keys.length + 4] = throughput;
+    try {
+      return new CompositeDataSupport(type, items, values);
+    } catch (OpenDataException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+}
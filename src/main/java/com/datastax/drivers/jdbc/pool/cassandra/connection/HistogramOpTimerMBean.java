@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * The JMX view of a {@link HistogramOpTimer}. Latencies are those of the successful 
+ * operations of the last complete interval, as open data so that monitoring tools 
+ * can read the numbers.
+ */
+public interface HistogramOpTimerMBean {
+
+  /**
+   * @return a row per host and operation type, indexed by "host" ([hostname]:[port]) 
+   *         and "operation", with p50Millis, p95Millis, p99Millis, p999Millis and 
+   *         throughput in operations per second
+   */
+  TabularData getLatencies();
+
+  /**
+   * @return a row per operation type over all hosts, indexed by "operation", with 
+   *         the same numbers as {@link #getLatencies()}
+   */
+  TabularData getLatenciesPerOperation();
+
+  int getIntervalInSeconds();
+
+  /**
+   * Takes effect at the end of the current interval.
+   * @param intervalInSeconds
+   */
+  void setIntervalInSeconds(int intervalInSeconds);
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+
+/**
+ * Timer for Cassandra operations which needs no allocation per operation: the token 
+ * is a primitive and the operation is identified by its {@link OperationType} and host 
+ * rather than by a tag name. Implementations only interested in the duration return 
+ * System.nanoTime() from start. Every start is followed by exactly one stop.
+ * 
+ * The operations run by the connection manager are timed through startOperation and 
+ * stopOperation, the pool-internal timings, such as BORROW_WAIT and CONNECT, through 
+ * start and stop. A timer only interested in operations may ignore the latter.
+ * 
+ * {@link HOpTimerAdapter} turns an {@link HOpTimer} into one.
+ */
+public interface HostOpTimer {
+
+  /**
+   * Start timing an operation.
+   * 
+   * @return - a token that will be returned to the timer when stop(...) in
+   *         invoked, usually the current System.nanoTime()
+   */
+  long start();
+
+  /**
+   * 
+   * @param token
+   *          - the token returned from start
+   * @param host
+   *          - the host the last attempt ran against, null if it was never sent to one
+   * @param operationType
+   *          - the type of the operation
+   * @param success
+   *          - did the operation succeed
+   */
+  void stop(long token, CassandraHost host, OperationType operationType, boolean success);
+
+  /**
+   * Start timing an operation of the connection manager, once whatever the number 
+   * of hosts it fails over to.
+   * 
+   * @return - a token that will be returned to the timer when stopOperation(...) 
+   *         is invoked
+   */
+  long startOperation(Operation<?> op);
+
+  /**
+   * 
+   * @param token
+   *          - the token returned from startOperation
+   * @param op
+   *          - the operation
+   * @param host
+   *          - the host the last attempt ran against, null if it was never sent to one
+   * @param success
+   *          - did the operation succeed
+   */
+  void stopOperation(long token, Operation<?> op, CassandraHost host, boolean success);
+}
@@ -19,38 +19,66 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
 
 /**
- * Keep track of how often a node replies with a HTimeoutException. If we go 
- * past the threshold of [timeoutCounter] timeouts within [timeWindow] milliseconds,
- * then we mark the node as suspended. (10 timeouts within 500ms by default)
+ * Keep track of how often a node replies with a HTimeoutException. If we get
+ * [timeoutCounter] timeouts within [timeWindow] milliseconds, then we mark 
+ * the node as suspended. (10 timeouts within 500ms by default)
+ * 
+ * The last [timeoutCounter] timeouts of each host are kept in a fixed size ring
+ * of nanoTime stamps, so recording a timeout takes a single map lookup and does
+ * not allocate.
  * 
  * Periodically check the suspended nodes list every retryDelayInSeconds. If 
- * the node has been suspended longer than nodeSuspensionDurationInSeconds,
- * then we unsuspend,  placing it back in the available pool. (10 second 
- * suspension retried every 10 seconds by default). 
+ * the node has been suspended longer than its suspension duration, then we 
+ * unsuspend,  placing it back in the available pool. (10 second suspension 
+ * retried every 10 seconds by default). 
+ * 
+ * The suspension duration starts at nodeSuspensionDurationInSeconds and doubles
+ * every time the node gets suspended again, up to maxNodeSuspensionDurationInSeconds,
+ * with some random jitter so flapping nodes do not come back in lock step. It goes
+ * back to nodeSuspensionDurationInSeconds once the node has behaved for 
+ * healthyPeriodInSeconds. Optionally the node is probed with a dedicated connection
+ * before being unsuspended, and kept suspended if the probe fails. The probe runs
+ * on the probe threads and its outcome is handled there, so the shared scheduler
+ * never waits for it.
  *
  * @author zznate
  */
 public class HostTimeoutTracker extends BackgroundCassandraHostService {
   private static final Logger log = LoggerFactory.getLogger(HostTimeoutTracker.class);
 
-  private ConcurrentHashMap<CassandraHost, LinkedBlockingQueue<Long>> timeouts;
-  private ConcurrentHashMap<CassandraHost, Long> suspended;
-  private int timeoutCounter;
-  private int timeoutWindow;
-  private int nodeSuspensionDurationInSeconds;
+  private final ConcurrentHashMap<CassandraHost, HostTimeouts> timeouts;
+  private final ConcurrentHashMap<CassandraHost, HostTimeouts> suspended;
+  private final int timeoutCounter;
+  private final long timeoutWindowNanos;
+  private final long suspensionNanos;
+  private final long maxSuspensionNanos;
+  private final double suspensionJitter;
+  private final long healthyPeriodNanos;
+  private final CassandraHostProbe probe;
+  private final Random random = new Random();
   
   public static final int DEF_TIMEOUT_COUNTER = 10;
   public static final int DEF_TIMEOUT_WINDOW = 500;
   public static final int DEF_NODE_SUSPENSION_DURATION_IN_SECONDS = 10;
+  public static final int DEF_MAX_NODE_SUSPENSION_DURATION_IN_SECONDS = 300;
+  public static final double DEF_NODE_SUSPENSION_JITTER = 0.2;
+  public static final int DEF_HEALTHY_PERIOD_IN_SECONDS = 60;
   public static final int DEF_NODE_UNSUSPEND_CHECK_DELAY_IN_SECONDS = 10;
   
   
@@ -58,45 +86,211 @@ public class HostTimeoutTracker extends BackgroundCassandraHostService {
       CassandraHostConfigurator cassandraHostConfigurator) {
     super(connectionManager, cassandraHostConfigurator);
     retryDelayInSeconds = cassandraHostConfigurator.getHostTimeoutUnsuspendCheckDelay();
-    timeouts = new ConcurrentHashMap<CassandraHost, LinkedBlockingQueue<Long>>();
-    suspended = new ConcurrentHashMap<CassandraHost, Long>();
+    timeouts = new ConcurrentHashMap<CassandraHost, HostTimeouts>();
+    suspended = new ConcurrentHashMap<CassandraHost, HostTimeouts>();
+    timeoutCounter = Math.max(1, cassandraHostConfigurator.getHostTimeoutCounter());
+    timeoutWindowNanos = TimeUnit.MILLISECONDS.toNanos(cassandraHostConfigurator.getHostTimeoutWindow());
+    suspensionNanos = TimeUnit.SECONDS.toNanos(cassandraHostConfigurator.getHostTimeoutSuspensionDurationInSeconds());
+    maxSuspensionNanos = Math.max(suspensionNanos,
+        TimeUnit.SECONDS.toNanos(cassandraHostConfigurator.getHostTimeoutMaxSuspensionDurationInSeconds()));
+    suspensionJitter = cassandraHostConfigurator.getHostTimeoutSuspensionJitter();
+    healthyPeriodNanos = TimeUnit.SECONDS.toNanos(cassandraHostConfigurator.getHostTimeoutHealthyPeriodInSeconds());
+    probe = cassandraHostConfigurator.getHostTimeoutProbeBeforeUnsuspend() 
+        ? connectionManager.getHostProbe() : null;
     sf = executor.scheduleWithFixedDelay(new Unsuspender(), retryDelayInSeconds,retryDelayInSeconds, TimeUnit.SECONDS);
-    timeoutCounter = cassandraHostConfigurator.getHostTimeoutCounter();
-    timeoutWindow = cassandraHostConfigurator.getHostTimeoutWindow();
-    nodeSuspensionDurationInSeconds = cassandraHostConfigurator.getHostTimeoutSuspensionDurationInSeconds();
   }
 
+  /**
+   * Record a timeout for the host, suspending it if this was the [timeoutCounter]th 
+   * timeout within [timeWindow] milliseconds.
+   * @param cassandraHost
+   * @return true if the host went past the threshold
+   */
   public boolean checkTimeout(CassandraHost cassandraHost) {
-    timeouts.putIfAbsent(cassandraHost, new LinkedBlockingQueue<Long>());
-    long currentTimeMillis = System.currentTimeMillis();
-    timeouts.get(cassandraHost).add(currentTimeMillis);
-    boolean timeout = false;
-    // if there are 3 timeouts within 500ms, return false
-    if ( timeouts.get(cassandraHost).size() > timeoutCounter) {
-      Long last = timeouts.get(cassandraHost).remove();      
-      if (last.longValue() < (currentTimeMillis - timeoutWindow)) {        
-        timeout = true;
-        connectionManager.suspendCassandraHost(cassandraHost);
-        suspended.putIfAbsent(cassandraHost, currentTimeMillis);                                    
-      }      
+    HostTimeouts hostTimeouts = timeouts.get(cassandraHost);
+    if ( hostTimeouts == null ) {
+      hostTimeouts = new HostTimeouts(timeoutCounter);
+      HostTimeouts existing = timeouts.putIfAbsent(cassandraHost, hostTimeouts);
+      if ( existing != null ) {
+        hostTimeouts = existing;
+      }
+    }
+    long now = System.nanoTime();
+    if ( !hostTimeouts.record(now, timeoutWindowNanos) ) {
+      return false;
+    }
+    if ( connectionManager.suspendCassandraHost(cassandraHost) ) {
+      long duration = hostTimeouts.suspend(now);
+      suspended.put(cassandraHost, hostTimeouts);
+      log.warn("Suspended CassandraHost {} for {}ms after {} timeouts", 
+          new Object[]{cassandraHost, TimeUnit.NANOSECONDS.toMillis(duration), timeoutCounter});
+    }
+    return true;
+  }
+
+  /**
+   * @return the duration of the next suspension of a host which has been suspended
+   *         [backoff] times in a row, jittered
+   */
+  long suspensionDuration(int backoff) {
+    long duration = suspensionNanos;
+    for (int i = 0; i < backoff && duration < maxSuspensionNanos; i++) {
+      duration *= 2;
+    }
+    duration = Math.min(duration, maxSuspensionNanos);
+    double jitter;
+    synchronized (random) {
+      jitter = suspensionJitter * (2 * random.nextDouble() - 1);
+    }
+    return (long) (duration * (1 + jitter));
+  }
+
+  /**
+   * Ring of the nanoTime stamps of the last timeouts of a host, along with its 
+   * suspension backoff. Under contention the slot holding the oldest stamp can be 
+   * overwritten by a concurrent timeout, which only makes the check a little more eager.
+   */
+  final class HostTimeouts {
+    private final AtomicLongArray stamps;
+    private final AtomicLong count = new AtomicLong();
+    // guarded by this
+    private int backoff;
+    private long suspendedUntil;
+    private long unsuspendedAt;
+    private boolean everUnsuspended;
+    private boolean probing;
+
+    HostTimeouts(int size) {
+      stamps = new AtomicLongArray(size);
+    }
+
+    /**
+     * @return true if the ring is full and the oldest stamp is within the window
+     */
+    boolean record(long now, long windowNanos) {
+      long n = count.getAndIncrement();
+      int size = stamps.length();
+      stamps.set((int) (n % size), now);
+      if ( n + 1 < size ) {
+        return false;
+      }
+      // the oldest of the last [size] stamps lives in the slot following ours
+      long oldest = stamps.get((int) ((n + 1) % size));
+      return now - oldest <= windowNanos;
+    }
+
+    /**
+     * Start a new suspension, backing off from the previous one unless the host
+     * has been healthy for long enough since.
+     * @return the duration of the suspension
+     */
+    synchronized long suspend(long now) {
+      if ( !everUnsuspended || now - unsuspendedAt >= healthyPeriodNanos ) {
+        backoff = 0;
+      }
+      return extendSuspension(now);
+    }
+
+    /**
+     * Keep the host suspended for the next backoff step.
+     * @return the duration of the suspension
+     */
+    synchronized long extendSuspension(long now) {
+      long duration = suspensionDuration(backoff);
+      if ( backoff < Integer.MAX_VALUE ) {
+        backoff++;
+      }
+      suspendedUntil = now + duration;
+      return duration;
+    }
+
+    synchronized boolean isSuspensionOver(long now) {
+      return now - suspendedUntil >= 0;
+    }
+
+    synchronized void unsuspended(long now) {
+      unsuspendedAt = now;
+      everUnsuspended = true;
+    }
+
+    /**
+     * @return false if a probe of the host is already in flight
+     */
+    synchronized boolean startProbe() {
+      if ( probing ) {
+        return false;
+      }
+      probing = true;
+      return true;
+    }
+
+    synchronized void probeDone() {
+      probing = false;
     }
-    return timeout;
   }
   
   class Unsuspender implements Runnable {
 
     @Override
     public void run() {
-      for (Iterator<Entry<CassandraHost,Long>> iterator = suspended.entrySet().iterator(); iterator.hasNext();) {
-        Entry<CassandraHost,Long> vals = iterator.next();
-        if ( vals.getValue() < (System.currentTimeMillis() - (nodeSuspensionDurationInSeconds * 1000)) ) {
+      for (Iterator<Entry<CassandraHost,HostTimeouts>> iterator = suspended.entrySet().iterator(); iterator.hasNext();) {
+        Entry<CassandraHost,HostTimeouts> vals = iterator.next();
+        HostTimeouts hostTimeouts = vals.getValue();
+        if ( !hostTimeouts.isSuspensionOver(System.nanoTime()) ) {
+          continue;
+        }
+        if ( probe == null ) {
+          hostTimeouts.unsuspended(System.nanoTime());
           connectionManager.unsuspendCassandraHost(vals.getKey());
-          iterator.remove();          
+          iterator.remove();
+        } else if ( hostTimeouts.startProbe() ) {
+          probeThenUnsuspend(vals.getKey(), hostTimeouts);
         }
       }      
     }
     
   }
+
+  /**
+   * Probe the host in the background, then unsuspend it or keep it suspended 
+   * for the next backoff step.
+   */
+  private void probeThenUnsuspend(final CassandraHost cassandraHost, final HostTimeouts hostTimeouts) {
+    final ListenableFuture<Boolean> result;
+    try {
+      result = probe.submit(cassandraHost);
+    } catch (RejectedExecutionException e) {
+      hostTimeouts.probeDone();
+      log.debug("Probes are shut down, leaving {} suspended", cassandraHost);
+      return;
+    }
+    result.addListener(new Runnable() {
+      @Override
+      public void run() {
+        boolean healthy = false;
+        try {
+          healthy = result.get();
+        } catch (ExecutionException e) {
+          log.error("Unexpected probe failure", e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        try {
+          if ( healthy ) {
+            hostTimeouts.unsuspended(System.nanoTime());
+            connectionManager.unsuspendCassandraHost(cassandraHost);
+            suspended.remove(cassandraHost, hostTimeouts);
+          } else {
+            long duration = hostTimeouts.extendSuspension(System.nanoTime());
+            log.warn("Probe failed for suspended CassandraHost {}. Keeping it suspended for {}ms", 
+                cassandraHost, TimeUnit.NANOSECONDS.toMillis(duration));
+          }
+        } finally {
+          hostTimeouts.probeDone();
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+  }
   
   @Override
   void applyRetryDelay() {
@@ -109,8 +303,6 @@ public class HostTimeoutTracker extends BackgroundCassandraHostService {
     log.info("Shutting down HostTimeoutTracker");
     if ( sf != null )
       sf.cancel(true);
-    if ( executor != null ) 
-      executor.shutdownNow();
     log.info("HostTimeTracker shutdown complete.");
   }
 
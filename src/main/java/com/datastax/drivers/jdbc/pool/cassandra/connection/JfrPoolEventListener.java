@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports pool and failover activity as Java Flight Recorder events, so that it can be 
+ * lined up with GC and safepoint pauses. The library still runs on JVMs without a flight 
+ * recorder, so the events are defined through jdk.jfr.EventFactory, looked up 
+ * reflectively, rather than as subclasses of jdk.jfr.Event.
+ * 
+ * Events are only reported while a recording enables them: the enabled types are 
+ * refreshed whenever a recording starts or stops, and a disabled event costs the pool 
+ * a volatile read. They show up under "Cassandra JDBC Pool", named 
+ * com.datastax.drivers.jdbc.pool.[ConnectionBorrow, ConnectionCreate, ConnectionClose, 
+ * Failover, HostSuspend, HostUnsuspend, HostMarkDown, HostScore].
+ */
+public class JfrPoolEventListener implements PoolEventListener {
+
+  private static final Logger log = LoggerFactory.getLogger(JfrPoolEventListener.class);
+
+  private static final String NAME_PREFIX = "com.datastax.drivers.jdbc.pool.";
+  private static final String[] CATEGORY = { "Cassandra JDBC Pool" };
+
+  private static JfrPoolEventListener installed;
+
+  private final Map<PoolEventType, Object> factories = new EnumMap<PoolEventType, Object>(PoolEventType.class);
+
+  private final Constructor<?> annotationElement;
+  private final Constructor<?> valueDescriptor;
+  private final Method createFactory;
+  private final Method newEvent;
+  private final Method getEventType;
+  private final Method isEventTypeEnabled;
+  private final Method set;
+  private final Method commit;
+
+  private JfrPoolEventListener() throws Exception {
+    annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+    valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+    Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+    createFactory = eventFactory.getMethod("create", List.class, List.class);
+    newEvent = eventFactory.getMethod("newEvent");
+    getEventType = eventFactory.getMethod("getEventType");
+    isEventTypeEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+    Class<?> event = Class.forName("jdk.jfr.Event");
+    set = event.getMethod("set", int.class, Object.class);
+    commit = event.getMethod("commit");
+
+    define(PoolEventType.BORROW, "ConnectionBorrow", "Connection Borrow", 
+        field(String.class, "host", "Host"), timespan("waitTime", "Wait Time"));
+    define(PoolEventType.CREATE, "ConnectionCreate", "Connection Create", 
+        field(String.class, "host", "Host"), timespan("connectTime", "Connect Time"));
+    define(PoolEventType.CLOSE, "ConnectionClose", "Connection Close", field(String.class, "host", "Host"));
+    define(PoolEventType.FAILOVER, "Failover", "Failover", field(String.class, "fromHost", "From Host"), 
+        field(String.class, "toHost", "To Host"), field(String.class, "exceptionClass", "Exception Class"));
+    define(PoolEventType.SUSPEND, "HostSuspend", "Host Suspend", field(String.class, "host", "Host"));
+    define(PoolEventType.UNSUSPEND, "HostUnsuspend", "Host Unsuspend", field(String.class, "host", "Host"));
+    define(PoolEventType.MARK_DOWN, "HostMarkDown", "Host Mark Down", field(String.class, "host", "Host"));
+    define(PoolEventType.SCORE, "HostScore", "Host Score", field(String.class, "host", "Host"), 
+        field(double.class, "score", "Score"));
+  }
+
+  /**
+   * Report pool activity to the flight recorder from now on, once per JVM.
+   * @return false if this JVM has no flight recorder, or it could not be used
+   */
+  public static synchronized boolean install() {
+    if ( installed != null ) {
+      return true;
+    }
+    try {
+      JfrPoolEventListener listener = new JfrPoolEventListener();
+      PoolEvents.setListener(listener, EnumSet.noneOf(PoolEventType.class));
+      listener.listenToRecordings();
+      installed = listener;
+      log.info("Reporting pool events to Java Flight Recorder");
+      return true;
+    } catch (ClassNotFoundException e) {
+      log.info("Java Flight Recorder is not available, not reporting pool events to it");
+    } catch (Exception e) {
+      log.warn("Unable to report pool events to Java Flight Recorder", e);
+    }
+    return false;
+  }
+
+  /**
+   * Refresh the enabled event types now and whenever a recording starts or stops.
+   */
+  private void listenToRecordings() throws Exception {
+    Class<?> recorderListener = Class.forName("jdk.jfr.FlightRecorderListener");
+    Object proxy = Proxy.newProxyInstance(recorderListener.getClassLoader(), new Class<?>[] { recorderListener }, 
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ( method.getName().equals("equals") ) {
+              return proxy == args[0];
+            } else if ( method.getName().equals("hashCode") ) {
+              return System.identityHashCode(proxy);
+            } else if ( method.getName().equals("toString") ) {
+              return JfrPoolEventListener.class.getSimpleName();
+            }
+            // recorderInitialized or recordingStateChanged
+            refresh();
+            return null;
+          }
+        });
+    Class.forName("jdk.jfr.FlightRecorder").getMethod("addListener", recorderListener).invoke(null, proxy);
+    refresh();
+  }
+
+  void refresh() {
+    EnumSet<PoolEventType> enabled = EnumSet.noneOf(PoolEventType.class);
+    try {
+      for (Map.Entry<PoolEventType, Object> factory : factories.entrySet()) {
+        if ( (Boolean) isEventTypeEnabled.invoke(getEventType.invoke(factory.getValue())) ) {
+          enabled.add(factory.getKey());
+        }
+      }
+    } catch (Exception e) {
+      log.warn("Unable to tell which pool events are enabled in Java Flight Recorder", e);
+    }
+    PoolEvents.setEnabled(this, enabled);
+  }
+
+  @Override
+  public void borrowed(CassandraHost host, long waitNanos) {
+    commit(PoolEventType.BORROW, host.getUrl(), waitNanos);
+  }
+
+  @Override
+  public void created(CassandraHost host, long durationNanos) {
+    commit(PoolEventType.CREATE, host.getUrl(), durationNanos);
+  }
+
+  @Override
+  public void closed(CassandraHost host) {
+    commit(PoolEventType.CLOSE, host.getUrl());
+  }
+
+  @Override
+  public void failedOver(CassandraHost from, CassandraHost to, Class<?> exceptionClass) {
+    commit(PoolEventType.FAILOVER, from == null ? null : from.getUrl(), to == null ? null : to.getUrl(), 
+        exceptionClass.getName());
+  }
+
+  @Override
+  public void hostStateChanged(CassandraHost host, PoolEventType type) {
+    commit(type, host.getUrl());
+  }
+
+  @Override
+  public void scoreUpdated(CassandraHost host, double score) {
+    commit(PoolEventType.SCORE, host.getUrl(), score);
+  }
+
+  private void commit(PoolEventType type, Object... values) {
+    try {
+      Object event = newEvent.invoke(factories.get(type));
+      for (int i = 0; i < values.length; i++) {
+        set.invoke(event, i, values[i]);
+      }
+      commit.invoke(event);
+    } catch (Exception e) {
+      log.debug("Unable to commit {} event: {}", type, e.getMessage());
+    }
+  }
+
+  private void define(PoolEventType type, String name, String label, Object... fields) throws Exception {
+    List<Object> annotations = Arrays.asList(annotation("jdk.jfr.Name", NAME_PREFIX + name), 
+        annotation("jdk.jfr.Label", label), annotation("jdk.jfr.Category", CATEGORY));
+    factories.put(type, createFactory.invoke(null, annotations, Arrays.asList(fields)));
+  }
+
+  private Object field(Class<?> type, String name, String label) throws Exception {
+    List<Object> annotations = new ArrayList<Object>();
+    annotations.add(annotation("jdk.jfr.Label", label));
+    return valueDescriptor.newInstance(type, name, annotations);
+  }
+
+  private Object timespan(String name, String label) throws Exception {
+    List<Object> annotations = new ArrayList<Object>();
+    annotations.add(annotation("jdk.jfr.Label", label));
+    annotations.add(annotation("jdk.jfr.Timespan", "NANOSECONDS"));
+    return valueDescriptor.newInstance(long.class, name, annotations);
+  }
+
+  private Object annotation(String annotationClass, Object value) throws Exception {
+    Class<? extends Annotation> annotationType = Class.forName(annotationClass).asSubclass(Annotation.class);
+    return annotationElement.newInstance(annotationType, value);
+  }
+}
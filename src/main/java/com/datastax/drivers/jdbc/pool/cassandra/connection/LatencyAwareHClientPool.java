@@ -18,75 +18,121 @@
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
 
 
 /**
  * This class provides a queue function of latencies over CHCP, collecting all the latency information and calculates
  * the score (expensive operation).
  * 
+ * Latencies are the execution times measured by {@link com.datastax.drivers.jdbc.pool.cassandra.service.Operation}
+ * and are kept in a separate window per {@link OperationType}, so the time an application holds on to a borrowed
+ * connection does not leak into the score.
+ * 
  * @author Vijay Parthasarathy
  */
 public class LatencyAwareHClientPool extends ConcurrentHClientPool {
-  private static final AtomicInteger intervalupdates = new AtomicInteger(0);
   // Mostly static configuration this doesnt need to be configurable to the clients.
   private static final int UPDATES_PER_INTERVAL = 1000;
   private static final int WINDOW_QUEUE_SIZE = 100;
   private static final double SENTINEL_COMPARE = 0.768;
-  private final LinkedBlockingDeque<Double> latencies;
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+  private final AtomicInteger intervalupdates = new AtomicInteger(0);
+  private final Map<OperationType, LinkedBlockingDeque<Double>> latencies;
 
   public LatencyAwareHClientPool(CassandraHost host) throws SQLException {
     super(host);
-    latencies = new LinkedBlockingDeque<Double>(WINDOW_QUEUE_SIZE);
-  }
-
-  @Override
-  public CassandraConnectionHandle borrowClient() throws SQLException {
-    CassandraConnectionHandle conn = super.borrowClient();
-    conn.startToUse();
-    return conn;
+    latencies = new EnumMap<OperationType, LinkedBlockingDeque<Double>>(OperationType.class);
+    for (OperationType operationType : OperationType.values()) {
+      if (reachesServer(operationType)) {
+        latencies.put(operationType, new LinkedBlockingDeque<Double>(WINDOW_QUEUE_SIZE));
+      }
+    }
   }
 
-  @Override
-  public void releaseClient(CassandraConnectionHandle client) throws SQLException {
-    add(client.getSinceLastUsed());
-    super.releaseClient(client);
+  /**
+   * Borrowing a client, waiting for one and connecting never run a request against the 
+   * server, so there is nothing to measure.
+   */
+  private static boolean reachesServer(OperationType operationType) {
+    switch (operationType) {
+      case BORROW_CLIENT:
+      case BORROW_WAIT:
+      case CONNECT:
+        return false;
+      default:
+        return true;
+    }
   }
 
-  void add(double i) {
-    if (intervalupdates.intValue() >= UPDATES_PER_INTERVAL)
+  /**
+   * Records the execution time of an operation run against this host.
+   * 
+   * @param operationType the type of the operation
+   * @param execTimeNanos the execution time in nanoseconds
+   */
+  void add(OperationType operationType, long execTimeNanos) {
+    LinkedBlockingDeque<Double> window = latencies.get(operationType);
+    if (window == null || intervalupdates.intValue() >= UPDATES_PER_INTERVAL)
       return;
-    if (!latencies.offer(i)) {
-      latencies.remove();
-      latencies.offer(i);
+    // The model has been tuned with millisecond latencies.
+    double i = execTimeNanos / NANOS_PER_MILLI;
+    if (!window.offer(i)) {
+      window.poll();
+      window.offer(i);
     }
     intervalupdates.getAndIncrement();
   }
 
+  /**
+   * @return the average of the scores of every operation type which has been measured
+   */
   double score() {
+    double total = 0d;
+    int measured = 0;
+    for (LinkedBlockingDeque<Double> window : latencies.values()) {
+      if (window.size() > 0) {
+        total += score(window);
+        measured++;
+      }
+    }
+    return measured == 0 ? 0d : total / measured;
+  }
+
+  double score(OperationType operationType) {
+    LinkedBlockingDeque<Double> window = latencies.get(operationType);
+    return window == null ? 0d : score(window);
+  }
+
+  private double score(LinkedBlockingDeque<Double> window) {
     double log = 0d;
-    if (latencies.size() > 0) {
-      double probability = p(SENTINEL_COMPARE);
+    if (window.size() > 0) {
+      double probability = p(window, SENTINEL_COMPARE);
       log = (-1) * Math.log10(probability);
     }
     return log;
   }
 
-  double p(double t) {
-    double mean = mean();
+  private double p(LinkedBlockingDeque<Double> window, double t) {
+    double mean = mean(window);
     double exponent = (-1) * (t) / mean;
     return 1 - Math.pow(Math.E, exponent);
   }
 
-  private double mean() {
+  private double mean(LinkedBlockingDeque<Double> window) {
     double total = 0;
-    for (double d : latencies) {
+    int count = 0;
+    for (double d : window) {
       total += d;
+      count++;
     }
-    return total / latencies.size();
+    return count == 0 ? 0d : total / count;
   }
 
   public void resetIntervel() {
@@ -94,7 +140,9 @@ public class LatencyAwareHClientPool extends ConcurrentHClientPool {
   }
 
   public void clear() {
-    latencies.clear();
+    for (LinkedBlockingDeque<Double> window : latencies.values()) {
+      window.clear();
+    }
     intervalupdates.set(0);
   }
 
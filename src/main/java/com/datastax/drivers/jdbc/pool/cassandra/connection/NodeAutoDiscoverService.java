@@ -17,112 +17,278 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
+import java.net.InetAddress;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-
+import org.apache.cassandra.thrift.AuthenticationException;
+import org.apache.cassandra.thrift.AuthenticationRequest;
+import org.apache.cassandra.thrift.AuthorizationException;
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.KsDef;
+import org.apache.cassandra.thrift.TokenRange;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.drivers.jdbc.pool.cassandra.Keyspace;
 import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
 
-
+/**
+ * Periodically reads the ring from the system.peers table of the node a borrowed 
+ * connection points to, and adds or removes pools according to how the ring 
+ * changed since the previous run. Servers without system.peers, before Cassandra 
+ * 1.2, are asked for the ring with the Thrift describe_ring call instead. The ring 
+ * is read on a thread of its own, since borrowing a connection and querying it can 
+ * block for long, and the shared scheduler only hands the runs over to it. Hosts 
+ * are only removed once they left a ring we saw them in, never because we did 
+ * not know about them. When the ring did not change, which is the common case, 
+ * nothing else is done.
+ */
 public class NodeAutoDiscoverService extends BackgroundCassandraHostService {
 
   private static final Logger log = LoggerFactory.getLogger(NodeAutoDiscoverService.class);
 
   public static final int DEF_AUTO_DISCOVERY_DELAY = 30;
 
+  static final String PEERS_QUERY = "SELECT peer, rpc_address FROM system.peers";
+
+  // only touched from doAddNodes, which never runs concurrently with itself
+  private Set<CassandraHost> lastRing;
+  // null until the first read of the ring found out whether system.peers exists
+  private Boolean peersSupported;
+  // runs doAddNodes, one run at a time
+  private final ThreadPoolExecutor discoveryExecutor;
 
   public NodeAutoDiscoverService(HConnectionManager connectionManager,
       CassandraHostConfigurator cassandraHostConfigurator) {
     super(connectionManager, cassandraHostConfigurator);
-    //this.retryDelayInSeconds = cassandraHostConfigurator.getAutoDiscoveryDelayInSeconds();
+    this.retryDelayInSeconds = cassandraHostConfigurator.getAutoDiscoveryDelayInSeconds();
+    discoveryExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
+        new DaemonThreadPoolFactory(getClass(), cassandraHostConfigurator.getUseVirtualThreads()));
     sf = executor.scheduleWithFixedDelay(new QueryRing(), retryDelayInSeconds,retryDelayInSeconds, TimeUnit.SECONDS);
   }
 
   @Override
   void shutdown() {
-    log.error("Auto Discovery retry shutdown hook called");
+    log.info("Auto Discovery retry shutdown hook called");
     if ( sf != null ) {
       sf.cancel(true);
     }
-    if ( executor != null ) {
-      executor.shutdownNow();
-    }
-    log.error("AutoDiscovery retry shutdown complete");
+    discoveryExecutor.shutdownNow();
+    log.info("AutoDiscovery retry shutdown complete");
   }
 
   @Override
-  public void applyRetryDelay() {
-    // no op for now
+  public synchronized void applyRetryDelay() {
+    sf.cancel(false);
+    sf = executor.scheduleWithFixedDelay(new QueryRing(), retryDelayInSeconds,retryDelayInSeconds, TimeUnit.SECONDS);
   }
 
   class QueryRing implements Runnable {
 
     @Override
     public void run() {
-      doAddNodes();
+      try {
+        discoveryExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            doAddNodes();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        log.debug("Auto discovery service still reading the ring, skipping this run.");
+      }
     }
 
   }
   
-  public void doAddNodes() {
+  public synchronized void doAddNodes() {
     if ( log.isDebugEnabled() ) {
       log.debug("Auto discovery service running...");
     }
-    Set<CassandraHost> foundHosts = discoverNodes();
-    if ( foundHosts != null && foundHosts.size() > 0 ) {
-      log.info("Found {} new host(s) in Ring", foundHosts.size());
-      for (CassandraHost cassandraHost : foundHosts) {
-        log.info("Addding found host {} to pool", cassandraHost);
+    Set<CassandraHost> ring = discoverNodes();
+    if ( ring == null || ring.equals(lastRing) ) {
+      log.debug("Auto discovery service found no ring change.");
+      return;
+    }
+    Set<CassandraHost> knownHosts = new HashSet<CassandraHost>(connectionManager.getHosts());
+    knownHosts.addAll(connectionManager.getSuspendedCassandraHosts());
+    knownHosts.addAll(connectionManager.getDownedHosts());
+    // the hosts we failed to add are left out, so that the next run tries again
+    Set<CassandraHost> seen = new HashSet<CassandraHost>(ring);
+    for (CassandraHost cassandraHost : ring) {
+      if ( !knownHosts.contains(cassandraHost) && (lastRing == null || !lastRing.contains(cassandraHost)) ) {
+        log.info("Adding host {} which joined the ring", cassandraHost);
         cassandraHostConfigurator.applyConfig(cassandraHost);
-        connectionManager.addCassandraHost(cassandraHost);
+        if ( !connectionManager.addCassandraHost(cassandraHost) 
+            && !connectionManager.getHosts().contains(cassandraHost)
+            && !connectionManager.retryLater(cassandraHost) ) {
+          seen.remove(cassandraHost);
+        }
       }
     }
+    if ( lastRing != null ) {
+      for (CassandraHost cassandraHost : lastRing) {
+        if ( !ring.contains(cassandraHost) ) {
+          log.info("Removing host {} which left the ring", cassandraHost);
+          connectionManager.removeCassandraHost(cassandraHost);
+        }
+      }
+    }
+    lastRing = seen;
     if ( log.isDebugEnabled() ) {
       log.debug("Auto discovery service run complete.");
     }
   }
 
+  /**
+   * @return the hosts of the ring, including the one queried, or null if it could 
+   *         not be read
+   */
   public Set<CassandraHost> discoverNodes() {
-    Set<CassandraHost> existingHosts = connectionManager.getHosts();
-    Set<CassandraHost> foundHosts = new HashSet<CassandraHost>();
-
+    Set<CassandraHost> ring = new HashSet<CassandraHost>();
     CassandraConnectionHandle conn  = null;
-    log.info("using existing hosts {}", existingHosts);
+    Statement statement = null;
     try {
       conn = connectionManager.borrowClient();
-      /*
-      for (KsDef keyspace : thriftClient.getCassandra().describe_keyspaces()) {
-        if (!keyspace.getName().equals(Keyspace.KEYSPACE_SYSTEM)) {
-          List<TokenRange> tokenRanges = thriftClient.getCassandra().describe_ring(keyspace.getName());
-          for (TokenRange tokenRange : tokenRanges) {
-            for (String host : tokenRange.getEndpoints()) {
-              CassandraHost foundHost = new CassandraHost(host,cassandraHostConfigurator.getPort());
-              if ( !existingHosts.contains(foundHost) ) {
-                log.info("Found a node we don't know about {} for TokenRange {}", foundHost, tokenRange);
-                foundHosts.add(foundHost);
-              }
-            }
+      ring.add(conn.getCassandraHost());
+      if ( peersSupported != Boolean.FALSE ) {
+        statement = conn.getInternalConnection().createStatement();
+        try {
+          readPeers(statement, ring);
+          peersSupported = Boolean.TRUE;
+        } catch (SQLException e) {
+          if ( peersSupported != null || !isMissingTable(e) ) {
+            throw e;
           }
-          break;
+          log.info("Unable to read system.peers from {}, reading the ring with describe_ring from now on: {}", 
+              conn.getCassandraHost(), e.getMessage());
+          peersSupported = Boolean.FALSE;
         }
       }
-      */
+      if ( peersSupported == Boolean.FALSE ) {
+        describeRing(conn.getCassandraHost(), ring);
+      }
     } catch (Exception e) {
-      log.error("Discovery Service failed attempt to connect", e);
+      log.error("Discovery Service failed attempt to read the ring", e);
+      return null;
     } finally {
+      try {
+        if ( statement != null ) {
+          statement.close();
+        }
+      } catch (SQLException e) {
+        log.debug("Discovery Service failed at closing a statement", e);
+      }
       try {
         connectionManager.releaseClient(conn);
       } catch (SQLException e) {
         log.error("Discovery Service failed at releasing a connection", e);
       }
     }
-    return foundHosts;
+    return ring;
   }
 
-}
+  /**
+   * @return true if the server rejected the query as invalid, which is how servers 
+   *         without system.peers answer it (unconfigured columnfamily peers)
+   */
+  static boolean isMissingTable(SQLException e) {
+    return e instanceof SQLSyntaxErrorException || e.getCause() instanceof InvalidRequestException;
+  }
 
+  private void readPeers(Statement statement, Set<CassandraHost> ring) throws SQLException {
+    ResultSet rs = statement.executeQuery(PEERS_QUERY);
+    while ( rs.next() ) {
+      String address = toAddress(rs.getObject("rpc_address"));
+      // nodes listening on all interfaces publish a wildcard rpc_address
+      if ( address == null || "0.0.0.0".equals(address) ) {
+        address = toAddress(rs.getObject("peer"));
+      }
+      if ( address != null ) {
+        ring.add(new CassandraHost(address, cassandraHostConfigurator.getPort()));
+      }
+    }
+  }
+
+  /**
+   * Read the ring over Thrift, for the servers without system.peers.
+   */
+  private void describeRing(CassandraHost cassandraHost, Set<CassandraHost> ring) throws TException, 
+      InvalidRequestException, AuthenticationException, AuthorizationException {
+    TTransport transport = new TSocket(cassandraHost.getHost(), cassandraHost.getPort(), 
+        cassandraHost.getCassandraThriftSocketTimeout());
+    if ( cassandraHost.getUseThriftFramedTransport() ) {
+      transport = new TFramedTransport(transport);
+    }
+    transport.open();
+    try {
+      Cassandra.Client client = new Cassandra.Client(new TBinaryProtocol(transport));
+      String user = cassandraHost.getUser();
+      if ( user != null && user.length() > 0 ) {
+        Map<String, String> credentials = new HashMap<String, String>();
+        credentials.put("username", user);
+        credentials.put("password", cassandraHost.getPassword());
+        client.login(new AuthenticationRequest(credentials));
+      }
+      String keyspace = cassandraHostConfigurator.getKeyspaceName();
+      if ( keyspace == null ) {
+        // the system keyspace is not replicated, any other one spans the ring
+        for (KsDef ksDef : client.describe_keyspaces()) {
+          if ( !Keyspace.KEYSPACE_SYSTEM.equals(ksDef.getName()) ) {
+            keyspace = ksDef.getName();
+            break;
+          }
+        }
+        if ( keyspace == null ) {
+          return;
+        }
+      }
+      for (TokenRange tokenRange : client.describe_ring(keyspace)) {
+        List<String> endpoints = tokenRange.getEndpoints();
+        List<String> rpcEndpoints = tokenRange.getRpc_endpoints();
+        for (int i = 0; i < endpoints.size(); i++) {
+          String address = rpcEndpoints != null && i < rpcEndpoints.size() ? rpcEndpoints.get(i) : null;
+          if ( address == null || "0.0.0.0".equals(address) ) {
+            address = endpoints.get(i);
+          }
+          ring.add(new CassandraHost(address, cassandraHostConfigurator.getPort()));
+        }
+      }
+    } finally {
+      transport.close();
+    }
+  }
+
+  static String toAddress(Object inet) {
+    if ( inet instanceof InetAddress ) {
+      return ((InetAddress) inet).getHostAddress();
+    }
+    if ( inet == null ) {
+      return null;
+    }
+    String address = inet.toString();
+    // InetAddress.toString() is "hostname/address"
+    int slash = address.indexOf('/');
+    return slash < 0 ? address : address.substring(slash + 1);
+  }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+/**
+ * Receives pool and failover activity, see {@link PoolEvents}. Only the event types 
+ * enabled through {@link PoolEvents#setListener(PoolEventListener, java.util.Set)} are 
+ * reported. Called on the threads doing the work, so it must be fast and must not throw.
+ */
+public interface PoolEventListener {
+
+  void borrowed(CassandraHost host, long waitNanos);
+
+  void created(CassandraHost host, long durationNanos);
+
+  void closed(CassandraHost host);
+
+  /**
+   * @param to null if no other host could be found
+   */
+  void failedOver(CassandraHost from, CassandraHost to, Class<?> exceptionClass);
+
+  /**
+   * @param type {@link PoolEventType#SUSPEND}, {@link PoolEventType#UNSUSPEND} or 
+   *        {@link PoolEventType#MARK_DOWN}
+   */
+  void hostStateChanged(CassandraHost host, PoolEventType type);
+
+  void scoreUpdated(CassandraHost host, double score);
+}
@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+/**
+ * The kinds of pool and failover activity reported to a {@link PoolEventListener}.
+ */
+public enum PoolEventType {
+  /** A connection was handed to a borrower */
+  BORROW,
+  /** A connection was opened */
+  CREATE,
+  /** A connection was closed by the pool */
+  CLOSE,
+  /** An operation moved on to another host after an error */
+  FAILOVER,
+  /** A host was taken out of selection by the client */
+  SUSPEND,
+  /** A suspended host was put back into selection */
+  UNSUSPEND,
+  /** A host was found down and its pool shut down */
+  MARK_DOWN,
+  /** The {@link DynamicLoadBalancingPolicy} scored a host */
+  SCORE;
+
+  final int mask = 1 << ordinal();
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.Set;
+
+/**
+ * Where the pools, the connection manager and the load balancing policies report their 
+ * activity, for profilers such as Java Flight Recorder to pick up. There is one listener 
+ * for the whole JVM, like there is one flight recorder. Reporting an event type which 
+ * is not enabled costs a volatile read.
+ */
+public final class PoolEvents {
+
+  private static final Registration NONE = new Registration(null, 0);
+
+  private static volatile Registration registration = NONE;
+
+  private PoolEvents() {
+  }
+
+  /**
+   * Report the given event types to the listener from now on, replacing the previous 
+   * listener. The set can be changed again while the listener stays in place, e.g. 
+   * when a recording starts.
+   */
+  public static synchronized void setListener(PoolEventListener listener, Set<PoolEventType> types) {
+    registration = new Registration(listener, mask(types));
+  }
+
+  /**
+   * Change the event types reported to the listener, if it is still the current one.
+   */
+  public static synchronized void setEnabled(PoolEventListener listener, Set<PoolEventType> types) {
+    if ( listener != null && registration.listener == listener ) {
+      registration = new Registration(listener, mask(types));
+    }
+  }
+
+  public static synchronized void removeListener(PoolEventListener listener) {
+    if ( registration.listener == listener ) {
+      registration = NONE;
+    }
+  }
+
+  public static boolean isEnabled(PoolEventType type) {
+    return (registration.enabled & type.mask) != 0;
+  }
+
+  private static int mask(Set<PoolEventType> types) {
+    int mask = 0;
+    for (PoolEventType type : types) {
+      mask |= type.mask;
+    }
+    return mask;
+  }
+
+  static void borrowed(CassandraHost host, long waitNanos) {
+    Registration current = registration;
+    if ( (current.enabled & PoolEventType.BORROW.mask) != 0 ) {
+      current.listener.borrowed(host, waitNanos);
+    }
+  }
+
+  static void created(CassandraHost host, long durationNanos) {
+    Registration current = registration;
+    if ( (current.enabled & PoolEventType.CREATE.mask) != 0 ) {
+      current.listener.created(host, durationNanos);
+    }
+  }
+
+  static void closed(CassandraHost host) {
+    Registration current = registration;
+    if ( (current.enabled & PoolEventType.CLOSE.mask) != 0 ) {
+      current.listener.closed(host);
+    }
+  }
+
+  static void failedOver(CassandraHost from, CassandraHost to, Class<?> exceptionClass) {
+    Registration current = registration;
+    if ( (current.enabled & PoolEventType.FAILOVER.mask) != 0 ) {
+      current.listener.failedOver(from, to, exceptionClass);
+    }
+  }
+
+  static void hostStateChanged(CassandraHost host, PoolEventType type) {
+    Registration current = registration;
+    if ( (current.enabled & type.mask) != 0 ) {
+      current.listener.hostStateChanged(host, type);
+    }
+  }
+
+  static void scoreUpdated(CassandraHost host, double score) {
+    Registration current = registration;
+    if ( (current.enabled & PoolEventType.SCORE.mask) != 0 ) {
+      current.listener.scoreUpdated(host, score);
+    }
+  }
+
+  /** The listener and the types reported to it, read together */
+  private static final class Registration {
+    final PoolEventListener listener;
+    final int enabled;
+
+    Registration(PoolEventListener listener, int enabled) {
+      this.listener = listener;
+      this.enabled = listener == null ? 0 : enabled;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically looks after the connections of every host pool. Idle connections which 
+ * outlived their maxConnectionLifetimeMillis are retired, busy ones being retired by 
+ * their pool when released. Connections borrowed for longer than the leak detection 
+ * threshold are reported, and reclaimed if so configured.
+ */
+public class PoolMaintenanceService extends BackgroundCassandraHostService {
+
+  private static final Logger log = LoggerFactory.getLogger(PoolMaintenanceService.class);
+
+  public static final int DEF_MAINTENANCE_INTERVAL_IN_SECONDS = 30;
+
+  public PoolMaintenanceService(HConnectionManager connectionManager,
+      CassandraHostConfigurator cassandraHostConfigurator) {
+    super(connectionManager, cassandraHostConfigurator);
+    retryDelayInSeconds = cassandraHostConfigurator.getPoolMaintenanceIntervalInSeconds();
+    sf = executor.scheduleWithFixedDelay(new Maintenance(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  void shutdown() {
+    log.info("Shutting down PoolMaintenanceService");
+    if ( sf != null ) {
+      sf.cancel(true);
+    }
+    log.info("PoolMaintenanceService shutdown complete");
+  }
+
+  @Override
+  public synchronized void applyRetryDelay() {
+    sf.cancel(false);
+    sf = executor.scheduleWithFixedDelay(new Maintenance(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  class Maintenance implements Runnable {
+    @Override
+    public void run() {
+      for (HClientPool pool : connectionManager.getActivePools()) {
+        try {
+          int retired = pool.retireExpiredConnections();
+          if ( retired > 0 ) {
+            log.info("Retired {} expired connections of {}", retired, pool.getName());
+          }
+          pool.checkLeaks();
+        } catch (RuntimeException e) {
+          log.error("Maintenance failed on " + pool.getName(), e);
+        }
+      }
+    }
+  }
+}
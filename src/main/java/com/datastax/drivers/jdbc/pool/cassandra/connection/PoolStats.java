@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.drivers.jdbc.pool.cassandra.utils.LatencyHistogram;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.RollingLatencyHistogram;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.StripedCounter;
+
+/**
+ * How long borrowers of a pool wait and how long it takes to open a connection. Wait 
+ * times cover the whole borrow: polling, validating, opening and blocking. Histograms 
+ * describe the last complete statsIntervalInSeconds, counts are since the pool started. 
+ * Recording allocates nothing.
+ */
+public class PoolStats {
+
+  private final RollingLatencyHistogram borrowWait;
+  /** wait of the borrows which found the pool exhausted */
+  private final RollingLatencyHistogram exhaustedWait;
+  private final RollingLatencyHistogram connectTime;
+  private final StripedCounter exhaustedCount = new StripedCounter();
+  private final StripedCounter timeoutCount = new StripedCounter();
+  private final StripedCounter createdCount = new StripedCounter();
+  private final StripedCounter closedCount = new StripedCounter();
+
+  public PoolStats(int statsIntervalInSeconds) {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(1, statsIntervalInSeconds));
+    borrowWait = new RollingLatencyHistogram(intervalNanos);
+    exhaustedWait = new RollingLatencyHistogram(intervalNanos);
+    connectTime = new RollingLatencyHistogram(intervalNanos);
+  }
+
+  /**
+   * @param exhausted whether the pool was exhausted, whatever the {@link ExhaustedPolicy} then did
+   */
+  void recordBorrow(long waitNanos, boolean exhausted) {
+    long now = System.nanoTime();
+    borrowWait.recordNanos(waitNanos, now);
+    if ( exhausted ) {
+      exhaustedCount.increment();
+      exhaustedWait.recordNanos(waitNanos, now);
+    }
+  }
+
+  void recordTimeout() {
+    timeoutCount.increment();
+  }
+
+  void recordConnect(long connectNanos) {
+    connectTime.recordNanos(connectNanos, System.nanoTime());
+  }
+
+  void recordCreated() {
+    createdCount.increment();
+  }
+
+  void recordClosed() {
+    closedCount.increment();
+  }
+
+  /**
+   * @return the borrow wait times of the last complete interval
+   */
+  public LatencyHistogram getBorrowWait() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    mergeBorrowWait(histogram);
+    return histogram;
+  }
+
+  void mergeBorrowWait(LatencyHistogram histogram) {
+    borrowWait.mergeInto(histogram, System.nanoTime());
+  }
+
+  RollingLatencyHistogram getBorrowWaitHistogram() {
+    return borrowWait;
+  }
+
+  /**
+   * @return the times taken to open connections during the last complete interval
+   */
+  public LatencyHistogram getConnectTime() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    mergeConnectTime(histogram);
+    return histogram;
+  }
+
+  void mergeConnectTime(LatencyHistogram histogram) {
+    connectTime.mergeInto(histogram, System.nanoTime());
+  }
+
+  RollingLatencyHistogram getConnectTimeHistogram() {
+    return connectTime;
+  }
+
+  /**
+   * @return how many borrows found the pool exhausted
+   */
+  public long getExhaustedCount() {
+    return exhaustedCount.sum();
+  }
+
+  /**
+   * @return how many borrows gave up after maxWaitTimeWhenExhausted
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  /**
+   * @return how many connections the pool opened
+   */
+  public long getCreatedCount() {
+    return createdCount.sum();
+  }
+
+  /**
+   * @return how many connections the pool closed, whether retired, broken or shut down
+   */
+  public long getClosedCount() {
+    return closedCount.sum();
+  }
+
+  /**
+   * @return the share of the borrows of the last complete interval which found the pool 
+   *         exhausted, between 0 and 1
+   */
+  public double getSaturation() {
+    long now = System.nanoTime();
+    long borrows = borrowWait.getCount(now);
+    return borrows == 0 ? 0 : Math.min(1, (double) exhaustedWait.getCount(now) / borrows);
+  }
+
+  /**
+   * @return "wait p50=[ms] p99=[ms] connect p50=[ms] p99=[ms] exhausted=[count] 
+   *         timeouts=[count] saturation=[ratio]"
+   */
+  @Override
+  public String toString() {
+    LatencyHistogram wait = getBorrowWait();
+    LatencyHistogram connect = getConnectTime();
+    return String.format("wait p50=%.3f p99=%.3f connect p50=%.3f p99=%.3f exhausted=%d timeouts=%d saturation=%.3f",
+        millis(wait.getPercentileNanos(50)), millis(wait.getPercentileNanos(99)),
+        millis(connect.getPercentileNanos(50)), millis(connect.getPercentileNanos(99)),
+        getExhaustedCount(), getTimeoutCount(), getSaturation());
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0;
+  }
+}
@@ -0,0 +1,274 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraClientMonitor.Counter;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.LatencyHistogram;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.PrometheusTextWriter;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.RollingLatencyHistogram;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the counters of the client monitor, the gauges and statistics of every host pool 
+ * and, when the host op timer is a {@link HistogramOpTimer}, the latencies of operations, 
+ * in the Prometheus text format at http://[metricsBindAddress]:[metricsPort]/metrics.
+ * <p>
+ * Scrapes are served one at a time by a single daemon thread and written out as the 
+ * figures are read, so that a scrape allocates the same whatever the number of hosts. 
+ * Latencies and borrow statistics cover the last complete interval, as they do through JMX. 
+ * They are exposed as summaries, whose count and sum cover every latency recorded so far.
+ */
+public class PrometheusExporter implements HttpHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(PrometheusExporter.class);
+
+  public static final String DEF_BIND_ADDRESS = "127.0.0.1";
+  public static final String PATH = "/metrics";
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int NANOS_SCALE = 9;
+  private static final int RATIO_SCALE = 6;
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final String[] QUANTILES = { "0.5", "0.9", "0.99", "0.999" };
+  private static final Counter[] COUNTERS = Counter.values();
+  private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+  private final HConnectionManager connectionManager;
+  private final CassandraClientMonitor monitor;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  // reused by every scrape, they are served one at a time
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  public PrometheusExporter(HConnectionManager connectionManager, CassandraClientMonitor monitor,
+      String bindAddress, int port) throws IOException {
+    this.connectionManager = connectionManager;
+    this.monitor = monitor;
+    server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+    server.createContext(PATH, this);
+    executor = Executors.newSingleThreadExecutor(new DaemonThreadPoolFactory(getClass()));
+    server.setExecutor(executor);
+    server.start();
+    log.info("Serving the metrics of {} at http://{}:{}" + PATH, 
+        new Object[] { connectionManager.getClusterName(), bindAddress, getPort() });
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  void shutdown() {
+    log.info("Shutting down PrometheusExporter");
+    server.stop(0);
+    executor.shutdownNow();
+    log.info("PrometheusExporter shutdown complete");
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      if ( !"GET".equals(method) && !"HEAD".equals(method) ) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", PrometheusTextWriter.CONTENT_TYPE);
+      if ( "HEAD".equals(method) ) {
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      // chunked, the length is not known before writing
+      exchange.sendResponseHeaders(200, 0);
+      Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"), BUFFER_SIZE);
+      try {
+        write(new PrometheusTextWriter(out));
+      } catch (RuntimeException e) {
+        log.error("Unable to write the metrics of " + connectionManager.getClusterName(), e);
+      }
+      out.flush();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  void write(PrometheusTextWriter out) throws IOException {
+    String cluster = connectionManager.getClusterName();
+    Collection<HClientPool> pools = connectionManager.getActivePools();
+
+    out.family("cassandra_jdbc_events_total", "counter", "Events counted by the client monitor for the whole cluster");
+    for (Counter counter : COUNTERS) {
+      out.sample("cassandra_jdbc_events_total").label("cluster", cluster).label("event", counter.name())
+          .value(monitor.getCounters().get(counter));
+    }
+    out.family("cassandra_jdbc_host_events_total", "counter", "Events counted by the client monitor per host");
+    for (HClientPool pool : pools) {
+      ClientCounters counters = pool.getCassandraHost().getCounters();
+      for (Counter counter : COUNTERS) {
+        host(out, "cassandra_jdbc_host_events_total", cluster, pool).label("event", counter.name())
+            .value(counters.get(counter));
+      }
+    }
+
+    out.family("cassandra_jdbc_pools", "gauge", "Known hosts, there is up to one pool per host");
+    out.sample("cassandra_jdbc_pools").label("cluster", cluster).value(monitor.getNumPools());
+    out.family("cassandra_jdbc_downed_hosts", "gauge", "Hosts marked as down and retried in the background");
+    out.sample("cassandra_jdbc_downed_hosts").label("cluster", cluster).value(connectionManager.getDownedHosts().size());
+    out.family("cassandra_jdbc_suspended_hosts", "gauge", "Hosts suspended from use");
+    out.sample("cassandra_jdbc_suspended_hosts").label("cluster", cluster)
+        .value(connectionManager.getSuspendedCassandraHosts().size());
+
+    out.family("cassandra_jdbc_pool_active", "gauge", "Borrowed connections");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_active", cluster, pool).value(pool.getNumActive());
+    }
+    out.family("cassandra_jdbc_pool_idle", "gauge", "Open connections waiting to be borrowed");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_idle", cluster, pool).value(pool.getNumIdle());
+    }
+    out.family("cassandra_jdbc_pool_blocked_threads", "gauge", "Threads waiting for a connection");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_blocked_threads", cluster, pool).value(pool.getNumBlockedThreads());
+    }
+    out.family("cassandra_jdbc_pool_max_active", "gauge", "Connections the pool may open");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_max_active", cluster, pool).value(pool.getMaxActive());
+    }
+    out.family("cassandra_jdbc_pool_borrows_total", "counter", "Connections asked for");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_borrows_total", cluster, pool).value(pool.getBorrowCount());
+    }
+    out.family("cassandra_jdbc_pool_releases_total", "counter", "Borrowed connections released");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_releases_total", cluster, pool).value(pool.getReleaseCount());
+    }
+    out.family("cassandra_jdbc_pool_busy_seconds_total", "counter", "Time the released connections had been borrowed for");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_busy_seconds_total", cluster, pool).value(pool.getBusyTimeNanos(), NANOS_SCALE);
+    }
+    out.family("cassandra_jdbc_pool_exhausted_total", "counter", "Borrows which found the pool exhausted");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_exhausted_total", cluster, pool).value(pool.getStats().getExhaustedCount());
+    }
+    out.family("cassandra_jdbc_pool_borrow_timeouts_total", "counter", "Borrows which gave up after maxWaitTimeWhenExhausted");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_borrow_timeouts_total", cluster, pool).value(pool.getStats().getTimeoutCount());
+    }
+    out.family("cassandra_jdbc_pool_saturation", "gauge", "Share of the borrows which found the pool exhausted");
+    for (HClientPool pool : pools) {
+      host(out, "cassandra_jdbc_pool_saturation", cluster, pool)
+          .value(Math.round(pool.getStats().getSaturation() * 1000000), RATIO_SCALE);
+    }
+    out.family("cassandra_jdbc_pool_borrow_wait_seconds", "summary", "Time borrowers waited for a connection");
+    for (HClientPool pool : pools) {
+      histogram.reset();
+      pool.getStats().mergeBorrowWait(histogram);
+      quantiles(out, "cassandra_jdbc_pool_borrow_wait_seconds", cluster, pool, pool.getStats().getBorrowWaitHistogram());
+    }
+    out.family("cassandra_jdbc_pool_connect_seconds", "summary", "Time taken to open a connection");
+    for (HClientPool pool : pools) {
+      histogram.reset();
+      pool.getStats().mergeConnectTime(histogram);
+      quantiles(out, "cassandra_jdbc_pool_connect_seconds", cluster, pool, pool.getStats().getConnectTimeHistogram());
+    }
+
+    HostOpTimer timer = connectionManager.getHostOpTimer();
+    if ( timer instanceof HistogramOpTimer ) {
+      writeLatencies(out, cluster, (HistogramOpTimer) timer);
+    }
+    out.flush();
+  }
+
+  private void writeLatencies(PrometheusTextWriter out, String cluster, HistogramOpTimer timer) throws IOException {
+    out.family("cassandra_jdbc_operation_latency_seconds", "summary", "Latency of the successful operations");
+    for (Map.Entry<CassandraHost, RollingLatencyHistogram[]> entry : timer.getHistograms().entrySet()) {
+      latencies(out, cluster, entry.getKey().getUrl(), entry.getValue(), false);
+    }
+    latencies(out, cluster, HistogramOpTimer.UNKNOWN_HOST, timer.getUnknownHostHistograms(), false);
+    out.family("cassandra_jdbc_operation_rate", "gauge", "Successful operations per second");
+    for (Map.Entry<CassandraHost, RollingLatencyHistogram[]> entry : timer.getHistograms().entrySet()) {
+      latencies(out, cluster, entry.getKey().getUrl(), entry.getValue(), true);
+    }
+    latencies(out, cluster, HistogramOpTimer.UNKNOWN_HOST, timer.getUnknownHostHistograms(), true);
+  }
+
+  private void latencies(PrometheusTextWriter out, String cluster, String host, 
+      RollingLatencyHistogram[] histograms, boolean rate) throws IOException {
+    long now = System.nanoTime();
+    for (OperationType operationType : OPERATION_TYPES) {
+      RollingLatencyHistogram rolling = histograms[operationType.ordinal()];
+      histogram.reset();
+      double throughput = rolling.mergeInto(histogram, now);
+      if ( rate ) {
+        if ( histogram.getCount() > 0 ) {
+          out.sample("cassandra_jdbc_operation_rate").label("cluster", cluster).label("host", host)
+              .label("operation", operationType.name()).value(Math.round(throughput * 1000), 3);
+        }
+        continue;
+      }
+      if ( rolling.getTotalCount() == 0 ) {
+        continue;
+      }
+      // the counters carry on through idle intervals, the quantiles do not
+      if ( histogram.getCount() > 0 ) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+          out.sample("cassandra_jdbc_operation_latency_seconds").label("cluster", cluster).label("host", host)
+              .label("operation", operationType.name()).label("quantile", QUANTILES[i])
+              .value(histogram.getPercentileNanos(PERCENTILES[i]), NANOS_SCALE);
+        }
+      }
+      out.sample("cassandra_jdbc_operation_latency_seconds", "_count").label("cluster", cluster).label("host", host)
+          .label("operation", operationType.name()).value(rolling.getTotalCount());
+      out.sample("cassandra_jdbc_operation_latency_seconds", "_sum").label("cluster", cluster).label("host", host)
+          .label("operation", operationType.name()).value(rolling.getTotalNanos(), NANOS_SCALE);
+    }
+  }
+
+  private void quantiles(PrometheusTextWriter out, String name, String cluster, HClientPool pool, 
+      RollingLatencyHistogram rolling) throws IOException {
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      host(out, name, cluster, pool).label("quantile", QUANTILES[i])
+          .value(histogram.getPercentileNanos(PERCENTILES[i]), NANOS_SCALE);
+    }
+    out.sample(name, "_count").label("cluster", cluster).label("host", pool.getCassandraHost().getUrl())
+        .value(rolling.getTotalCount());
+    out.sample(name, "_sum").label("cluster", cluster).label("host", pool.getCassandraHost().getUrl())
+        .value(rolling.getTotalNanos(), NANOS_SCALE);
+  }
+
+  private static PrometheusTextWriter host(PrometheusTextWriter out, String name, String cluster, 
+      HClientPool pool) throws IOException {
+    return out.sample(name).label("cluster", cluster).label("host", pool.getCassandraHost().getUrl());
+  }
+}
@@ -20,6 +20,7 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Iterables;
 
@@ -35,10 +36,10 @@ import com.google.common.collect.Iterables;
 public class RoundRobinBalancingPolicy implements LoadBalancingPolicy {
 
   private static final long serialVersionUID = 1107204068032227079L;
-  private int counter;
+  private final AtomicInteger counter;
   
   public RoundRobinBalancingPolicy() {
-    counter = 0;
+    counter = new AtomicInteger();
   }
   
   @Override
@@ -64,18 +65,9 @@ public class RoundRobinBalancingPolicy implements LoadBalancingPolicy {
   }
     
   private int getAndIncrement(int size) {
-    int counterToReturn;
-    
-    // There should not be that much of contention here as
-    // the "if" statement plus the increment is executed real fast.
-    synchronized (this) {
-      if (counter >= 16384) {
-        counter = 0;
-      }
-      counterToReturn = counter++;
-    }
-
-    return counterToReturn % size;
+    // Lock free so that thousands of borrowers never queue up on a monitor here.
+    // Masking keeps the index positive once the counter wraps around.
+    return (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
   }
 
   @Override
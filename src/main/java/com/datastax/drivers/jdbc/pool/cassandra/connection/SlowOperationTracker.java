@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+
+/**
+ * Keeps the statements which took longer than slowOperationThresholdMillis, per host. 
+ * Statements are normalized, their literals being replaced by '?', so that executions 
+ * of the same statement with different values add up. Only the slowOperationTopN 
+ * statements with the highest total time are kept for each host, following the 
+ * space-saving algorithm: once full, a new statement replaces the one with the lowest 
+ * total and inherits its count and total, so that a statement recurring often enough 
+ * stays in the table. The first execution of a statement is logged on its own while 
+ * the table fills up, and the table is logged periodically whenever it changed.
+ * <p>
+ * Operations faster than the threshold only cost a comparison.
+ */
+public class SlowOperationTracker extends BackgroundCassandraHostService {
+
+  private static final Logger log = LoggerFactory.getLogger(SlowOperationTracker.class);
+
+  public static final int DEF_TOP_N = 20;
+  public static final int DEF_LOG_INTERVAL_IN_SECONDS = 300;
+
+  /** Longer statements are truncated, they are only meant to be recognized */
+  static final int MAX_STATEMENT_LENGTH = 512;
+
+  private static final Pattern VALUE_LIST = Pattern.compile("\\?(, \\?)+");
+
+  private final long thresholdNanos;
+  private final int topN;
+  private final ConcurrentMap<CassandraHost, Statements> statementsPerHost = 
+      new ConcurrentHashMap<CassandraHost, Statements>();
+  private final AtomicLong recorded = new AtomicLong();
+  private long logged;
+
+  public SlowOperationTracker(HConnectionManager connectionManager,
+      CassandraHostConfigurator cassandraHostConfigurator) {
+    super(connectionManager, cassandraHostConfigurator);
+    thresholdNanos = TimeUnit.MILLISECONDS.toNanos(cassandraHostConfigurator.getSlowOperationThresholdMillis());
+    topN = Math.max(1, cassandraHostConfigurator.getSlowOperationTopN());
+    retryDelayInSeconds = cassandraHostConfigurator.getSlowOperationLogIntervalInSeconds();
+    sf = executor.scheduleWithFixedDelay(new Dump(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  void shutdown() {
+    log.info("Shutting down SlowOperationTracker");
+    if ( sf != null ) {
+      sf.cancel(true);
+    }
+    log.info("SlowOperationTracker shutdown complete");
+  }
+
+  @Override
+  public synchronized void applyRetryDelay() {
+    sf.cancel(false);
+    sf = executor.scheduleWithFixedDelay(new Dump(), retryDelayInSeconds, retryDelayInSeconds, TimeUnit.SECONDS);
+  }
+
+  public boolean isSlow(long execTimeNanos) {
+    return execTimeNanos >= thresholdNanos;
+  }
+
+  /**
+   * Accounts for an operation which {@link #isSlow(long) was slow}.
+   */
+  public void record(Operation<?> op) {
+    CassandraHost host = op.getCassandraHost();
+    if ( host == null || op.query == null ) {
+      return;
+    }
+    Statements statements = statementsPerHost.get(host);
+    if ( statements == null ) {
+      statements = new Statements(topN);
+      Statements existing = statementsPerHost.putIfAbsent(host, statements);
+      if ( existing != null ) {
+        statements = existing;
+      }
+    }
+    String statement = normalize(op.query);
+    if ( statements.add(statement, op.getExecutionTimeNano()) ) {
+      log.info("Slow operation: {}", op.getExecutionResult().describe(statement));
+    }
+    recorded.incrementAndGet();
+  }
+
+  /**
+   * @return the statements kept for every host, slowest in total first, in the format 
+   *         of "[hostname]:[port] count=[count] total=[ms]ms max=[ms]ms error=[ms]ms [statement]"
+   */
+  public List<String> getSlowOperations() {
+    List<String> operations = new ArrayList<String>();
+    for (Map.Entry<CassandraHost, Statements> entry : statementsPerHost.entrySet()) {
+      for (StatementStats stats : entry.getValue().getTop()) {
+        operations.add(entry.getKey().getUrl() + " " + stats);
+      }
+    }
+    return operations;
+  }
+
+  public void reset() {
+    statementsPerHost.clear();
+  }
+
+  /**
+   * Replaces the string, numeric, uuid and blob literals of the given statement by '?' 
+   * and collapses its whitespace. Lists of values are collapsed into a single '?', so 
+   * that IN clauses of different lengths add up. 
+   */
+  static String normalize(String cql) {
+    StringBuilder sb = new StringBuilder(Math.min(cql.length(), MAX_STATEMENT_LENGTH) + 3);
+    int length = cql.length();
+    boolean space = false;
+    int i = 0;
+    while ( i < length && sb.length() < MAX_STATEMENT_LENGTH ) {
+      char c = cql.charAt(i);
+      if ( Character.isWhitespace(c) ) {
+        space = sb.length() > 0;
+        i++;
+        continue;
+      }
+      if ( space ) {
+        sb.append(' ');
+        space = false;
+      }
+      if ( c == '\'' ) {
+        i = skipQuoted(cql, i, '\'');
+        sb.append('?');
+      } else if ( c == '$' && i + 1 < length && cql.charAt(i + 1) == '$' ) {
+        int end = cql.indexOf("$$", i + 2);
+        i = end < 0 ? length : end + 2;
+        sb.append('?');
+      } else if ( c == '"' ) {
+        int end = skipQuoted(cql, i, '"');
+        sb.append(cql, i, end);
+        i = end;
+      } else if ( Character.isDigit(c) || isUuid(cql, i) || (c == '-' && isNegative(cql, i, sb)) ) {
+        i = skipLiteral(cql, i + 1);
+        sb.append('?');
+      } else if ( Character.isLetter(c) || c == '_' ) {
+        int end = i + 1;
+        while ( end < length && isIdentifierPart(cql.charAt(end)) ) {
+          end++;
+        }
+        sb.append(cql, i, end);
+        i = end;
+      } else {
+        sb.append(c);
+        i++;
+      }
+    }
+    String statement = VALUE_LIST.matcher(sb).replaceAll("?");
+    if ( i < length || statement.length() > MAX_STATEMENT_LENGTH ) {
+      statement = statement.substring(0, Math.min(statement.length(), MAX_STATEMENT_LENGTH)) + "...";
+    }
+    return statement;
+  }
+
+  /**
+   * @return the index following the closing quote, doubled quotes being escaped ones
+   */
+  private static int skipQuoted(String cql, int start, char quote) {
+    int i = start + 1;
+    while ( i < cql.length() ) {
+      if ( cql.charAt(i) == quote ) {
+        if ( i + 1 < cql.length() && cql.charAt(i + 1) == quote ) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipLiteral(String cql, int i) {
+    while ( i < cql.length() ) {
+      char c = cql.charAt(i);
+      if ( Character.isLetterOrDigit(c) || c == '.' || c == '-' ) {
+        i++;
+      } else if ( c == '+' && (cql.charAt(i - 1) == 'e' || cql.charAt(i - 1) == 'E') ) {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * A minus sign is part of a number, rather than an operator, when it follows 
+   * another operator or a separator
+   */
+  private static boolean isNegative(String cql, int i, StringBuilder sb) {
+    if ( i + 1 >= cql.length() || !Character.isDigit(cql.charAt(i + 1)) ) {
+      return false;
+    }
+    int last = sb.length() - 1;
+    while ( last >= 0 && sb.charAt(last) == ' ' ) {
+      last--;
+    }
+    return last < 0 || "=<>(,[{:+-*/%".indexOf(sb.charAt(last)) >= 0;
+  }
+
+  /**
+   * Only uuids starting with a letter need be told apart from identifiers, those starting 
+   * with a digit are numeric literals as far as normalizing goes.
+   */
+  private static boolean isUuid(String cql, int i) {
+    if ( i + 36 > cql.length() || (i + 36 < cql.length() && isIdentifierPart(cql.charAt(i + 36))) ) {
+      return false;
+    }
+    for (int j = 0; j < 36; j++) {
+      char c = cql.charAt(i + j);
+      if ( j == 8 || j == 13 || j == 18 || j == 23 ) {
+        if ( c != '-' ) {
+          return false;
+        }
+      } else if ( Character.digit(c, 16) < 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  /**
+   * The slow statements of one host, replacing the statement with the lowest total 
+   * time once full. Only slow operations get there, so it is simply synchronized.
+   */
+  static class Statements {
+
+    private final int capacity;
+    private final Map<String, StatementStats> stats = new HashMap<String, StatementStats>();
+
+    Statements(int capacity) {
+      this.capacity = capacity;
+    }
+
+    /**
+     * @return true if the statement was not kept yet and took a free slot, false if it 
+     *         was kept already or replaced another one
+     */
+    synchronized boolean add(String statement, long nanos) {
+      StatementStats statementStats = stats.get(statement);
+      boolean added = false;
+      if ( statementStats == null ) {
+        statementStats = new StatementStats(statement);
+        if ( stats.size() >= capacity ) {
+          statementStats.inherit(evictSmallest());
+        } else {
+          added = true;
+        }
+        stats.put(statement, statementStats);
+      }
+      statementStats.add(nanos);
+      return added;
+    }
+
+    private StatementStats evictSmallest() {
+      Iterator<StatementStats> it = stats.values().iterator();
+      StatementStats smallest = it.next();
+      while ( it.hasNext() ) {
+        StatementStats next = it.next();
+        if ( next.totalNanos < smallest.totalNanos ) {
+          smallest = next;
+        }
+      }
+      return stats.remove(smallest.statement);
+    }
+
+    /**
+     * @return copies of the statements kept, slowest in total first
+     */
+    synchronized List<StatementStats> getTop() {
+      List<StatementStats> top = new ArrayList<StatementStats>(stats.size());
+      for (StatementStats statementStats : stats.values()) {
+        top.add(new StatementStats(statementStats));
+      }
+      Collections.sort(top, BY_TOTAL_DESC);
+      return top;
+    }
+  }
+
+  private static final Comparator<StatementStats> BY_TOTAL_DESC = new Comparator<StatementStats>() {
+    @Override
+    public int compare(StatementStats o1, StatementStats o2) {
+      return o1.totalNanos < o2.totalNanos ? 1 : (o1.totalNanos == o2.totalNanos ? 0 : -1);
+    }
+  };
+
+  static class StatementStats {
+
+    final String statement;
+    long count;
+    long totalNanos;
+    long maxNanos;
+    /** How much of totalNanos was inherited from the statement replaced */
+    long errorNanos;
+
+    StatementStats(String statement) {
+      this.statement = statement;
+    }
+
+    StatementStats(StatementStats other) {
+      this.statement = other.statement;
+      this.count = other.count;
+      this.totalNanos = other.totalNanos;
+      this.maxNanos = other.maxNanos;
+      this.errorNanos = other.errorNanos;
+    }
+
+    void inherit(StatementStats evicted) {
+      count = evicted.count;
+      totalNanos = evicted.totalNanos;
+      errorNanos = evicted.totalNanos;
+    }
+
+    void add(long nanos) {
+      count++;
+      totalNanos += nanos;
+      if ( nanos > maxNanos ) {
+        maxNanos = nanos;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count=%d total=%dms max=%dms error=%dms %s", count, 
+          TimeUnit.NANOSECONDS.toMillis(totalNanos), TimeUnit.NANOSECONDS.toMillis(maxNanos), 
+          TimeUnit.NANOSECONDS.toMillis(errorNanos), statement);
+    }
+  }
+
+  class Dump implements Runnable {
+    @Override
+    public void run() {
+      long current = recorded.get();
+      if ( current == logged ) {
+        return;
+      }
+      logged = current;
+      for (String operation : getSlowOperations()) {
+        log.info("Slow operations: {}", operation);
+      }
+    }
+  }
+}
@@ -17,6 +17,8 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
 import com.ecyrd.speed4j.StopWatch;
 import com.ecyrd.speed4j.StopWatchFactory;
 
@@ -42,4 +44,21 @@ public class SpeedForJOpTimer implements HOpTimer {
     ((StopWatch) token).stop(tagName.concat(success ? ".success_" : ".fail_"));
   }
 
+  /**
+   * Stops the operations with the tags of their {@link OperationType}, built once
+   * rather than on every stop. Speed4j logs the StopWatch itself, so one is still 
+   * allocated per operation.
+   */
+  static class Adapter extends HOpTimerAdapter {
+
+    Adapter(SpeedForJOpTimer timer) {
+      super(timer);
+    }
+
+    @Override
+    protected void stopTimer(Object timerToken, Operation<?> op, boolean success) {
+      ((StopWatch) timerToken).stop(op.operationType.getStopWatchTag(success));
+    }
+  }
+
 }
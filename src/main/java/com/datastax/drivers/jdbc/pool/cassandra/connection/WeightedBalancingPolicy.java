@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Smooth weighted round robin (as found in nginx) over the active {@link HClientPool}s.
+ * Each host is picked in proportion to its {@link CassandraHost#getWeight()}, and picks of
+ * the heavier hosts are interleaved with the lighter ones instead of coming in bursts.
+ * 
+ * The pools and their weights are captured in an immutable snapshot which is only rebuilt
+ * when the set of pools or one of the weights changes, so lowering the weight of a host at
+ * runtime drains it gradually. A host with a weight of 0 is only picked when no other host
+ * is available.
+ */
+public class WeightedBalancingPolicy implements LoadBalancingPolicy {
+
+  private static final long serialVersionUID = -4925306342851713406L;
+
+  private transient volatile Snapshot snapshot;
+
+  @Override
+  public HClientPool getPool(Collection<HClientPool> pools, Set<CassandraHost> excludeHosts) {
+    Snapshot current = snapshot;
+    if ( current == null || !current.matches(pools) ) {
+      current = new Snapshot(pools);
+      snapshot = current;
+    }
+    return current.next(excludeHosts);
+  }
+
+  @Override
+  public HClientPool createConnection(CassandraHost host) throws SQLException {
+    return new ConcurrentHClientPool(host);
+  }
+
+  private static final class Snapshot {
+    private final HClientPool[] pools;
+    private final CassandraHost[] hosts;
+    private final int[] weights;
+    // guarded by lock, rather than a monitor which would pin a virtual thread to its carrier while contended
+    private final int[] currentWeights;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    Snapshot(Collection<HClientPool> activePools) {
+      pools = activePools.toArray(new HClientPool[activePools.size()]);
+      hosts = new CassandraHost[pools.length];
+      weights = new int[pools.length];
+      currentWeights = new int[pools.length];
+      for (int i = 0; i < pools.length; i++) {
+        hosts[i] = pools[i].getCassandraHost();
+        weights[i] = hosts[i].getWeight();
+      }
+    }
+
+    boolean matches(Collection<HClientPool> activePools) {
+      int i = 0;
+      for (HClientPool pool : activePools) {
+        if ( i >= pools.length || pools[i] != pool || weights[i] != hosts[i].getWeight() ) {
+          return false;
+        }
+        i++;
+      }
+      return i == pools.length;
+    }
+
+    HClientPool next(Set<CassandraHost> excludeHosts) {
+      lock.lock();
+      try {
+        return pick(excludeHosts);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private HClientPool pick(Set<CassandraHost> excludeHosts) {
+      int best = -1;
+      int totalWeight = 0;
+      for (int i = 0; i < pools.length; i++) {
+        if ( weights[i] == 0 || isExcluded(i, excludeHosts) ) {
+          continue;
+        }
+        currentWeights[i] += weights[i];
+        totalWeight += weights[i];
+        if ( best < 0 || currentWeights[i] > currentWeights[best] ) {
+          best = i;
+        }
+      }
+      if ( best < 0 ) {
+        return fallback(excludeHosts);
+      }
+      currentWeights[best] -= totalWeight;
+      return pools[best];
+    }
+
+    /**
+     * Every host is either drained or excluded. Prefer a drained host over an excluded one.
+     */
+    private HClientPool fallback(Set<CassandraHost> excludeHosts) {
+      for (int i = 0; i < pools.length; i++) {
+        if ( !isExcluded(i, excludeHosts) ) {
+          return pools[i];
+        }
+      }
+      return pools[0];
+    }
+
+    private boolean isExcluded(int i, Set<CassandraHost> excludeHosts) {
+      return excludeHosts != null && excludeHosts.contains(hosts[i]);
+    }
+  }
+}
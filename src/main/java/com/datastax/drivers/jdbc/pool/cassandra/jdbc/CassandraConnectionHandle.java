@@ -34,6 +34,7 @@ import java.sql.Statement;
 import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,8 +57,16 @@ public class CassandraConnectionHandle implements Connection {
   private HConnectionManager manager;
   private CassandraHost cassandraHost;
   private long useageStartTime;
-
-  public boolean isClosed = false;
+  private long useageStartNanos;
+  private long expiresAtNanos = Long.MAX_VALUE;
+  private volatile long lastUsedOkNanos = System.nanoTime();
+  private volatile boolean possiblyBroken;
+  // where the connection was borrowed from, for leak detection
+  private volatile String borrowThread;
+  private volatile Throwable borrowStack;
+  private volatile boolean leakReported;
+  // set while a borrower holds the connection, so that it is released exactly once
+  private final AtomicBoolean checkedOut = new AtomicBoolean();
   
   public CassandraConnectionHandle(HConnectionManager manager, Connection conn, CassandraHost cassandraHost) {
     this.manager = manager;
@@ -79,21 +88,98 @@ public class CassandraConnectionHandle implements Connection {
   }
   
   protected SQLException markPossiblyBroken(SQLException e) {
-    releaseConnection();
+    // released on close(), the borrower still holds it
+    possiblyBroken = true;
     return e;
   }
 
-  private void releaseConnection() {
-    try {
-      if (!conn.isClosed())
-        manager.releaseClient(this);
-    } catch (SQLException e1) {
-      logger.warn("connection.isClosed() threw Ex. Ignoring it.");
-    }
+  private void releaseConnection() throws SQLException {
+    if (manager != null)
+      manager.releaseClient(this);
+  }
+
+  /**
+   * Called by the pool when handing the connection to a borrower.
+   * @return false if it was already checked out
+   */
+  public boolean checkOut() {
+    return checkedOut.compareAndSet(false, true);
+  }
+
+  /**
+   * Called by the pool when taking the connection back.
+   * @return false if it was already released, or reclaimed as leaked
+   */
+  public boolean checkIn() {
+    return checkedOut.compareAndSet(true, false);
+  }
+
+  public boolean isCheckedOut() {
+    return checkedOut.get();
   }
   
   public void startToUse() {
     useageStartTime = System.currentTimeMillis();
+    useageStartNanos = System.nanoTime();
+    possiblyBroken = false;
+  }
+
+  /**
+   * Record who borrowed the connection, for leak detection.
+   * @param borrowThread the name of the borrowing thread
+   * @param borrowStack where it was borrowed, or null if not captured
+   */
+  public void setBorrowSite(String borrowThread, Throwable borrowStack) {
+    this.borrowThread = borrowThread;
+    this.borrowStack = borrowStack;
+    leakReported = false;
+  }
+
+  public String getBorrowThread() {
+    return borrowThread;
+  }
+
+  public Throwable getBorrowStack() {
+    return borrowStack;
+  }
+
+  /**
+   * @return true the first time it is called since the connection was borrowed
+   */
+  public boolean markLeakReported() {
+    if ( leakReported ) {
+      return false;
+    }
+    leakReported = true;
+    return true;
+  }
+
+  /**
+   * @return whether an operation failed on the connection since it was handed out
+   */
+  public boolean isPossiblyBroken() {
+    return possiblyBroken;
+  }
+
+  /**
+   * Record that the connection was just known to work, by being used or validated.
+   */
+  public void markUsedOk() {
+    lastUsedOkNanos = System.nanoTime();
+  }
+
+  /**
+   * @return Time in nanoseconds since the connection was last known to work.
+   */
+  public long getSinceLastUsedOkNanos() {
+    return System.nanoTime() - lastUsedOkNanos;
+  }
+
+  /**
+   * @return Time in nanoseconds since it was handed out by its pool.
+   */
+  public long getInUseNanos() {
+    return System.nanoTime() - useageStartNanos;
   }
 
   /**
@@ -103,6 +189,22 @@ public class CassandraConnectionHandle implements Connection {
     return System.currentTimeMillis() - useageStartTime;
   }
   
+  /**
+   * Set by the pool when the connection is opened.
+   * @param expiresAtNanos the {@link System#nanoTime()} past which the connection gets retired
+   */
+  public void setExpiresAt(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  /**
+   * @return whether the connection outlived its maxConnectionLifetimeMillis
+   */
+  public boolean isExpired(long nowNanos) {
+    // nanoTime may be negative, comparing it against the sentinel would overflow
+    return expiresAtNanos != Long.MAX_VALUE && nowNanos - expiresAtNanos > 0;
+  }
+
   /**
    * Checks if the connection is (logically) closed and throws an exception if it is.
    * 
@@ -121,7 +121,7 @@ public class CassandraPreparedStatementHandle extends CassandraStatementHandle i
   public boolean execute() throws SQLException {
     final AtomicReference<PreparedStatement> stmRef = new AtomicReference<PreparedStatement>(this.internalPreparedStatement);
     
-    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this) {
+    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this, sql) {
 
       @Override
       public Boolean execute(CassandraConnectionHandle connection) throws SQLException {
@@ -146,7 +146,7 @@ public class CassandraPreparedStatementHandle extends CassandraStatementHandle i
   @Override
   public ResultSet executeQuery() throws SQLException {
     final AtomicReference<PreparedStatement> stmRef = new AtomicReference<PreparedStatement>(this.internalPreparedStatement);
-    Operation<ResultSet> op = new Operation<ResultSet>(OperationType.CQL, this) {
+    Operation<ResultSet> op = new Operation<ResultSet>(OperationType.CQL, this, sql) {
 
       @Override
       public ResultSet execute(CassandraConnectionHandle connection) throws SQLException {
@@ -170,7 +170,7 @@ public class CassandraPreparedStatementHandle extends CassandraStatementHandle i
    */
   public int executeUpdate() throws SQLException {
     final AtomicReference<PreparedStatement> stmRef = new AtomicReference<PreparedStatement>(this.internalPreparedStatement);
-    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this) {
+    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this, sql) {
 
       @Override
       public Integer execute(CassandraConnectionHandle connection) throws SQLException {
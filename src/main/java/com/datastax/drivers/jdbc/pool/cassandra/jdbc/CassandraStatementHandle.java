@@ -68,7 +68,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public boolean execute(final String sql) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this) {
+    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this, sql) {
 
       @Override
       public Boolean execute(CassandraConnectionHandle connection) throws SQLException {
@@ -89,7 +89,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this) {
+    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this, sql) {
 
       @Override
       public Boolean execute(CassandraConnectionHandle connection) throws SQLException {
@@ -110,7 +110,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this) {
+    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this, sql) {
 
       @Override
       public Boolean execute(CassandraConnectionHandle connection) throws SQLException {
@@ -131,7 +131,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public boolean execute(final String sql, final String[] columnNames) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this) {
+    Operation<Boolean> op = new Operation<Boolean>(OperationType.CQL, this, sql) {
 
       @Override
       public Boolean execute(CassandraConnectionHandle connection) throws SQLException {
@@ -157,7 +157,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public ResultSet executeQuery(final String sql) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<ResultSet> op = new Operation<ResultSet>(OperationType.CQL, this) {
+    Operation<ResultSet> op = new Operation<ResultSet>(OperationType.CQL, this, sql) {
 
       @Override
       public ResultSet execute(CassandraConnectionHandle connection) throws SQLException {
@@ -178,7 +178,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public int executeUpdate(final String sql) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this) {
+    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this, sql) {
 
       @Override
       public Integer execute(CassandraConnectionHandle connection) throws SQLException {
@@ -199,7 +199,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this) {
+    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this, sql) {
 
       @Override
       public Integer execute(CassandraConnectionHandle connection) throws SQLException {
@@ -220,7 +220,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this) {
+    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this, sql) {
 
       @Override
       public Integer execute(CassandraConnectionHandle connection) throws SQLException {
@@ -242,7 +242,7 @@ public class CassandraStatementHandle extends AbstractRecorder implements Statem
   public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
     final AtomicReference<Statement> stmRef = new AtomicReference<Statement>(this.internalStatement);
 
-    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this) {
+    Operation<Integer> op = new Operation<Integer>(OperationType.CQL, this, sql) {
 
       @Override
       public Integer execute(CassandraConnectionHandle connection) throws SQLException {
@@ -21,7 +21,11 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Hashtable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.naming.Context;
 import javax.naming.Name;
@@ -36,7 +40,12 @@ import org.slf4j.LoggerFactory;
 import com.datastax.drivers.jdbc.pool.cassandra.Keyspace;
 import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraHostConfigurator;
 import com.datastax.drivers.jdbc.pool.cassandra.connection.Cluster;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.HConnectionManager;
 import com.datastax.drivers.jdbc.pool.cassandra.factory.HFactory;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * A factory for JNDI Resource managed objects. Responsible for the cluster 
@@ -60,8 +69,16 @@ import com.datastax.drivers.jdbc.pool.cassandra.factory.HFactory;
  *               maxWaitTimeWhenExhausted="10"
  *               failoverPolicy=""FAIL_FAST | ON_FAIL_TRY_ONE_NEXT_AVAILABLE | ON_FAIL_TRY_ALL_AVAILABLE
  *               autoDiscoverHosts="true"
- *               runAutoDiscoveryAtStartup="true"/>
+ *               runAutoDiscoveryAtStartup="true"
+ *               eagerInit="true"
+ *               initWaitMillis="500"/>
  * </pre>
+ * 
+ * <p>
+ * The cluster is started on the first call to {@link #getConnection()}, or right away
+ * in the background with eagerInit or {@link #start()}. Callers of getConnection() 
+ * while the cluster starts wait for it up to initWaitMillis, forever when negative 
+ * (the default), or fail right away with a {@link SQLTransientConnectionException} when 0.
  *
  */
 
@@ -72,9 +89,18 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
 
     private Logger log = LoggerFactory.getLogger(HCQLDataSource.class);
 
+    /** Wait forever for the cluster to start by default. */
+    public static final long DEF_INIT_WAIT_MILLIS = -1;
+
     private volatile boolean initialized = false;
     
-    private Cluster cluster;
+    private volatile Cluster cluster;
+
+    private transient SettableFuture<Cluster> ready;
+
+    private boolean eagerInit = false;
+
+    private long initWaitMillis = DEF_INIT_WAIT_MILLIS;
 
     //private CassandraHostConfigurator cassandraHostConfigurator;
     
@@ -164,11 +190,119 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
      */
     public Connection getConnection() throws SQLException {
 		if (!initialized){
-			maybeInit();
+			awaitInit();
 		}
         return this.cluster.getConnectionManager().borrowClient();
     }
 
+    /**
+     * Get a connection without blocking the caller, once the cluster is started.
+     * 
+     * @see HConnectionManager#borrowClientAsync()
+     */
+    public ListenableFuture<Connection> getConnectionAsync() {
+        return Futures.<Cluster, Connection>chain(start(), new Function<Cluster, ListenableFuture<CassandraConnectionHandle>>() {
+            @Override
+            public ListenableFuture<CassandraConnectionHandle> apply(Cluster started) {
+                return started.getConnectionManager().borrowClientAsync();
+            }
+        });
+    }
+
+    /**
+     * Start the cluster in the background, unless already started or starting.
+     * A failed start is attempted again on the next call.
+     * 
+     * @return a future set with the cluster once started
+     */
+    public synchronized ListenableFuture<Cluster> start() {
+        if (ready != null && !failed(ready)) {
+            return ready;
+        }
+        final SettableFuture<Cluster> future = SettableFuture.create();
+        ready = future;
+        Thread starter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Cluster started = HFactory.createCluster(getClusterName(), HCQLDataSource.this);
+                    cluster = started;
+                    initialized = true;
+                    future.set(started);
+                } catch (Throwable e) {
+                    // an Error must fail the start too, or getConnection() waits forever
+                    log.error("Unable to start cluster " + getClusterName(), e);
+                    future.setException(e);
+                }
+            }
+        }, "HCQLDataSource-start-" + getClusterName());
+        starter.setDaemon(true);
+        starter.start();
+        return future;
+    }
+
+    /**
+     * @return true once the cluster is started and connections can be borrowed
+     */
+    public boolean isReady() {
+        return initialized;
+    }
+
+    private static boolean failed(SettableFuture<Cluster> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        try {
+            future.get();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private void awaitInit() throws SQLException {
+        ListenableFuture<Cluster> future = start();
+        try {
+            if (initWaitMillis < 0) {
+                future.get();
+            } else {
+                future.get(initWaitMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new SQLTransientConnectionException("Cluster " + getClusterName() + " is still starting");
+        } catch (ExecutionException e) {
+            throw new SQLException("Unable to start cluster " + getClusterName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for cluster " + getClusterName() + " to start", e);
+        }
+    }
+
+    public boolean getEagerInit() {
+        return eagerInit;
+    }
+
+    /**
+     * Set to true to start the cluster in the background as soon as the JNDI 
+     * resource is created, instead of on the first call to getConnection().
+     */
+    public void setEagerInit(boolean eagerInit) {
+        this.eagerInit = eagerInit;
+    }
+
+    public long getInitWaitMillis() {
+        return initWaitMillis;
+    }
+
+    /**
+     * How long getConnection() waits for the cluster to start before failing with
+     * a {@link SQLTransientConnectionException}. 0 fails right away, a negative 
+     * value waits forever.
+     */
+    public void setInitWaitMillis(long initWaitMillis) {
+        this.initWaitMillis = initWaitMillis;
+    }
+
     /**
      * Close the datasource.
      * 
@@ -221,30 +355,19 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
             throw new Exception("Object provided is not a javax.naming.Reference type");
         }
 
-        // config CassandraHostConfigurator
+        // config CassandraHostConfigurator, unless a start was already requested
         synchronized (this) {
-            if (!initialized) {
+            if (ready == null) {
                 configure(resourceRef);
                 instance = new HCQLDataSource();
+                if (eagerInit) {
+                    start();
+                }
             }
         }
 
         return this;
     }
-    
-    private void maybeInit() {
-        if (initialized) {
-          return;
-        }
-
-        synchronized (this) {
-            if (!initialized) {
-                cluster = HFactory.createCluster(this.getClusterName(), this);
-                //keyspace = HFactory.createKeyspace((String) keyspaceNameRef.getContent(), cluster);
-                initialized = true;
-            }
-        }
-    }
 
     private void configure(Reference resourceRef) throws Exception {
         // required
@@ -261,6 +384,8 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
         RefAddr runAutoDiscoverAtStartup = resourceRef.get("runAutoDiscoveryAtStartup");
         RefAddr retryDownedHostDelayInSeconds = resourceRef.get("retryDownedHostDelayInSeconds");
         RefAddr failoverPolicyRef = resourceRef.get("failoverPolicy");
+        RefAddr eagerInitRef = resourceRef.get("eagerInit");
+        RefAddr initWaitMillisRef = resourceRef.get("initWaitMillis");
 
         if (hostsRefAddr == null || hostsRefAddr.getContent() == null) {
             throw new Exception("A url and port on which Cassandra is installed and listening "
@@ -269,13 +394,13 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
 
         this.setHosts((String) hostsRefAddr.getContent());
 
-//        if (autoDiscoverHosts != null) {
-//            cassandraHostConfigurator.setAutoDiscoverHosts(Boolean.parseBoolean((String) autoDiscoverHosts.getContent()));
-//            
-//            if (runAutoDiscoverAtStartup != null)
-//                cassandraHostConfigurator.setRunAutoDiscoveryAtStartup(Boolean.parseBoolean((String) autoDiscoverHosts
-//                        .getContent()));
-//        }
+        if (autoDiscoverHosts != null) {
+            this.setAutoDiscoverHosts(Boolean.parseBoolean((String) autoDiscoverHosts.getContent()));
+
+            if (runAutoDiscoverAtStartup != null)
+                this.setRunAutoDiscoveryAtStartup(Boolean.parseBoolean((String) runAutoDiscoverAtStartup
+                        .getContent()));
+        }
 
         if (retryDownedHostDelayInSeconds != null) {
             int retryDelay = Integer.parseInt((String) retryDownedHostDelayInSeconds.getContent());
@@ -290,12 +415,15 @@ public class HCQLDataSource extends CassandraHostConfigurator implements DataSou
             this.setMaxWaitTimeWhenExhausted(Integer.parseInt((String) maxWaitTimeWhenExhausted
                     .getContent()));
 
-        //if (log.isDebugEnabled())
-        //    log.debug("JNDI resource created with CassandraHostConfiguration: {}",
-        //            cassandraHostConfigurator.getAutoDiscoverHosts());
+        if (log.isDebugEnabled())
+            log.debug("JNDI resource created with autoDiscoverHosts: {}", this.getAutoDiscoverHosts());
         
         if (failoverPolicyRef != null)
           this.setFailoverPolicy((String) failoverPolicyRef.getContent());
+        if (eagerInitRef != null)
+            this.setEagerInit(Boolean.parseBoolean((String) eagerInitRef.getContent()));
+        if (initWaitMillisRef != null)
+            this.setInitWaitMillis(Long.parseLong((String) initWaitMillisRef.getContent()));
 
         this.setUser((String) userRef.getContent());
         this.setPassword((String) passwordRef.getContent());
@@ -74,6 +74,13 @@ public class ExecutionResult<T> implements ResultStatus {
     return formatMessage("ExecutionResult", "n/a");
   }
   
+  /**
+   * @return how long the given query took and on which host
+   */
+  public String describe(String query) {
+    return formatMessage(getClass().getSimpleName(), query);
+  }
+
   protected String formatMessage(String resultName, String query) {
     return String.format(BASE_MSG_FORMAT, resultName, getExecutionTimeMicro(), query, (cassandraHost != null ? cassandraHost.getName() : "[none]"));
   }
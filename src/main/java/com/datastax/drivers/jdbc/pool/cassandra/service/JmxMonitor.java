@@ -21,10 +21,11 @@ import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
@@ -36,10 +37,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraClientMonitor;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraHost;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.HClientPool;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.HClientPoolMonitor;
 import com.datastax.drivers.jdbc.pool.cassandra.connection.HConnectionManager;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.HistogramOpTimerMBean;
 
 /**
- * A JMX monitor singlton.
+ * A JMX monitor singlton. It is safe to use from several threads, such as those starting 
+ * host pools in parallel.
  *
  * @author Ran Tavory (ran@outbain.com)
  *
@@ -48,20 +54,21 @@ public class JmxMonitor {
 
   private final Logger log = LoggerFactory.getLogger(getClass());
 
-  private MBeanServer mbs;
-  private static JmxMonitor monitorInstance;
-  private Map<String,CassandraClientMonitor> monitors;
+  private final MBeanServer mbs;
+  private final ConcurrentMap<String,CassandraClientMonitor> monitors;
 
   private JmxMonitor() {
     mbs = ManagementFactory.getPlatformMBeanServer();
-    monitors = new HashMap<String, CassandraClientMonitor>();    
+    monitors = new ConcurrentHashMap<String, CassandraClientMonitor>();    
+  }
+
+  // created on first use, class initialization guarding against races
+  private static class InstanceHolder {
+    static final JmxMonitor INSTANCE = new JmxMonitor();
   }
 
   public static JmxMonitor getInstance() {
-    if ( monitorInstance == null ) {
-      monitorInstance = new JmxMonitor();
-    }
-    return monitorInstance;
+    return InstanceHolder.INSTANCE;
   }
 
 
@@ -80,7 +87,12 @@ public class JmxMonitor {
       return;
     }
 
-    mbs.registerMBean(monitoringInterface, oName);
+    try {
+      mbs.registerMBean(monitoringInterface, oName);
+    } catch (InstanceAlreadyExistsException e) {
+      // registered concurrently
+      log.info("Monitor already registered: {}", oName);
+    }
   }
 
   private String generateMonitorName(String className, String monitorType) {
@@ -132,11 +144,15 @@ public class JmxMonitor {
   public CassandraClientMonitor getCassandraMonitor(HConnectionManager connectionManager) {
     CassandraClientMonitor cassandraClientMonitor = monitors.get(connectionManager.getClusterName());
     if ( cassandraClientMonitor == null ) {
+      CassandraClientMonitor created = new CassandraClientMonitor(connectionManager);
+      cassandraClientMonitor = monitors.putIfAbsent(connectionManager.getClusterName(), created);
+      if ( cassandraClientMonitor != null ) {
+        return cassandraClientMonitor;
+      }
+      cassandraClientMonitor = created;
       try {
-        cassandraClientMonitor = new CassandraClientMonitor(connectionManager);
         registerMonitor("me.prettyprint.cassandra.service_"+connectionManager.getClusterName(), "hector",
             cassandraClientMonitor);
-        monitors.put(connectionManager.getClusterName(), cassandraClientMonitor);
       } catch (MalformedObjectNameException e) {
         log.error("Unable to register JMX monitor", e);
       } catch (InstanceAlreadyExistsException e) {
@@ -150,4 +166,60 @@ public class JmxMonitor {
     return cassandraClientMonitor;
   }
 
+  /**
+   * Registers the latency histograms of a cluster next to its client monitor.
+   */
+  public void registerLatencyMonitor(HConnectionManager connectionManager, HistogramOpTimerMBean opTimer) {
+    try {
+      registerMonitor("me.prettyprint.cassandra.service_"+connectionManager.getClusterName(), "latency", 
+          opTimer);
+    } catch (MalformedObjectNameException e) {
+      log.error("Unable to register JMX latency monitor", e);
+    } catch (InstanceAlreadyExistsException e) {
+      log.error("Unable to register JMX latency monitor", e);
+    } catch (MBeanRegistrationException e) {
+      log.error("Unable to register JMX latency monitor", e);
+    } catch (NotCompliantMBeanException e) {
+      log.error("Unable to register JMX latency monitor", e);
+    }
+  }
+
+  /**
+   * Registers the monitor of a host pool next to the client monitor of its cluster, in 
+   * place of the monitor of a previous pool of the same host if any.
+   */
+  public void registerPoolMonitor(HConnectionManager connectionManager, HClientPool pool) {
+    try {
+      ObjectName oName = getPoolMonitorName(connectionManager, pool.getCassandraHost());
+      synchronized (this) {
+        if ( mbs.isRegistered(oName) ) {
+          mbs.unregisterMBean(oName);
+        }
+        log.info("Registering JMX {}", oName);
+        mbs.registerMBean(new HClientPoolMonitor(connectionManager, pool), oName);
+      }
+    } catch (JMException e) {
+      log.error("Unable to register JMX pool monitor", e);
+    }
+  }
+
+  public void unregisterPoolMonitor(HConnectionManager connectionManager, CassandraHost cassandraHost) {
+    try {
+      ObjectName oName = getPoolMonitorName(connectionManager, cassandraHost);
+      synchronized (this) {
+        if ( mbs.isRegistered(oName) ) {
+          mbs.unregisterMBean(oName);
+        }
+      }
+    } catch (JMException e) {
+      log.error("Unable to unregister JMX pool monitor", e);
+    }
+  }
+
+  private ObjectName getPoolMonitorName(HConnectionManager connectionManager, CassandraHost cassandraHost)
+      throws MalformedObjectNameException {
+    return new ObjectName(generateMonitorName("me.prettyprint.cassandra.service_"+connectionManager.getClusterName(), 
+        "pool") + ",Host=" + ObjectName.quote(cassandraHost.getUrl()));
+  }
+
 }
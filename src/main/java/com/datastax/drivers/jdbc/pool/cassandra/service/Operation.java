@@ -60,11 +60,20 @@ public abstract class Operation<T> {
   protected long execTime;
   public final OperationType operationType;
   public CassandraStatementHandle cassandraStatement;
+  /** The CQL executed, if any, as reported by the slow operation log */
+  public String query;
+  /** The token of the HOpTimer timing the operation, null once stopped */
+  public Object timerToken;
   
   public Operation(OperationType operationType, CassandraStatementHandle statement) {
     this(operationType);
     this.cassandraStatement = statement;
   }
+
+  public Operation(OperationType operationType, CassandraStatementHandle statement, String query) {
+    this(operationType, statement);
+    this.query = query;
+  }
   
   public Operation(OperationType operationType) {
     this.failCounter = operationType.equals(OperationType.READ) ? Counter.READ_FAIL :
@@ -110,6 +119,14 @@ public abstract class Operation<T> {
     return new ExecutionResult<T>(result, execTime, cassandraHost);
   }
 
+  /**
+   * @return the time spent in {@link #execute(CassandraConnectionHandle)} by the last
+   *         successful attempt, in nanos
+   */
+  public long getExecutionTimeNano() {
+    return execTime;
+  }
+
   /**
    * Performs the operation on the given cassandra instance.
    */
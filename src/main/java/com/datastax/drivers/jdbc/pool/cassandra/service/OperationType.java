@@ -35,5 +35,19 @@ public enum OperationType {
   /** A borrow client operation */
   BORROW_CLIENT,
   /** a CQL operation */
-  CQL;
+  CQL,
+  /** Waiting for a host pool to hand out a connection, timed by the pool */
+  BORROW_WAIT,
+  /** Opening a new connection to a host, timed by the pool */
+  CONNECT;
+
+  private final String successTag = name().concat(".success_");
+  private final String failTag = name().concat(".fail_");
+
+  /**
+   * @return the speed4j tag of the operation, computed once
+   */
+  public String getStopWatchTag(boolean success) {
+    return success ? successTag : failTag;
+  }
 }
\ No newline at end of file
@@ -17,19 +17,64 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.utils;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates named daemon threads. When asked to, and when running on a JVM which has them, 
+ * creates virtual threads instead; these are looked up reflectively so that the library 
+ * still builds and runs on older JVMs.
+ */
 public class DaemonThreadPoolFactory implements ThreadFactory {
 
+  private static final Logger log = LoggerFactory.getLogger(DaemonThreadPoolFactory.class);
+
+  // Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), null before Java 21
+  private static final Method OF_VIRTUAL;
+  private static final Method UNSTARTED;
+
+  static {
+    Method ofVirtual = null;
+    Method unstarted = null;
+    try {
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+    } catch (Exception e) {
+      ofVirtual = null;
+      unstarted = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    UNSTARTED = unstarted;
+  }
+
   private ConcurrentHashMap<String, AtomicInteger> counters = 
       new ConcurrentHashMap<String, AtomicInteger>();
   
   private final String name;
+  private final boolean virtual;
 
   public DaemonThreadPoolFactory(Class<?> parentClass) {
+    this(parentClass, false);
+  }
+
+  /**
+   * @param virtual create virtual threads if the JVM supports them, platform threads otherwise
+   */
+  public DaemonThreadPoolFactory(Class<?> parentClass, boolean virtual) {
     this.name = "Hector." + parentClass.getName();
+    if ( virtual && !virtualThreadsAvailable() ) {
+      log.warn("Virtual threads are not available on this JVM, {} will use platform threads", name);
+    }
+    this.virtual = virtual && virtualThreadsAvailable();
+  }
+
+  public static boolean virtualThreadsAvailable() {
+    return OF_VIRTUAL != null;
   }
 
   private int getNextThreadNumber() {
@@ -41,10 +86,19 @@ public class DaemonThreadPoolFactory implements ThreadFactory {
   
   @Override
   public Thread newThread(Runnable r) {
-      Thread t = new Thread(r);
+      Thread t = virtual ? newVirtualThread(r) : new Thread(r);
       t.setDaemon(true);
       t.setName(name + "-" + getNextThreadNumber());
       return t;
   }
+
+  private static Thread newVirtualThread(Runnable r) {
+    try {
+      // builders are not thread safe, so take a new one each time
+      return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), r);
+    } catch (Exception e) {
+      throw new IllegalStateException("Unable to create a virtual thread", e);
+    }
+  }
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear histogram of latencies which records without allocating or 
+ * locking. Latencies are kept in microseconds: exactly below 16us, and above that in 16 
+ * buckets per power of two, so a reported percentile is at most about 6% above the real 
+ * one. Latencies of more than 2^40us (about 12 days) are counted in the last bucket.
+ * 
+ * Concurrent recording is safe; reading while recording gives an approximate view.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  public void recordNanos(long nanos) {
+    counts.incrementAndGet(bucket(nanos / 1000));
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the latency in nanoseconds below which the given percentage of the recorded 
+   *         latencies fall, 0 if nothing was recorded
+   */
+  public long getPercentileNanos(double percentile) {
+    long count = getCount();
+    if ( count == 0 ) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if ( seen >= rank ) {
+        return highestMicros(i) * 1000;
+      }
+    }
+    return highestMicros(BUCKETS - 1) * 1000;
+  }
+
+  /**
+   * Adds the counts of the other histogram to this one.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = other.counts.get(i);
+      if ( count != 0 ) {
+        counts.addAndGet(i, count);
+      }
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  static int bucket(long micros) {
+    if ( micros < SUB_BUCKETS ) {
+      return micros < 0 ? 0 : (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if ( exponent > MAX_EXPONENT ) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (micros >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the highest latency in microseconds which falls into the bucket
+   */
+  static long highestMicros(int bucket) {
+    if ( bucket < SUB_BUCKETS ) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
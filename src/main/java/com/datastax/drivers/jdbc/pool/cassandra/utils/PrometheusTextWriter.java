@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes samples in the Prometheus text exposition format straight to a {@link Writer}, 
+ * without building them first. Numbers are written digit by digit, so writing a sample 
+ * allocates nothing.
+ * <pre>
+ * out.family("pool_active", "gauge", "Borrowed connections");
+ * out.sample("pool_active").label("host", "h1:9160").value(3);
+ * </pre>
+ * Not thread safe.
+ */
+public final class PrometheusTextWriter {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final int MAX_SCALE = 18;
+
+  private final Writer out;
+  private final char[] digits = new char[20];
+  private boolean labels;
+
+  public PrometheusTextWriter(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Writes the HELP and TYPE lines of a metric, ahead of its samples.
+   * @param type counter, gauge, summary, histogram or untyped
+   */
+  public PrometheusTextWriter family(String name, String type, String help) throws IOException {
+    out.write("# HELP ");
+    out.write(name);
+    out.write(' ');
+    escape(help, false);
+    out.write("\n# TYPE ");
+    out.write(name);
+    out.write(' ');
+    out.write(type);
+    out.write('\n');
+    return this;
+  }
+
+  public PrometheusTextWriter sample(String name) throws IOException {
+    out.write(name);
+    labels = false;
+    return this;
+  }
+
+  /**
+   * Starts a sample of a metric family with a suffix, such as the _count and _sum of a summary.
+   */
+  public PrometheusTextWriter sample(String name, String suffix) throws IOException {
+    out.write(name);
+    return sample(suffix);
+  }
+
+  public PrometheusTextWriter label(String name, String value) throws IOException {
+    out.write(labels ? ',' : '{');
+    labels = true;
+    out.write(name);
+    out.write("=\"");
+    escape(value, true);
+    out.write('"');
+    return this;
+  }
+
+  public void value(long value) throws IOException {
+    endLabels();
+    writeLong(value);
+    out.write('\n');
+  }
+
+  /**
+   * Writes value / 10^scale, such as nanoseconds as seconds with a scale of 9.
+   */
+  public void value(long value, int scale) throws IOException {
+    if ( scale < 0 || scale > MAX_SCALE ) {
+      throw new IllegalArgumentException("The scale must be between 0 and " + MAX_SCALE);
+    }
+    endLabels();
+    if ( value < 0 ) {
+      out.write('-');
+      value = -value;
+    }
+    long unit = 1;
+    for (int i = 0; i < scale; i++) {
+      unit *= 10;
+    }
+    writeLong(value / unit);
+    long fraction = value % unit;
+    if ( fraction != 0 ) {
+      out.write('.');
+      int length = scale;
+      while ( fraction % 10 == 0 ) {
+        fraction /= 10;
+        length--;
+      }
+      // zero padded on the left
+      for (int i = length - 1; i >= 0; i--) {
+        digits[i] = (char) ('0' + fraction % 10);
+        fraction /= 10;
+      }
+      out.write(digits, 0, length);
+    }
+    out.write('\n');
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  private void endLabels() throws IOException {
+    if ( labels ) {
+      out.write('}');
+      labels = false;
+    }
+    out.write(' ');
+  }
+
+  private void writeLong(long value) throws IOException {
+    if ( value < 0 ) {
+      if ( value == Long.MIN_VALUE ) {
+        out.write(Long.toString(value));
+        return;
+      }
+      out.write('-');
+      value = -value;
+    }
+    int i = digits.length;
+    do {
+      digits[--i] = (char) ('0' + value % 10);
+      value /= 10;
+    } while ( value != 0 );
+    out.write(digits, i, digits.length - i);
+  }
+
+  /**
+   * Backslashes and new lines are escaped in help texts, double quotes as well in label values.
+   */
+  private void escape(String s, boolean quotes) throws IOException {
+    int length = s.length();
+    int start = 0;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if ( c == '\\' || c == '\n' || (quotes && c == '"') ) {
+        out.write(s, start, i - start);
+        out.write('\\');
+        out.write(c == '\n' ? 'n' : c);
+        start = i + 1;
+      }
+    }
+    out.write(s, start, length - start);
+  }
+}
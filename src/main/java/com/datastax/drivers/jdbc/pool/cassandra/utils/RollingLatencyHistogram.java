@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LatencyHistogram} of the last complete interval, next to the one being recorded 
+ * into. Rolling over swaps the two, so recording never allocates; it takes a lock once 
+ * per interval. Rolling over happens when recording or reading, there is no timer thread.
+ * The count and sum of every latency ever recorded are kept as well.
+ */
+public final class RollingLatencyHistogram {
+
+  private volatile long intervalNanos;
+  private volatile LatencyHistogram current = new LatencyHistogram();
+  private volatile LatencyHistogram completed = new LatencyHistogram();
+  private volatile long completedNanos;
+  private long currentStart = System.nanoTime();
+  private volatile long rollAt;
+  private final StripedCounter totalCount = new StripedCounter();
+  private final StripedCounter totalNanos = new StripedCounter();
+
+  public RollingLatencyHistogram(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+    completedNanos = intervalNanos;
+    rollAt = currentStart + intervalNanos;
+  }
+
+  /**
+   * Takes effect at the end of the current interval.
+   */
+  public void setIntervalNanos(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+  }
+
+  public void recordNanos(long latencyNanos, long now) {
+    roll(now);
+    current.recordNanos(latencyNanos);
+    totalCount.increment();
+    totalNanos.add(Math.max(0, latencyNanos));
+  }
+
+  /**
+   * @return how many latencies were recorded since created
+   */
+  public long getTotalCount() {
+    return totalCount.sum();
+  }
+
+  /**
+   * @return the sum of the latencies recorded since created, in nanoseconds
+   */
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  /**
+   * Adds the histogram of the last complete interval to the given one.
+   * @return the throughput of the last complete interval, in operations per second
+   */
+  public double mergeInto(LatencyHistogram histogram, long now) {
+    roll(now);
+    LatencyHistogram last = completed;
+    histogram.add(last);
+    return last.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / completedNanos;
+  }
+
+  /**
+   * @return how many latencies were recorded during the last complete interval
+   */
+  public long getCount(long now) {
+    roll(now);
+    return completed.getCount();
+  }
+
+  private void roll(long now) {
+    if ( now - rollAt < 0 ) {
+      return;
+    }
+    synchronized (this) {
+      if ( now - rollAt < 0 ) {
+        return;
+      }
+      LatencyHistogram last = current;
+      LatencyHistogram next = completed;
+      next.reset();
+      if ( now - rollAt >= intervalNanos ) {
+        // nothing was recorded for a whole interval, what current holds is older than that
+        last.reset();
+      }
+      completed = last;
+      completedNanos = now - currentStart;
+      current = next;
+      currentStart = now;
+      rollAt = now + intervalNanos;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for statistics which are updated far more often than they are read. Updates 
+ * go to a single base value until two threads collide on it; from then on every thread 
+ * adds to one of a set of stripes, each on its own cache line, so that concurrent updates 
+ * stop contending with each other. Reading sums the base and the stripes, and is therefore 
+ * not an atomic snapshot while updates are in flight.
+ * 
+ * This is what java.util.concurrent.atomic.LongAdder does on Java 8 and later.
+ */
+public final class StripedCounter {
+
+  // longs between two stripes: 128 bytes, which keeps them apart even with adjacent line prefetch
+  private static final int PAD = 16;
+
+  private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong base = new AtomicLong();
+  private volatile AtomicLongArray stripes;
+
+  public void increment() {
+    add(1);
+  }
+
+  public void add(long x) {
+    AtomicLongArray s = stripes;
+    if ( s == null ) {
+      long b = base.get();
+      if ( base.compareAndSet(b, b + x) ) {
+        return;
+      }
+      s = inflate();
+    }
+    s.getAndAdd(index(), x);
+  }
+
+  public long sum() {
+    long sum = base.get();
+    AtomicLongArray s = stripes;
+    if ( s != null ) {
+      for (int i = 0; i < s.length(); i += PAD) {
+        sum += s.get(i);
+      }
+    }
+    return sum;
+  }
+
+  private synchronized AtomicLongArray inflate() {
+    if ( stripes == null ) {
+      stripes = new AtomicLongArray(STRIPES * PAD);
+    }
+    return stripes;
+  }
+
+  private static int index() {
+    // spread the sequential thread ids over the stripes
+    long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return ((int) (h >>> 32) & (STRIPES - 1)) * PAD;
+  }
+
+  /**
+   * @return the smallest power of two which is at least twice the number of processors
+   */
+  static int stripes(int processors) {
+    int n = 1;
+    while ( n < 2 * processors && n < (1 << 16) ) {
+      n <<= 1;
+    }
+    return n;
+  }
+}
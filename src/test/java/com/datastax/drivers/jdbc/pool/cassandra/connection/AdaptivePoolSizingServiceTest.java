@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptivePoolSizingServiceTest {
+
+  @Test
+  public void testGrowsGradually() {
+    // needs 40, may grow by a quarter of 16 per run
+    assertEquals(20, AdaptivePoolSizingService.nextSize(16, 40, 2, 50, 0.1));
+    assertEquals(25, AdaptivePoolSizingService.nextSize(20, 40, 2, 50, 0.1));
+    assertEquals(40, AdaptivePoolSizingService.nextSize(33, 40, 2, 50, 0.1));
+  }
+
+  @Test
+  public void testShrinksGradually() {
+    assertEquals(12, AdaptivePoolSizingService.nextSize(16, 0.5, 2, 50, 0.1));
+    assertEquals(2, AdaptivePoolSizingService.nextSize(3, 0, 2, 50, 0.1));
+  }
+
+  @Test
+  public void testHysteresis() {
+    assertEquals(20, AdaptivePoolSizingService.nextSize(20, 21.5, 2, 50, 0.1));
+    assertEquals(20, AdaptivePoolSizingService.nextSize(20, 18, 2, 50, 0.1));
+    assertEquals(23, AdaptivePoolSizingService.nextSize(20, 22.5, 2, 50, 0.1));
+  }
+
+  @Test
+  public void testClamped() {
+    assertEquals(50, AdaptivePoolSizingService.nextSize(48, 400, 2, 50, 0.01));
+    assertEquals(5, AdaptivePoolSizingService.nextSize(5, 0, 5, 50, 0.1));
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.BaseEmbededServerSetupTest;
+
+public class CassandraHostProbeTest extends BaseEmbededServerSetupTest {
+
+  private CassandraHostProbe probe;
+
+  @Before
+  public void setupTest() {
+    setupClient();
+    cassandraHostConfigurator.setProbeConnectTimeoutMillis(500);
+    cassandraHostConfigurator.setProbeQueryTimeoutMillis(500);
+    probe = new CassandraHostProbe(cassandraHostConfigurator);
+  }
+
+  @After
+  public void teardownTest() {
+    probe.shutdown();
+    connectionManager.shutdown();
+  }
+
+  @Test
+  public void testProbeLiveHost() {
+    assertTrue(probe.probe(cassandraHostConfigurator.buildCassandraHosts()[0]));
+    assertEquals(1, probe.getProbeCount());
+    assertEquals(0, probe.getProbeFailureCount());
+  }
+
+  @Test
+  public void testProbeDownHost() throws Exception {
+    // grab a free port, then release it so nothing listens there
+    ServerSocket serverSocket = new ServerSocket(0);
+    int port = serverSocket.getLocalPort();
+    serverSocket.close();
+    CassandraHost cassandraHost = new CassandraHost("127.0.0.1", port);
+    assertFalse(probe.probe(cassandraHost));
+    assertEquals(1, probe.getProbeFailureCount());
+    assertEquals("127.0.0.1:" + port + "=failed", probe.getLastProbeTimes().get(0));
+  }
+
+  @Test
+  public void testProbeUnresponsiveHost() throws Exception {
+    // connections get queued in the backlog but nothing ever answers them
+    ServerSocket serverSocket = new ServerSocket(0);
+    try {
+      CassandraHost cassandraHost = new CassandraHost("127.0.0.1", serverSocket.getLocalPort());
+      long start = System.currentTimeMillis();
+      assertFalse(probe.probe(cassandraHost));
+      assertTrue(System.currentTimeMillis() - start < 2000);
+    } finally {
+      serverSocket.close();
+    }
+  }
+}
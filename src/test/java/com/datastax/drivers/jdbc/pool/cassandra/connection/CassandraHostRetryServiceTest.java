@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+public class CassandraHostRetryServiceTest {
+
+  private final CassandraHost host = new CassandraHost("10.0.0.1", 9170);
+
+  private ScheduledExecutorService scheduler;
+  private CassandraHostProbe probe;
+  private CassandraHostRetryService service;
+
+  @Before
+  public void setupTest() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    probe = mock(CassandraHostProbe.class);
+    HConnectionManager connectionManager = mock(HConnectionManager.class);
+    when(connectionManager.getScheduler()).thenReturn(scheduler);
+    when(connectionManager.getHostProbe()).thenReturn(probe);
+    CassandraHostConfigurator cassandraHostConfigurator = new CassandraHostConfigurator("10.0.0.1:9170");
+    cassandraHostConfigurator.setRetryDownedHostsDelayInSeconds(3600);
+    service = new CassandraHostRetryService(connectionManager, cassandraHostConfigurator);
+  }
+
+  @After
+  public void teardownTest() {
+    service.shutdown();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testOneProbeInFlight() {
+    SettableFuture<Boolean> first = SettableFuture.create();
+    SettableFuture<Boolean> second = SettableFuture.create();
+    when(probe.submit(host)).thenReturn(first, second);
+    service.add(host);
+    verify(probe).submit(host);
+
+    // a probe outlasting the retry delay is not probed again
+    service.new RetryRunner().run();
+    service.new RetryRunner().run();
+    verify(probe).submit(host);
+
+    // then backs off
+    first.set(false);
+    assertTrue(service.contains(host));
+    service.new RetryRunner().run();
+    verify(probe).submit(host);
+
+    // added again, it is probed right away
+    service.add(host);
+    verify(probe, times(2)).submit(host);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.drivers.jdbc.pool.cassandra.BaseEmbededServerSetupTest;
+import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.utils.DaemonThreadPoolFactory;
+
+/**
+ * Ten thousand virtual threads hammering a pool of 50 connections. Only runs on JVMs 
+ * with virtual threads, and not as part of the unit tests: mvn test -P load-tests.
+ */
+public class ConcurrentHClientPoolLoadTest extends BaseEmbededServerSetupTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ConcurrentHClientPoolLoadTest.class);
+
+  private static final int CLIENTS = 10000;
+  private static final int BORROWS_PER_CLIENT = 20;
+
+  private ConcurrentHClientPool clientPool;
+  private ExecutorService executor;
+
+  @Before
+  public void setupTest() throws Exception {
+    Assume.assumeTrue(DaemonThreadPoolFactory.virtualThreadsAvailable());
+    setupClient();
+    cassandraHostConfigurator.setMaxWaitTimeWhenExhausted(-1);
+    executor = Executors.newFixedThreadPool(4);
+    clientPool = new ConcurrentHClientPool(cassandraHostConfigurator.buildCassandraHosts()[0]);
+    clientPool.warm(executor);
+  }
+
+  @After
+  public void teardownTest() {
+    if ( clientPool != null ) {
+      clientPool.shutdown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVirtualThreadBorrowers() throws Exception {
+    ThreadFactory threads = new DaemonThreadPoolFactory(getClass(), true);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(CLIENTS);
+    final AtomicInteger failures = new AtomicInteger();
+    for (int i = 0; i < CLIENTS; i++) {
+      threads.newThread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < BORROWS_PER_CLIENT; j++) {
+              CassandraConnectionHandle conn = clientPool.borrowClient();
+              Thread.yield();
+              clientPool.releaseClient(conn);
+            }
+          } catch (Exception e) {
+            log.error("Borrower failed", e);
+            failures.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    assertTrue("Borrowers did not finish in time", done.await(2, TimeUnit.MINUTES));
+    long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    log.info("{} virtual threads did {} borrows in {}ms ({} borrows/s)", new Object[] { CLIENTS,
+        CLIENTS * BORROWS_PER_CLIENT, elapsedMillis, CLIENTS * BORROWS_PER_CLIENT * 1000L / elapsedMillis });
+
+    assertEquals(0, failures.get());
+    assertEquals(0, clientPool.getNumActive());
+    assertEquals(0, clientPool.getNumBlockedThreads());
+    assertTrue(clientPool.getNumIdle() <= clientPool.getCassandraHost().getMaxActive());
+  }
+}
@@ -19,19 +19,40 @@ package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.datastax.drivers.jdbc.pool.cassandra.BaseEmbededServerSetupTest;
 import com.datastax.drivers.jdbc.pool.cassandra.exceptions.HPoolExhaustedException;
 import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.service.ExhaustedPolicy;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class ConcurrentHClientPoolTest extends BaseEmbededServerSetupTest {
 
   private CassandraHost cassandraHost;
   private ConcurrentHClientPool clientPool;
+  private ExecutorService executor;
+  private ScheduledExecutorService scheduler;
 
   @Before
   public void setupTest() throws Exception {
@@ -39,7 +60,16 @@ public class ConcurrentHClientPoolTest extends BaseEmbededServerSetupTest {
     // Wait only one second.
     cassandraHostConfigurator.setMaxWaitTimeWhenExhausted(500);
     cassandraHost = cassandraHostConfigurator.buildCassandraHosts()[0];
+    executor = Executors.newFixedThreadPool(4);
+    scheduler = Executors.newScheduledThreadPool(1);
     clientPool = new ConcurrentHClientPool(cassandraHost);
+    clientPool.warm(executor);
+  }
+
+  @After
+  public void teardownTest() {
+    executor.shutdownNow();
+    scheduler.shutdownNow();
   }
   
   @Test
@@ -50,6 +80,15 @@ public class ConcurrentHClientPoolTest extends BaseEmbededServerSetupTest {
     assertEquals(0, clientPool.getNumActive());
   }
   
+  @Test
+  public void testWarm() throws Exception {
+    ConcurrentHClientPool coldPool = new ConcurrentHClientPool(cassandraHost);
+    assertEquals(0, coldPool.getNumIdle());
+    coldPool.warm(executor);
+    assertEquals(16, coldPool.getNumIdle());
+    coldPool.shutdown();
+  }
+
   @Test
   public void testShutdown() {
     clientPool.shutdown();
@@ -65,6 +104,48 @@ public class ConcurrentHClientPoolTest extends BaseEmbededServerSetupTest {
     clientPool.releaseClient(conn);
     assertEquals(0, clientPool.getNumActive());
   }
+
+  @Test
+  public void testClosedReplacedInBackground() throws Exception {
+    ExecutorService background = Executors.newSingleThreadExecutor();
+    ConcurrentHClientPool pool = new ConcurrentHClientPool(cassandraHost);
+    pool.warm(background);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    background.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    int idle = pool.getNumIdle();
+    long created = pool.getStats().getCreatedCount();
+    CassandraConnectionHandle conn = pool.borrowClient();
+    conn.getInternalConnection().close();
+    pool.releaseClient(conn);
+    // not reopened by the releasing thread
+    assertEquals(created, pool.getStats().getCreatedCount());
+    assertEquals(idle - 1, pool.getNumIdle());
+    blocked.countDown();
+    background.shutdown();
+    assertTrue(background.awaitTermination(1, TimeUnit.SECONDS));
+    assertEquals(created + 1, pool.getStats().getCreatedCount());
+    assertEquals(idle, pool.getNumIdle());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testReleaseTwice() throws Exception {
+    CassandraConnectionHandle conn = clientPool.borrowClient();
+    int idle = clientPool.getNumIdle();
+    clientPool.releaseClient(conn);
+    clientPool.releaseClient(conn);
+    assertEquals(0, clientPool.getNumActive());
+    assertEquals(idle + 1, clientPool.getNumIdle());
+  }
   
   @Test
   public void testBorrowMoreThanActiveConnections() throws Exception {
@@ -88,4 +169,258 @@ public class ConcurrentHClientPoolTest extends BaseEmbededServerSetupTest {
 
     clientPool.borrowClient();
   }
+
+  @Test
+  public void testBlockedBorrowHandoff() throws Exception {
+    CassandraConnectionHandle lastConn = null;
+    for (int i = 0; i < 50 ; i++)
+      lastConn = clientPool.borrowClient();
+
+    Future<CassandraConnectionHandle> blocked = executor.submit(new Callable<CassandraConnectionHandle>() {
+      public CassandraConnectionHandle call() throws Exception {
+        return clientPool.borrowClient();
+      }
+    });
+    while ( clientPool.getNumBlockedThreads() == 0 )
+      Thread.sleep(5);
+
+    // a newcomer queues up behind the blocked thread instead of taking the release
+    ListenableFuture<CassandraConnectionHandle> newcomer = clientPool.borrowClientAsync(executor, scheduler);
+    clientPool.releaseClient(lastConn);
+    assertSame(lastConn, blocked.get(1, TimeUnit.SECONDS));
+    assertFalse(lastConn.isClosed());
+    assertFalse(newcomer.isDone());
+    assertEquals(50, clientPool.getNumActive());
+    assertEquals(0, clientPool.getNumBlockedThreads());
+  }
+
+  @Test
+  public void testShrink() throws Exception {
+    CassandraConnectionHandle first = clientPool.borrowClient();
+    CassandraConnectionHandle second = clientPool.borrowClient();
+    clientPool.setMaxActive(10);
+    assertEquals(10, clientPool.getMaxActive());
+    assertEquals(8, clientPool.getNumIdle());
+
+    clientPool.setMaxActive(1);
+    assertEquals(0, clientPool.getNumIdle());
+    // busy connections are closed once released, down to the new size
+    clientPool.releaseClient(first);
+    assertTrue(first.getInternalConnection().isClosed());
+    clientPool.releaseClient(second);
+    assertFalse(second.getInternalConnection().isClosed());
+    assertEquals(1, clientPool.getNumIdle());
+    assertEquals(0, clientPool.getNumActive());
+  }
+
+  @Test
+  public void testGrow() throws Exception {
+    for (int i = 0; i < 50 ; i++)
+      clientPool.borrowClient();
+
+    // raised past the maxActive the pool was created with
+    cassandraHost.setMaxActive(60);
+    clientPool.setMaxActive(60);
+    for (int i = 0; i < 10 ; i++)
+      clientPool.borrowClient();
+    assertEquals(60, clientPool.getNumActive());
+    assertTrue(clientPool.isExhausted());
+  }
+
+  @Test
+  public void testGrowWakesWaiters() throws Exception {
+    clientPool.setMaxActive(1);
+    clientPool.borrowClient();
+    ListenableFuture<CassandraConnectionHandle> waiting = clientPool.borrowClientAsync(executor, scheduler);
+    assertFalse(waiting.isDone());
+
+    // served without anything being released
+    clientPool.setMaxActive(2);
+    assertNotNull(waiting.get(400, TimeUnit.MILLISECONDS));
+    assertEquals(2, clientPool.getNumActive());
+  }
+
+  @Test
+  public void testExhaustedPolicy() throws Exception {
+    CassandraConnectionHandle lastConn = null;
+    for (int i = 0; i < 50 ; i++)
+      lastConn = clientPool.borrowClient();
+
+    cassandraHost.setExhaustedPolicy(ExhaustedPolicy.WHEN_EXHAUSTED_FAIL);
+    long start = System.currentTimeMillis();
+    try {
+      clientPool.borrowClient();
+      fail("BorrowClient should fail right away when exhausted");
+    } catch (HPoolExhaustedException e) {
+      assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    cassandraHost.setExhaustedPolicy(ExhaustedPolicy.WHEN_EXHAUSTED_GROW);
+    CassandraConnectionHandle extra = clientPool.borrowClient();
+    assertEquals(51, clientPool.getNumActive());
+    // back to maxActive once released
+    clientPool.releaseClient(extra);
+    clientPool.releaseClient(lastConn);
+    assertEquals(49, clientPool.getNumActive());
+    assertEquals(1, clientPool.getNumIdle());
+  }
+
+  @Test
+  public void testBorrowStats() throws Exception {
+    long start = System.currentTimeMillis();
+    cassandraHost.setPoolStatsIntervalInSeconds(1);
+    HistogramOpTimer timer = new HistogramOpTimer(1);
+    ConcurrentHClientPool statsPool = new ConcurrentHClientPool(cassandraHost);
+    statsPool.setOpTimer(timer);
+    statsPool.warm(executor);
+    List<CassandraConnectionHandle> borrowed = new ArrayList<CassandraConnectionHandle>();
+    for (int i = 0; i < 50 ; i++)
+      borrowed.add(statsPool.borrowClient());
+    try {
+      statsPool.borrowClient();
+      fail("BorrowClient should time out when exhausted");
+    } catch (HPoolExhaustedException e) {
+      // expected
+    }
+    for (CassandraConnectionHandle conn : borrowed)
+      statsPool.releaseClient(conn);
+    assertEquals(1, statsPool.getStats().getTimeoutCount());
+    assertEquals(1, statsPool.getStats().getExhaustedCount());
+
+    // histograms report the last complete interval
+    Thread.sleep(Math.max(0, 1100 - (System.currentTimeMillis() - start)));
+    PoolStats stats = statsPool.getStats();
+    assertEquals(51, stats.getBorrowWait().getCount());
+    assertTrue(stats.getBorrowWait().getPercentileNanos(100) >= TimeUnit.MILLISECONDS.toNanos(500));
+    assertEquals(50, stats.getConnectTime().getCount());
+    assertEquals(1 / 51.0, stats.getSaturation(), 0.001);
+    String url = cassandraHost.getUrl();
+    TabularData latencies = timer.getLatencies();
+    assertNotNull(latencies.toString(), latencies.get(new Object[] { url, "BORROW_WAIT" }));
+    assertNotNull(latencies.toString(), latencies.get(new Object[] { url, "CONNECT" }));
+    assertEquals(50, stats.getCreatedCount());
+    assertEquals(0, stats.getClosedCount());
+    statsPool.shutdown();
+    assertEquals(50, stats.getClosedCount());
+  }
+
+  @Test
+  public void testRetireExpired() throws Exception {
+    cassandraHost.setMaxConnectionLifetimeMillis(50);
+    cassandraHost.setConnectionLifetimeJitter(0);
+    ConcurrentHClientPool expiringPool = new ConcurrentHClientPool(cassandraHost);
+    expiringPool.warm(executor);
+    CassandraConnectionHandle busy = expiringPool.borrowClient();
+    assertEquals(0, expiringPool.retireExpiredConnections());
+    Thread.sleep(60);
+
+    assertEquals(15, expiringPool.retireExpiredConnections());
+    expiringPool.releaseClient(busy);
+    assertTrue(busy.getInternalConnection().isClosed());
+
+    // replaced in the background
+    long deadline = System.currentTimeMillis() + 1000;
+    while ( expiringPool.getNumIdle() < 16 && System.currentTimeMillis() < deadline )
+      Thread.sleep(5);
+    assertEquals(16, expiringPool.getNumIdle());
+    expiringPool.shutdown();
+  }
+
+  @Test
+  public void testValidateOnBorrow() throws Exception {
+    cassandraHost.setValidateOnBorrow(true);
+    cassandraHost.setValidationSkipWindowMillis(50);
+    ConcurrentHClientPool validatingPool = new ConcurrentHClientPool(cassandraHost);
+    validatingPool.warm(executor);
+    CassandraConnectionHandle broken = validatingPool.borrowClient();
+    validatingPool.releaseClient(broken);
+    Thread.sleep(60);
+
+    // a broken idle connection is replaced instead of handed out
+    broken.getInternalConnection().close();
+    for (int i = 0; i < 16; i++) {
+      CassandraConnectionHandle conn = validatingPool.borrowClient();
+      assertFalse(conn.getInternalConnection().isClosed());
+    }
+    assertEquals(0, validatingPool.getNumIdle());
+    assertEquals(16, validatingPool.getNumActive());
+    validatingPool.shutdown();
+  }
+
+  @Test
+  public void testLeakDetection() throws Exception {
+    cassandraHost.setLeakDetectionThresholdMillis(50);
+    cassandraHost.setLeakStackSampleRate(1);
+    ConcurrentHClientPool trackingPool = new ConcurrentHClientPool(cassandraHost);
+    trackingPool.warm(executor);
+    CassandraConnectionHandle leaked = trackingPool.borrowClient();
+    trackingPool.releaseClient(trackingPool.borrowClient());
+    assertEquals(0, trackingPool.checkLeaks());
+    Thread.sleep(60);
+
+    assertEquals(1, trackingPool.checkLeaks());
+    List<String> leaks = trackingPool.getLeakedConnections();
+    assertEquals(1, leaks.size());
+    assertTrue(leaks.get(0), leaks.get(0).contains(Thread.currentThread().getName() + " at "));
+    assertTrue(leaks.get(0), leaks.get(0).contains("testLeakDetection"));
+    assertEquals(1, trackingPool.getNumActive());
+
+    cassandraHost.setReclaimLeakedConnections(true);
+    assertEquals(1, trackingPool.checkLeaks());
+    assertEquals(0, trackingPool.getNumActive());
+    assertTrue(leaked.getInternalConnection().isClosed());
+    assertTrue(trackingPool.getLeakedConnections().isEmpty());
+    // releasing it late does not count it twice
+    trackingPool.releaseClient(leaked);
+    assertEquals(0, trackingPool.getNumActive());
+    trackingPool.shutdown();
+  }
+
+  @Test
+  public void testBorrowAsync() throws Exception {
+    CassandraConnectionHandle conn = clientPool.borrowClientAsync(executor, scheduler).get(1, TimeUnit.SECONDS);
+    assertEquals(1, clientPool.getNumActive());
+    clientPool.releaseClient(conn);
+    assertEquals(0, clientPool.getNumActive());
+  }
+
+  @Test
+  public void testBorrowAsyncHandoff() throws Exception {
+    CassandraConnectionHandle lastConn = null;
+    for (int i = 0; i < 50 ; i++)
+      lastConn = clientPool.borrowClient();
+
+    ListenableFuture<CassandraConnectionHandle> first = clientPool.borrowClientAsync(executor, scheduler);
+    ListenableFuture<CassandraConnectionHandle> second = clientPool.borrowClientAsync(executor, scheduler);
+    assertFalse(first.isDone());
+
+    // the oldest waiter gets the released connection
+    clientPool.releaseClient(lastConn);
+    assertSame(lastConn, first.get(1, TimeUnit.SECONDS));
+    assertFalse(second.isDone());
+    assertEquals(50, clientPool.getNumActive());
+
+    try {
+      second.get(1, TimeUnit.SECONDS);
+      fail("Waiting borrow should time out after maxWaitTimeWhenExhausted");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof HPoolExhaustedException);
+    }
+    assertEquals(50, clientPool.getNumActive());
+  }
+
+  @Test
+  public void testBorrowAsyncCancel() throws Exception {
+    CassandraConnectionHandle lastConn = null;
+    for (int i = 0; i < 50 ; i++)
+      lastConn = clientPool.borrowClient();
+
+    ListenableFuture<CassandraConnectionHandle> cancelled = clientPool.borrowClientAsync(executor, scheduler);
+    ListenableFuture<CassandraConnectionHandle> waiting = clientPool.borrowClientAsync(executor, scheduler);
+    assertTrue(cancelled.cancel(false));
+
+    clientPool.releaseClient(lastConn);
+    assertSame(lastConn, waiting.get(1, TimeUnit.SECONDS));
+    assertEquals(50, clientPool.getNumActive());
+  }
 }
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.BaseEmbededServerSetupTest;
+import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+
+public class HConnectionManagerTest extends BaseEmbededServerSetupTest {
+
+  @Before
+  public void setupTest() {
+    cassandraHostConfigurator = new CassandraHostConfigurator("127.0.0.1:9170");
+    cassandraHostConfigurator.setLeakDetectionThresholdMillis(50);
+    connectionManager = new HConnectionManager(clusterName, cassandraHostConfigurator);
+  }
+
+  @After
+  public void teardownTest() {
+    connectionManager.shutdown();
+  }
+
+  @Test
+  public void testBorrowedUntilClosed() throws Exception {
+    HClientPool pool = connectionManager.getActivePools().iterator().next();
+    int idle = pool.getNumIdle();
+    CassandraConnectionHandle conn = connectionManager.borrowClient();
+    assertTrue(conn.isCheckedOut());
+    assertEquals(1, pool.getNumActive());
+    assertEquals(idle - 1, pool.getNumIdle());
+
+    conn.close();
+    assertFalse(conn.isCheckedOut());
+    assertEquals(0, pool.getNumActive());
+    assertEquals(idle, pool.getNumIdle());
+    // closing it again neither queues it twice nor counts it twice
+    conn.close();
+    assertEquals(0, pool.getNumActive());
+    assertEquals(idle, pool.getNumIdle());
+  }
+
+  @Test
+  public void testHoldTime() throws Exception {
+    HClientPool pool = connectionManager.getActivePools().iterator().next();
+    CassandraConnectionHandle conn = connectionManager.borrowClient();
+    CassandraConnectionHandle other = connectionManager.borrowClient();
+    // shrinking only closes idle connections
+    pool.setMaxActive(1);
+    assertFalse(conn.getInternalConnection().isClosed());
+    assertFalse(other.getInternalConnection().isClosed());
+    Thread.sleep(20);
+
+    long busyNanos = pool.getBusyTimeNanos();
+    conn.close();
+    assertTrue(pool.getBusyTimeNanos() - busyNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertEquals(1, pool.getNumActive());
+    other.close();
+    assertEquals(0, pool.getNumActive());
+  }
+
+  @Test
+  public void testLeakDetection() throws Exception {
+    HClientPool pool = connectionManager.getActivePools().iterator().next();
+    CassandraConnectionHandle leaked = connectionManager.borrowClient();
+    assertEquals(0, pool.checkLeaks());
+    Thread.sleep(60);
+
+    assertEquals(1, pool.checkLeaks());
+    assertEquals(1, pool.getLeakedConnections().size());
+    assertFalse(leaked.getInternalConnection().isClosed());
+
+    pool.getCassandraHost().setReclaimLeakedConnections(true);
+    assertEquals(1, pool.checkLeaks());
+    assertEquals(0, pool.getNumActive());
+    assertTrue(leaked.getInternalConnection().isClosed());
+    // closing it late does not count it twice
+    leaked.close();
+    assertEquals(0, pool.getNumActive());
+  }
+
+  @Test
+  public void testStartupFailureRetried() throws Exception {
+    CassandraHostConfigurator configurator = new CassandraHostConfigurator("127.0.0.1:9170");
+    StartupPolicy policy = new StartupPolicy();
+    policy.failure = new IllegalStateException("failing the first startup");
+    configurator.setLoadBalancingPolicy(policy);
+    HConnectionManager manager = new HConnectionManager(clusterName, configurator);
+    try {
+      CassandraHost host = configurator.buildCassandraHosts()[0];
+      // handed to the retry service, which may have added it back already
+      assertTrue(manager.getDownedHosts().contains(host) || manager.getHosts().contains(host));
+    } finally {
+      manager.shutdown();
+    }
+  }
+
+  @Test
+  public void testShutdownWhileStarting() throws Exception {
+    CassandraHostConfigurator configurator = new CassandraHostConfigurator("127.0.0.1:9170");
+    configurator.setStartupTimeoutMillis(50);
+    StartupPolicy policy = new StartupPolicy();
+    policy.proceed = new CountDownLatch(1);
+    configurator.setLoadBalancingPolicy(policy);
+    HConnectionManager manager = new HConnectionManager(clusterName, configurator);
+    manager.shutdown();
+    policy.proceed.countDown();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( (policy.pool == null || policy.pool.getIsActive()) && System.currentTimeMillis() < deadline ) {
+      Thread.sleep(10);
+    }
+    // started after the shutdown, so discarded rather than published
+    assertFalse(policy.pool.getIsActive());
+    assertTrue(manager.getHosts().isEmpty());
+  }
+
+  /**
+   * Creates pools which fail once, or wait to be allowed to start.
+   */
+  private static class StartupPolicy extends RoundRobinBalancingPolicy {
+    volatile RuntimeException failure;
+    volatile CountDownLatch proceed;
+    volatile HClientPool pool;
+
+    @Override
+    public HClientPool createConnection(CassandraHost host) throws SQLException {
+      RuntimeException e = failure;
+      if ( e != null ) {
+        failure = null;
+        throw e;
+      }
+      if ( proceed != null ) {
+        try {
+          proceed.await();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      pool = super.createConnection(host);
+      return pool;
+    }
+  }
+}
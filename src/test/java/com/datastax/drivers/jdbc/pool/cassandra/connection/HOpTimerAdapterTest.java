@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+import com.datastax.drivers.jdbc.pool.cassandra.service.Operation;
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+import com.ecyrd.speed4j.StopWatch;
+
+public class HOpTimerAdapterTest {
+
+  @Test
+  public void testAdapt() {
+    final List<String> stopped = new ArrayList<String>();
+    HOpTimer legacy = new HOpTimer() {
+      private int started;
+
+      @Override
+      public Object start() {
+        return "token" + (++started);
+      }
+
+      @Override
+      public void stop(Object token, String tagName, boolean success) {
+        stopped.add(token + " " + tagName + " " + success);
+      }
+    };
+    HOpTimerAdapter adapter = HOpTimerAdapter.adapt(legacy);
+    assertSame(legacy, adapter.getTimer());
+    Operation<Void> first = new NoOperation(OperationType.READ);
+    Operation<Void> second = new NoOperation(OperationType.CQL);
+    long firstToken = adapter.startOperation(first);
+    long secondToken = adapter.startOperation(second);
+    adapter.stopOperation(secondToken, second, null, false);
+    adapter.stopOperation(firstToken, first, null, true);
+    // stopped once only
+    adapter.stopOperation(firstToken, first, null, true);
+    // pool-internal timings are not reported
+    adapter.stop(adapter.start(), null, OperationType.BORROW_WAIT, true);
+    assertEquals(2, stopped.size());
+    assertEquals("token2 CQL false", stopped.get(0));
+    assertEquals("token1 READ true", stopped.get(1));
+  }
+
+  private static class NoOperation extends Operation<Void> {
+
+    NoOperation(OperationType operationType) {
+      super(operationType);
+    }
+
+    @Override
+    public Void execute(CassandraConnectionHandle connection) {
+      return null;
+    }
+
+    @Override
+    public void prepareForFailover(CassandraConnectionHandle newConnection) {
+      // NO-OP
+    }
+  }
+
+  @Test
+  public void testStopWatchTags() {
+    assertEquals("CQL.success_", OperationType.CQL.getStopWatchTag(true));
+    assertSame(OperationType.CQL.getStopWatchTag(false), OperationType.CQL.getStopWatchTag(false));
+  }
+
+  @Test
+  public void testAdaptSpeedForJ() {
+    StopWatch stopWatch = new StopWatch();
+    SpeedForJOpTimer speedForJ = mock(SpeedForJOpTimer.class);
+    when(speedForJ.start()).thenReturn(stopWatch);
+    HOpTimerAdapter adapter = HOpTimerAdapter.adapt(speedForJ);
+    assertSame(speedForJ, adapter.getTimer());
+    Operation<Void> op = new NoOperation(OperationType.CQL);
+    adapter.stopOperation(adapter.startOperation(op), op, null, true);
+    assertNull(op.timerToken);
+    // tagged by the operation type, not through the tag name
+    assertSame(OperationType.CQL.getStopWatchTag(true), stopWatch.getTag());
+    verify(speedForJ, never()).stop(stopWatch, "CQL", true);
+  }
+}
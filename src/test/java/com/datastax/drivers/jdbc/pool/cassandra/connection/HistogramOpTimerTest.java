@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+
+public class HistogramOpTimerTest {
+
+  @Test
+  public void testRollOver() throws Exception {
+    HistogramOpTimer timer = new HistogramOpTimer(1);
+    CassandraHost host = new CassandraHost("127.0.0.1:9160");
+    for (int i = 0; i < 10; i++) {
+      timer.stop(timer.start(), host, OperationType.CQL, true);
+    }
+    timer.stop(timer.start(), host, OperationType.READ, false);
+    // nothing is reported before the first interval completes
+    assertTrue(timer.getLatencies().isEmpty());
+
+    Thread.sleep(1100);
+    TabularData latencies = timer.getLatencies();
+    assertEquals(1, latencies.size());
+    CompositeData cql = latencies.get(new Object[] { host.getUrl(), "CQL" });
+    assertNotNull(cql);
+    assertTrue((Double) cql.get("p50Millis") <= (Double) cql.get("p999Millis"));
+    // over the 1.1s or more the interval lasted
+    double throughput = (Double) cql.get("throughput");
+    assertTrue(String.valueOf(throughput), throughput > 0 && throughput <= 10);
+    assertEquals(1, timer.getLatenciesPerOperation().size());
+    assertNotNull(timer.getLatenciesPerOperation().get(new Object[] { "CQL" }));
+
+    // an idle interval reports nothing
+    Thread.sleep(2100);
+    assertTrue(timer.getLatencies().isEmpty());
+  }
+
+  @Test
+  public void testRemove() {
+    HistogramOpTimer timer = new HistogramOpTimer();
+    CassandraHost removed = new CassandraHost("127.0.0.1:9160");
+    CassandraHost kept = new CassandraHost("127.0.0.2:9160");
+    timer.stop(timer.start(), removed, OperationType.CQL, true);
+    timer.stop(timer.start(), kept, OperationType.CQL, true);
+    timer.remove(removed);
+    assertFalse(timer.getHistograms().containsKey(removed));
+    assertTrue(timer.getHistograms().containsKey(kept));
+  }
+}
@@ -17,15 +17,28 @@
  */
 package com.datastax.drivers.jdbc.pool.cassandra.connection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.util.concurrent.SettableFuture;
+
 public class HostTimeoutTrackerTest {
 
   private HostTimeoutTracker hostTimeoutTracker;
+  private HConnectionManager connectionManager;
 
   @Before
   public void setup() {
@@ -37,7 +50,7 @@ public class HostTimeoutTrackerTest {
     // HTL with a three timeout trigger durring 500ms intervals
     CassandraHostConfigurator cassandraHostConfigurator = new CassandraHostConfigurator("localhost:9170");
     cassandraHostConfigurator.setHostTimeoutCounter(3);
-    HConnectionManager connectionManager = new HConnectionManager("TestCluster", cassandraHostConfigurator);
+    connectionManager = new HConnectionManager("TestCluster", cassandraHostConfigurator);
     hostTimeoutTracker = new HostTimeoutTracker(connectionManager, cassandraHostConfigurator);
   }
 
@@ -46,13 +59,89 @@ public class HostTimeoutTrackerTest {
     CassandraHost cassandraHost = new CassandraHost("localhost:9170");
     assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
     assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
+    assertTrue(hostTimeoutTracker.checkTimeout(cassandraHost));
+  }
+
+  @Test
+  public void testTimeoutsOutsideWindow() {
+    CassandraHost cassandraHost = new CassandraHost("localhost:9170");
+    assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
     assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
     try {
-      Thread.currentThread().sleep(501);
+      Thread.sleep(501);
     } catch (InterruptedException e) {
 
     }
 
+    // the first two timeouts are now outside of the window
+    assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
+    assertFalse(hostTimeoutTracker.checkTimeout(cassandraHost));
     assertTrue(hostTimeoutTracker.checkTimeout(cassandraHost));
   }
+
+  @Test
+  public void testSuspensionBackoff() {
+    CassandraHostConfigurator cassandraHostConfigurator = new CassandraHostConfigurator("localhost:9170");
+    cassandraHostConfigurator.setHostTimeoutSuspensionDurationInSeconds(10);
+    cassandraHostConfigurator.setHostTimeoutMaxSuspensionDurationInSeconds(60);
+    cassandraHostConfigurator.setHostTimeoutSuspensionJitter(0);
+    HostTimeoutTracker tracker = new HostTimeoutTracker(connectionManager, cassandraHostConfigurator);
+    assertEquals(10, TimeUnit.NANOSECONDS.toSeconds(tracker.suspensionDuration(0)));
+    assertEquals(20, TimeUnit.NANOSECONDS.toSeconds(tracker.suspensionDuration(1)));
+    assertEquals(40, TimeUnit.NANOSECONDS.toSeconds(tracker.suspensionDuration(2)));
+    assertEquals(60, TimeUnit.NANOSECONDS.toSeconds(tracker.suspensionDuration(3)));
+    assertEquals(60, TimeUnit.NANOSECONDS.toSeconds(tracker.suspensionDuration(Integer.MAX_VALUE)));
+    tracker.shutdown();
+  }
+
+  @Test
+  public void testSuspensionJitter() {
+    long base = TimeUnit.SECONDS.toNanos(HostTimeoutTracker.DEF_NODE_SUSPENSION_DURATION_IN_SECONDS);
+    for (int i = 0; i < 100; i++) {
+      long duration = hostTimeoutTracker.suspensionDuration(0);
+      assertTrue(duration >= base * 0.8 && duration <= base * 1.2);
+    }
+  }
+
+  @Test
+  public void testProbeInBackground() {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    CassandraHostProbe probe = mock(CassandraHostProbe.class);
+    HConnectionManager manager = mock(HConnectionManager.class);
+    when(manager.getScheduler()).thenReturn(scheduler);
+    when(manager.getHostProbe()).thenReturn(probe);
+    CassandraHost cassandraHost = new CassandraHost("localhost:9170");
+    when(manager.suspendCassandraHost(cassandraHost)).thenReturn(true);
+    CassandraHostConfigurator cassandraHostConfigurator = new CassandraHostConfigurator("localhost:9170");
+    cassandraHostConfigurator.setHostTimeoutCounter(1);
+    cassandraHostConfigurator.setHostTimeoutSuspensionDurationInSeconds(0);
+    cassandraHostConfigurator.setHostTimeoutProbeBeforeUnsuspend(true);
+    HostTimeoutTracker tracker = new HostTimeoutTracker(manager, cassandraHostConfigurator);
+    try {
+      SettableFuture<Boolean> first = SettableFuture.create();
+      SettableFuture<Boolean> second = SettableFuture.create();
+      when(probe.submit(cassandraHost)).thenReturn(first, second);
+      assertTrue(tracker.checkTimeout(cassandraHost));
+
+      // the sweep does not wait for the probe, nor probes again while it is in flight
+      tracker.new Unsuspender().run();
+      tracker.new Unsuspender().run();
+      verify(probe).submit(cassandraHost);
+      verify(manager, never()).unsuspendCassandraHost(cassandraHost);
+
+      first.set(false);
+      verify(manager, never()).unsuspendCassandraHost(cassandraHost);
+      tracker.new Unsuspender().run();
+      verify(probe, times(2)).submit(cassandraHost);
+      second.set(true);
+      verify(manager).unsuspendCassandraHost(cassandraHost);
+
+      // no longer suspended
+      tracker.new Unsuspender().run();
+      verify(probe, times(2)).submit(cassandraHost);
+    } finally {
+      tracker.shutdown();
+      scheduler.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.service.OperationType;
+
+public class LatencyAwareHClientPoolTest {
+
+  private static final double DELTA = 1e-9;
+
+  private LatencyAwareHClientPool pool;
+
+  @Before
+  public void setupTest() throws Exception {
+    pool = new LatencyAwareHClientPool(new CassandraHost("127.0.0.1:9170"));
+  }
+
+  @Test
+  public void testScorePerOperationType() {
+    assertEquals(0, pool.score(), DELTA);
+    for (int i = 0; i < 10; i++) {
+      pool.add(OperationType.CQL, TimeUnit.MILLISECONDS.toNanos(10));
+      pool.add(OperationType.READ, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    // the slow reads do not leak into the score of the fast writes and vice versa
+    assertEquals(score(10), pool.score(OperationType.CQL), DELTA);
+    assertEquals(score(1), pool.score(OperationType.READ), DELTA);
+    assertEquals(0, pool.score(OperationType.WRITE), DELTA);
+    // the average of the measured operation types only
+    assertEquals((score(10) + score(1)) / 2, pool.score(), DELTA);
+    // slower means a higher score, lower being better
+    assertTrue(pool.score(OperationType.CQL) > pool.score(OperationType.READ));
+
+    // borrowing, waiting and connecting are not measured
+    pool.add(OperationType.BORROW_CLIENT, TimeUnit.SECONDS.toNanos(1));
+    pool.add(OperationType.BORROW_WAIT, TimeUnit.SECONDS.toNanos(1));
+    pool.add(OperationType.CONNECT, TimeUnit.SECONDS.toNanos(1));
+    assertEquals(0, pool.score(OperationType.BORROW_CLIENT), DELTA);
+    assertEquals(0, pool.score(OperationType.BORROW_WAIT), DELTA);
+    assertEquals(0, pool.score(OperationType.CONNECT), DELTA);
+    assertEquals((score(10) + score(1)) / 2, pool.score(), DELTA);
+
+    pool.clear();
+    assertEquals(0, pool.score(), DELTA);
+  }
+
+  @Test
+  public void testWindow() {
+    for (int i = 0; i < 50; i++) {
+      pool.add(OperationType.CQL, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    // the window keeps the last 100 latencies of each operation type
+    for (int i = 0; i < 100; i++) {
+      pool.add(OperationType.CQL, TimeUnit.MILLISECONDS.toNanos(2));
+    }
+    assertEquals(score(2), pool.score(OperationType.CQL), DELTA);
+  }
+
+  /**
+   * @return the score of a window of the given mean latency
+   */
+  private static double score(double meanMillis) {
+    return -Math.log10(1 - Math.exp(-0.768 / meanMillis));
+  }
+}
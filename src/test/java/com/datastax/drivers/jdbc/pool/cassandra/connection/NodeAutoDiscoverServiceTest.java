@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.jdbc.CassandraConnectionHandle;
+
+public class NodeAutoDiscoverServiceTest {
+
+  private final CassandraHost a = new CassandraHost("10.0.0.1", 9170);
+  private final CassandraHost b = new CassandraHost("10.0.0.2", 9170);
+  private final CassandraHost c = new CassandraHost("10.0.0.3", 9170);
+
+  private ScheduledExecutorService scheduler;
+  private HConnectionManager connectionManager;
+  private NodeAutoDiscoverService service;
+  private Set<CassandraHost> ring;
+
+  @Before
+  public void setupTest() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    connectionManager = mock(HConnectionManager.class);
+    when(connectionManager.getScheduler()).thenReturn(scheduler);
+    CassandraHostConfigurator cassandraHostConfigurator = new CassandraHostConfigurator("10.0.0.1:9170");
+    cassandraHostConfigurator.setAutoDiscoveryDelayInSeconds(3600);
+    service = new NodeAutoDiscoverService(connectionManager, cassandraHostConfigurator) {
+      @Override
+      public Set<CassandraHost> discoverNodes() {
+        return new HashSet<CassandraHost>(ring);
+      }
+    };
+  }
+
+  @After
+  public void teardownTest() {
+    service.shutdown();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testRingDiff() {
+    when(connectionManager.addCassandraHost(a)).thenReturn(true);
+    when(connectionManager.addCassandraHost(b)).thenReturn(true);
+    when(connectionManager.addCassandraHost(c)).thenReturn(true);
+    ring = hosts(a, b);
+    service.doAddNodes();
+    verify(connectionManager).addCassandraHost(a);
+    verify(connectionManager).addCassandraHost(b);
+
+    // b stays, c joins and a leaves
+    ring = hosts(b, c);
+    service.doAddNodes();
+    verify(connectionManager).addCassandraHost(b);
+    verify(connectionManager).addCassandraHost(c);
+    verify(connectionManager).removeCassandraHost(a);
+    verify(connectionManager, never()).removeCassandraHost(b);
+
+    // nothing changed
+    service.doAddNodes();
+    verify(connectionManager).addCassandraHost(c);
+    verify(connectionManager, never()).removeCassandraHost(c);
+  }
+
+  @Test
+  public void testFailedAddTriedAgain() {
+    ring = hosts(a);
+    service.doAddNodes();
+    service.doAddNodes();
+    verify(connectionManager, times(2)).addCassandraHost(a);
+  }
+
+  @Test
+  public void testFailedAddRetried() {
+    when(connectionManager.retryLater(a)).thenReturn(true);
+    ring = hosts(a);
+    service.doAddNodes();
+    service.doAddNodes();
+    verify(connectionManager).addCassandraHost(a);
+    verify(connectionManager).retryLater(a);
+  }
+
+  @Test
+  public void testPeersErrorRetried() throws Exception {
+    Statement statement = mock(Statement.class);
+    when(statement.executeQuery(NodeAutoDiscoverService.PEERS_QUERY))
+        .thenThrow(new SQLTransientConnectionException("timed out"));
+    Connection connection = mock(Connection.class);
+    when(connection.createStatement()).thenReturn(statement);
+    CassandraConnectionHandle handle = mock(CassandraConnectionHandle.class);
+    when(handle.getCassandraHost()).thenReturn(a);
+    when(handle.getInternalConnection()).thenReturn(connection);
+    when(connectionManager.borrowClient()).thenReturn(handle);
+    NodeAutoDiscoverService peers = new NodeAutoDiscoverService(connectionManager, 
+        new CassandraHostConfigurator("10.0.0.1:9170"));
+    try {
+      // an error other than a missing table does not give up on system.peers
+      assertNull(peers.discoverNodes());
+      assertNull(peers.discoverNodes());
+      verify(statement, times(2)).executeQuery(NodeAutoDiscoverService.PEERS_QUERY);
+      verify(connectionManager, times(2)).releaseClient(handle);
+    } finally {
+      peers.shutdown();
+    }
+  }
+
+  private static Set<CassandraHost> hosts(CassandraHost... hosts) {
+    return new HashSet<CassandraHost>(Arrays.asList(hosts));
+  }
+}
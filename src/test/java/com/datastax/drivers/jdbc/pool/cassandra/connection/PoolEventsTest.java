@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PoolEventsTest {
+
+  private final List<String> events = new ArrayList<String>();
+
+  private final PoolEventListener listener = new PoolEventListener() {
+    @Override
+    public void borrowed(CassandraHost host, long waitNanos) {
+      events.add("borrowed " + waitNanos);
+    }
+
+    @Override
+    public void created(CassandraHost host, long durationNanos) {
+      events.add("created " + durationNanos);
+    }
+
+    @Override
+    public void closed(CassandraHost host) {
+      events.add("closed");
+    }
+
+    @Override
+    public void failedOver(CassandraHost from, CassandraHost to, Class<?> exceptionClass) {
+      events.add("failedOver " + exceptionClass.getSimpleName());
+    }
+
+    @Override
+    public void hostStateChanged(CassandraHost host, PoolEventType type) {
+      events.add(type.name());
+    }
+
+    @Override
+    public void scoreUpdated(CassandraHost host, double score) {
+      events.add("score " + score);
+    }
+  };
+
+  @After
+  public void removeListener() {
+    PoolEvents.removeListener(listener);
+  }
+
+  @Test
+  public void testEnabledOnly() {
+    CassandraHost host = new CassandraHost("127.0.0.1:9160");
+    PoolEvents.borrowed(host, 1);
+
+    PoolEvents.setListener(listener, EnumSet.of(PoolEventType.BORROW, PoolEventType.MARK_DOWN));
+    assertTrue(PoolEvents.isEnabled(PoolEventType.BORROW));
+    assertFalse(PoolEvents.isEnabled(PoolEventType.CLOSE));
+    PoolEvents.borrowed(host, 2);
+    PoolEvents.closed(host);
+    PoolEvents.hostStateChanged(host, PoolEventType.SUSPEND);
+    PoolEvents.hostStateChanged(host, PoolEventType.MARK_DOWN);
+
+    PoolEvents.setEnabled(listener, EnumSet.of(PoolEventType.FAILOVER));
+    PoolEvents.borrowed(host, 3);
+    PoolEvents.failedOver(host, null, IllegalStateException.class);
+
+    // only the current listener may change what is enabled
+    PoolEvents.setEnabled(new OtherListener(), EnumSet.allOf(PoolEventType.class));
+    PoolEvents.created(host, 4);
+
+    PoolEvents.removeListener(listener);
+    PoolEvents.failedOver(host, null, IllegalStateException.class);
+    assertFalse(PoolEvents.isEnabled(PoolEventType.FAILOVER));
+
+    assertEquals("[borrowed 2, MARK_DOWN, failedOver IllegalStateException]", events.toString());
+  }
+
+  private static class OtherListener implements PoolEventListener {
+    public void borrowed(CassandraHost host, long waitNanos) { }
+    public void created(CassandraHost host, long durationNanos) { }
+    public void closed(CassandraHost host) { }
+    public void failedOver(CassandraHost from, CassandraHost to, Class<?> exceptionClass) { }
+    public void hostStateChanged(CassandraHost host, PoolEventType type) { }
+    public void scoreUpdated(CassandraHost host, double score) { }
+  }
+}
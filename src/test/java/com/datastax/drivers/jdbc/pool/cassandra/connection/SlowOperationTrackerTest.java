@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.datastax.drivers.jdbc.pool.cassandra.connection.SlowOperationTracker.StatementStats;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.SlowOperationTracker.Statements;
+
+public class SlowOperationTrackerTest {
+
+  @Test
+  public void testNormalize() {
+    assertEquals("SELECT * FROM ks.users1 WHERE id = ? AND name = ? LIMIT ?",
+        SlowOperationTracker.normalize("SELECT *\n  FROM ks.users1 WHERE id = 42 AND name = 'o''brien' LIMIT 10"));
+    assertEquals("SELECT \"Col1\" FROM t WHERE k IN (?)",
+        SlowOperationTracker.normalize("SELECT \"Col1\" FROM t WHERE k IN (1, -2.5e+3, 'x')"));
+    assertEquals("UPDATE t SET v = ?, b = ? WHERE k = ?",
+        SlowOperationTracker.normalize("UPDATE t SET v = $$a b$$, b = 0xcafe WHERE k = f47ac10b-58cc-4372-a567-0e02b2c3d479"));
+    assertEquals("SELECT a - ? FROM t WHERE k = ?",
+        SlowOperationTracker.normalize("SELECT a - 1 FROM t WHERE k = -1"));
+    String statement = SlowOperationTracker.normalize(new String(new char[1000]).replace('\0', 'a'));
+    assertEquals(SlowOperationTracker.MAX_STATEMENT_LENGTH + 3, statement.length());
+    assertTrue(statement.endsWith("..."));
+  }
+
+  @Test
+  public void testTopStatements() {
+    Statements statements = new Statements(2);
+    assertTrue(statements.add("a", 10));
+    assertFalse(statements.add("a", 30));
+    assertTrue(statements.add("b", 5));
+    // replaces b, which has the lowest total, inheriting its count and total
+    assertFalse(statements.add("c", 20));
+    List<StatementStats> top = statements.getTop();
+    assertEquals(2, top.size());
+    assertEquals("a", top.get(0).statement);
+    assertEquals(2, top.get(0).count);
+    assertEquals(40, top.get(0).totalNanos);
+    assertEquals(30, top.get(0).maxNanos);
+    assertEquals(0, top.get(0).errorNanos);
+    assertEquals("c", top.get(1).statement);
+    assertEquals(2, top.get(1).count);
+    assertEquals(25, top.get(1).totalNanos);
+    assertEquals(20, top.get(1).maxNanos);
+    assertEquals(5, top.get(1).errorNanos);
+
+    // b coming back replaces c in turn, its total never underestimated
+    assertFalse(statements.add("b", 5));
+    top = statements.getTop();
+    assertEquals("b", top.get(1).statement);
+    assertEquals(3, top.get(1).count);
+    assertEquals(30, top.get(1).totalNanos);
+    assertEquals(25, top.get(1).errorNanos);
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class WeightedBalancingPolicyTest extends BaseBalancingPolicyTest {
+
+  private WeightedBalancingPolicy weightedBalancingPolicy;
+
+  @Before
+  public void setupPolicy() {
+    weightedBalancingPolicy = new WeightedBalancingPolicy();
+  }
+
+  @Test
+  public void testEqualWeights() {
+    for (int x = 0; x < 3; x++) {
+      assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+      assertEquals(poolWith7Active, weightedBalancingPolicy.getPool(pools, null));
+      assertEquals(poolWith10Active, weightedBalancingPolicy.getPool(pools, null));
+    }
+  }
+
+  @Test
+  public void testWeightsAreSmooth() {
+    poolWith5Active.getCassandraHost().setWeight(5);
+    poolWith7Active.getCassandraHost().setWeight(1);
+    poolWith10Active.getCassandraHost().setWeight(1);
+
+    // a a b a c a a
+    assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith7Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith10Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+    assertEquals(poolWith5Active, weightedBalancingPolicy.getPool(pools, null));
+  }
+
+  @Test
+  public void testDrainAtRuntime() {
+    Map<HClientPool, Integer> picks = pick(300);
+    assertEquals(100, picks.get(poolWith5Active).intValue());
+
+    poolWith5Active.getCassandraHost().setWeight(50);
+    picks = pick(250);
+    assertEquals(50, picks.get(poolWith5Active).intValue());
+    assertEquals(100, picks.get(poolWith7Active).intValue());
+
+    poolWith5Active.getCassandraHost().setWeight(0);
+    picks = pick(200);
+    assertEquals(null, picks.get(poolWith5Active));
+    assertEquals(100, picks.get(poolWith10Active).intValue());
+  }
+
+  @Test
+  public void testIgnoreExcluded() {
+    for (int x = 0; x < 4; x++) {
+      HClientPool pool = weightedBalancingPolicy.getPool(pools, new HashSet<CassandraHost>(Arrays.asList(new CassandraHost("127.0.0.1:9160"))));
+      assert pool != poolWith5Active;
+    }
+  }
+
+  @Test
+  public void testAllDrainedOrExcluded() {
+    poolWith5Active.getCassandraHost().setWeight(0);
+    poolWith7Active.getCassandraHost().setWeight(0);
+    poolWith10Active.getCassandraHost().setWeight(0);
+    assertEquals(poolWith7Active, weightedBalancingPolicy.getPool(pools,
+        new HashSet<CassandraHost>(Arrays.asList(new CassandraHost("127.0.0.1:9160")))));
+    assertNotNull(weightedBalancingPolicy.getPool(pools, 
+        new HashSet<CassandraHost>(Arrays.asList(new CassandraHost("127.0.0.1:9160"),new CassandraHost("127.0.0.2:9161"),new CassandraHost("127.0.0.3:9162")))));
+  }
+
+  private Map<HClientPool, Integer> pick(int times) {
+    Map<HClientPool, Integer> picks = new HashMap<HClientPool, Integer>();
+    for (int x = 0; x < times; x++) {
+      HClientPool pool = weightedBalancingPolicy.getPool(pools, null);
+      Integer count = picks.get(pool);
+      picks.put(pool, count == null ? 1 : count + 1);
+    }
+    return picks;
+  }
+}
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.mock;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -36,6 +37,7 @@ import org.junit.Test;
 
 import com.datastax.drivers.jdbc.pool.cassandra.BaseEmbededServerSetupTest;
 import com.datastax.drivers.jdbc.pool.cassandra.connection.CassandraHostConfigurator;
+import com.datastax.drivers.jdbc.pool.cassandra.connection.HClientPool;
 import com.datastax.drivers.jdbc.pool.cassandra.service.FailoverPolicy;
 
 
@@ -92,4 +94,60 @@ public class HCQLDataSourceTest extends BaseEmbededServerSetupTest {
     assertNotNull(dataSource);
     assertNotNull(dataSource.getConnection());
   }
+
+  @Test
+  public void testEagerInit() throws Exception {
+    Reference resource = new Reference("HCQLDataSource");
+    resource.add(new StringRefAddr("hosts", cassandraUrl));
+    resource.add(new StringRefAddr("clusterName", clusterName));
+    resource.add(new StringRefAddr("keyspace", "Keyspace1"));
+    resource.add(new StringRefAddr("user", ""));
+    resource.add(new StringRefAddr("password", ""));
+    resource.add(new StringRefAddr("eagerInit", "true"));
+    resource.add(new StringRefAddr("initWaitMillis", "0"));
+
+    Name jndiName = mock(Name.class);
+    Context context = new InitialContext();
+    Hashtable<String, String> environment = new Hashtable<String, String>();
+
+    HCQLDataSource dataSource = (HCQLDataSource) factory.getObjectInstance(resource, jndiName, context, environment);
+    // looked up again while starting, it is not configured again
+    Reference other = new Reference("HCQLDataSource");
+    other.add(new StringRefAddr("hosts", cassandraUrl));
+    other.add(new StringRefAddr("clusterName", clusterName));
+    other.add(new StringRefAddr("keyspace", "Keyspace2"));
+    assertSame(dataSource, factory.getObjectInstance(other, jndiName, context, environment));
+    assertEquals("Keyspace1", dataSource.getKeyspaceName());
+    assertNotNull(dataSource.start().get(10, TimeUnit.SECONDS));
+    assertTrue(dataSource.isReady());
+    assertNotNull(dataSource.getConnection());
+  }
+
+  @Test
+  public void testConnectionHeldUntilClosed() throws Exception {
+    HCQLDataSource dataSource = new HCQLDataSource();
+    dataSource.setHosts(cassandraUrl);
+    dataSource.setClusterName(clusterName);
+    dataSource.setKeyspaceName("Keyspace1");
+    dataSource.setUser("");
+    dataSource.setPassword("");
+    dataSource.setMaxConnectionLifetimeMillis(1);
+    try {
+      CassandraConnectionHandle conn = (CassandraConnectionHandle) dataSource.getConnection();
+      HClientPool pool = conn.getManager().getActivePools().iterator().next();
+      assertEquals(1, pool.getNumActive());
+      Thread.sleep(5);
+
+      // expired, but retired only once given back
+      pool.retireExpiredConnections();
+      assertFalse(conn.isClosed());
+      conn.close();
+      assertEquals(0, pool.getNumActive());
+      assertTrue(conn.isClosed());
+      conn.close();
+      assertEquals(0, pool.getNumActive());
+    } finally {
+      dataSource.close();
+    }
+  }
 }
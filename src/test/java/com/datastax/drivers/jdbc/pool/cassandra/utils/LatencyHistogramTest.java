@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long micros = 0; micros < 100000; micros++) {
+      int bucket = LatencyHistogram.bucket(micros);
+      assertTrue(micros <= LatencyHistogram.highestMicros(bucket));
+      assertTrue(bucket == 0 || micros > LatencyHistogram.highestMicros(bucket - 1));
+      // at most 1/16 above the real value
+      assertTrue(LatencyHistogram.highestMicros(bucket) <= micros + micros / 16);
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(99));
+    for (int millis = 1; millis <= 1000; millis++) {
+      histogram.recordNanos(millis * 1000000L);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertWithin(500, histogram.getPercentileNanos(50));
+    assertWithin(990, histogram.getPercentileNanos(99));
+    assertWithin(1000, histogram.getPercentileNanos(99.9));
+
+    LatencyHistogram merged = new LatencyHistogram();
+    merged.add(histogram);
+    merged.add(histogram);
+    assertEquals(2000, merged.getCount());
+    assertWithin(500, merged.getPercentileNanos(50));
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+  }
+
+  @Test
+  public void testRollingTotals() {
+    long interval = 1000000000L;
+    RollingLatencyHistogram rolling = new RollingLatencyHistogram(interval);
+    long now = System.nanoTime();
+    rolling.recordNanos(1000, now);
+    rolling.recordNanos(2000, now);
+    assertEquals(2, rolling.getCount(now + interval));
+    // the interval is forgotten once idle, the totals are not
+    assertEquals(0, rolling.getCount(now + 3 * interval));
+    rolling.recordNanos(3000, now + 3 * interval);
+    assertEquals(3, rolling.getTotalCount());
+    assertEquals(6000, rolling.getTotalNanos());
+  }
+
+  private static void assertWithin(long expectedMillis, long nanos) {
+    long expected = expectedMillis * 1000000L;
+    assertTrue(nanos + " for " + expected, nanos >= expected && nanos <= expected + expected / 16);
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.drivers.jdbc.pool.cassandra.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class PrometheusTextWriterTest {
+
+  @Test
+  public void testWrite() throws IOException {
+    StringWriter sw = new StringWriter();
+    PrometheusTextWriter out = new PrometheusTextWriter(sw);
+    out.family("pool_active", "gauge", "Borrowed\nconnections");
+    out.sample("pool_active").label("host", "h1:9160").label("cluster", "a\"b\\c").value(3);
+    out.sample("pool_active").value(-120);
+    out.family("latency_seconds", "summary", "Latency");
+    out.sample("latency_seconds").label("quantile", "0.5").value(1500000, 9);
+    out.sample("latency_seconds").label("quantile", "0.9").value(2000000000, 9);
+    out.sample("latency_seconds").label("quantile", "0.99").value(1, 9);
+    out.sample("latency_seconds").value(-25, 1);
+    out.sample("latency_seconds", "_count").label("host", "h1:9160").value(2);
+    assertEquals("# HELP pool_active Borrowed\\nconnections\n# TYPE pool_active gauge\n"
+        + "pool_active{host=\"h1:9160\",cluster=\"a\\\"b\\\\c\"} 3\n"
+        + "pool_active -120\n"
+        + "# HELP latency_seconds Latency\n# TYPE latency_seconds summary\n"
+        + "latency_seconds{quantile=\"0.5\"} 0.0015\n"
+        + "latency_seconds{quantile=\"0.9\"} 2\n"
+        + "latency_seconds{quantile=\"0.99\"} 0.000000001\n"
+        + "latency_seconds -2.5\n"
+        + "latency_seconds_count{host=\"h1:9160\"} 2\n", sw.toString());
+  }
+}